@@ -0,0 +1,118 @@
+/**
+ * The AdaptiveDecimator class decides how many frames of the video are skipped between two processed frames,
+ * so that the processing keeps up with the frame rate of the video on slow machines.
+ * It measures the cost of every processed frame and raises the step when the processing falls behind the video,
+ * or lowers it when the processing would keep up with a smaller step.
+ * While a vehicle is inside the band between the counting line and the speed line, or is approaching the counting line,
+ * every frame is processed. A larger step is taken only when the band is known to be empty in the last processed frame,
+ * so the FramePipeline does not decode ahead of the detection while the frames are skipped.
+ */
+public class AdaptiveDecimator {
+
+    // The weight of the newest cost in the moving average of the costs
+    private static final double SMOOTHING = 0.1;
+    // The share of the time budget below which the step is lowered, so the step does not change back and forth
+    private static final double LOWER_MARGIN = 0.7;
+
+    // The time budget for processing one frame of the video in nanoseconds
+    private final double frameBudget;
+    // The largest allowed step
+    private final int maxStep;
+    // The smallest step, used also while a vehicle is inside the band, when the vehicles are tracked between the processed frames
+    private volatile int minStep = 1;
+
+    // Whether the frames may be skipped at all
+    private volatile boolean isEnabled = true;
+    // Whether a vehicle is inside the band between the lines
+    private volatile boolean isBandOccupied = false;
+    // The current step
+    private volatile int step = 1;
+    // The moving average of the cost of a processed frame in nanoseconds, or -1 before the first frame
+    private double averageCost = -1;
+
+    /**
+     * Constructor for the AdaptiveDecimator class.
+     *
+     * @param videoFPS the frames per second of the video.
+     * @param maxStep the largest allowed step, 1 means that no frame is skipped.
+     */
+    public AdaptiveDecimator(double videoFPS, int maxStep) {
+        this.frameBudget = 1e9 / videoFPS;
+        this.maxStep = Math.max(1, maxStep);
+    }
+
+    /**
+     * This method returns the step to the next processed frame,
+     * which is 1 if the decimation is disabled, and the smallest step if a vehicle is inside the band.
+     *
+     * @return the number of frames from the last processed frame to the next one.
+     */
+    public int nextStep() {
+        if (!isEnabled)
+            return 1;
+        return isBandOccupied ? minStep : Math.max(step, minStep);
+    }
+
+    /**
+     * This method returns the step used while a vehicle is inside the band, which may be taken without knowing
+     * whether the band is occupied: 1 if the decimation is disabled, and the smallest step otherwise.
+     *
+     * @return the step allowed while the band is occupied.
+     */
+    public int getOccupiedStep() {
+        return isEnabled ? minStep : 1;
+    }
+
+    /**
+     * This method records the cost of a processed frame and adjusts the step.
+     * A processed frame stands for "step" frames of the video, so its budget is "step" times the budget of one frame.
+     *
+     * @param cost the cost of the frame in nanoseconds.
+     */
+    public void recordCost(long cost) {
+        averageCost = averageCost < 0 ? cost : averageCost + SMOOTHING * (cost - averageCost);
+        if (averageCost > frameBudget * step && step < maxStep)
+            step++;
+        else if (step > minStep && averageCost < frameBudget * (step - 1) * LOWER_MARGIN)
+            step--;
+    }
+
+    /**
+     * This method sets the smallest step, which is used even while a vehicle is inside the band.
+     * It is used when the positions of the vehicles are predicted by a tracker over the frames which are not processed,
+     * so the background subtraction and the detection run only on every "minStep"-th frame.
+     *
+     * @param minStep the smallest step, not larger than the largest step.
+     */
+    public void setMinStep(int minStep) {
+        this.minStep = Math.max(1, Math.min(maxStep, minStep));
+        step = Math.max(step, this.minStep);
+    }
+
+    /**
+     * This method sets whether a vehicle is inside the band between the lines.
+     *
+     * @param isBandOccupied true if a vehicle is inside the band, false otherwise.
+     */
+    public void setBandOccupied(boolean isBandOccupied) {
+        this.isBandOccupied = isBandOccupied;
+    }
+
+    /**
+     * This method sets whether the frames may be skipped.
+     *
+     * @param isEnabled true to skip the frames when the processing falls behind, false to process every frame.
+     */
+    public void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    /**
+     * This method returns the current step, regardless of the vehicles inside the band.
+     *
+     * @return the current step.
+     */
+    public int getStep() {
+        return step;
+    }
+}
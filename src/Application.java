@@ -10,8 +10,21 @@ import java.io.IOException; // Java IO library for handling IO exceptions
  * It loads the OpenCV library and starts the GUI.
  */
 public class Application {
+    // Whether the OpenCV library has been loaded
+    private static boolean isLoaded = false;
+
     // Static initializer block to load the OpenCV library
     static {
+        loadNativeLibrary();
+    }
+
+    /**
+     * This method loads the OpenCV library, unless it has already been loaded.
+     * It is also used by the other entry points of the application, like the HeadlessApplication.
+     */
+    static synchronized void loadNativeLibrary() {
+        if (isLoaded)
+            return;
         try {
             // Try to load the OpenCV library from the classpath (used for tests)
             System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
@@ -24,6 +37,7 @@ public class Application {
                 throw new RuntimeException(e1);
             }
         }
+        isLoaded = true;
     }
 
     /**
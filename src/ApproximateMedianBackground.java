@@ -0,0 +1,71 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Core; // OpenCV library for handling core functionalities
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.core.Scalar; // OpenCV library for handling scalar values
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+/**
+ * The ApproximateMedianBackground class keeps an approximation of the median of the frames as the background.
+ * For every frame, each pixel of the background is moved one level of brightness towards the frame,
+ * so the background converges to the median of the frames without storing them.
+ * Unlike the average, the median is not pulled by the vehicles passing over the road, so a busy road keeps a clean background.
+ * A pixel belongs to the foreground when its brightness differs from the background by more than the image threshold.
+ * The history is not used, the background follows slow changes of the light at one level per frame.
+ */
+public class ApproximateMedianBackground extends GrayscaleBackground {
+
+    // The background
+    private final Mat background = new Mat();
+    // The absolute difference between the frame and the background
+    private final Mat difference = new Mat();
+    // The pixels where the frame is brighter than the background
+    private final Mat brighter = new Mat();
+    // The pixels where the frame is darker than the background
+    private final Mat darker = new Mat();
+
+    /**
+     * Constructor for the ApproximateMedianBackground class.
+     *
+     * @param imageThreshold the difference of brightness above which a pixel belongs to the foreground.
+     * @param history not used, kept for the same constructor as the other models.
+     */
+    public ApproximateMedianBackground(double imageThreshold, int history) {
+        super(imageThreshold, history);
+    }
+
+    @Override
+    protected void initialize(Mat gray) {
+        gray.copyTo(background);
+    }
+
+    /**
+     * This method compares the frame with the background and moves the background towards the frame,
+     * by one level for every frame from the previous processed frame.
+     */
+    @Override
+    protected void update(Mat gray, int step) {
+        Core.absdiff(gray, background, difference);
+        Imgproc.threshold(difference, foreground, imageThreshold, 255, Imgproc.THRESH_BINARY);
+
+        Scalar levels = Scalar.all(step);
+        Core.compare(gray, background, brighter, Core.CMP_GT);
+        Core.compare(gray, background, darker, Core.CMP_LT);
+        Core.add(background, levels, background, brighter);
+        Core.subtract(background, levels, background, darker);
+    }
+
+    @Override
+    protected void writeBackground(Mat backgroundImage) {
+        background.copyTo(backgroundImage);
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        background.release();
+        difference.release();
+        brighter.release();
+        darker.release();
+    }
+}
@@ -0,0 +1,59 @@
+// Importing the necessary libraries
+
+import java.util.function.BiFunction; // Java Util library for functions with two arguments
+
+/**
+ * The BackgroundEngine enum is the registry of the background subtraction models which can be selected by the settings.
+ * Every engine creates its VideoProcessor from the image threshold and the history, so the engine can be chosen per camera:
+ * a static camera with steady light can use a cheap model, while a camera with waving trees or flickering light needs MOG2 or KNN.
+ * The cost of the engines depends on the machine and the video, so it is measured with the EngineBenchmark on a sample video.
+ */
+public enum BackgroundEngine {
+
+    MOG2("mixture of Gaussians, robust to gradual light changes", MixtureOfGaussianBackground::new),
+    KNN("K-nearest neighbours, robust to waving trees and flicker", KNearestNeighboursBackground::new),
+    MEDIAN("approximate median, a clean background on busy roads", ApproximateMedianBackground::new),
+    AVERAGE("running average, for static cameras with steady light", RunningAverageBackground::new),
+    JAVA_AVERAGE("running average in pure Java, without native calls per operation", JavaRunningAverageBackground::new),
+    DIFFERENCE("difference of consecutive frames, moving edges only", FrameDifferenceBackground::new);
+
+    // The short description of the engine
+    private final String description;
+    // The constructor of the video processor from the image threshold and the history
+    private final BiFunction<Double, Integer, VideoProcessor> factory;
+
+    BackgroundEngine(String description, BiFunction<Double, Integer, VideoProcessor> factory) {
+        this.description = description;
+        this.factory = factory;
+    }
+
+    /**
+     * This method creates a new video processor of this engine.
+     *
+     * @param imageThreshold the image threshold of the background subtraction.
+     * @param history the history of the background subtraction.
+     * @return the new video processor.
+     */
+    public VideoProcessor create(double imageThreshold, int history) {
+        return factory.apply(imageThreshold, history);
+    }
+
+    /**
+     * This method returns the engine with the given name, ignoring the case.
+     *
+     * @param name the name of the engine.
+     * @return the engine.
+     * @throws IllegalArgumentException if there is no engine with the name.
+     */
+    public static BackgroundEngine fromName(String name) {
+        for (BackgroundEngine engine : values()) {
+            if (engine.name().equalsIgnoreCase(name.trim()))
+                return engine;
+        }
+        throw new IllegalArgumentException("Invalid engine: " + name);
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
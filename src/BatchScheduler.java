@@ -0,0 +1,307 @@
+// Importing the necessary libraries
+
+import com.opencsv.CSVWriter; // Library for writing to CSV files
+import org.opencv.core.Core; // OpenCV library for handling core functionalities
+
+import java.io.File; // Java IO library for handling files
+import java.io.FileWriter; // Java IO library for writing to files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.nio.file.Path; // Java NIO library for handling paths
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+import java.util.Arrays; // Java Util library for handling arrays
+import java.util.LinkedHashMap; // Java Util library for handling maps kept in the order of insertion
+import java.util.LinkedHashSet; // Java Util library for handling sets kept in the order of insertion
+import java.util.List; // Java Util library for handling lists
+import java.util.Locale; // Java Util library for formatting numbers
+import java.util.Map; // Java Util library for handling maps
+import java.util.concurrent.ConcurrentHashMap; // Java Concurrent library for maps shared between threads
+import java.util.concurrent.ExecutionException; // Java Concurrent library for handling exceptions of tasks
+import java.util.concurrent.ForkJoinPool; // Java Concurrent library for work-stealing thread pools
+import java.util.concurrent.ForkJoinTask; // Java Concurrent library for tasks of a ForkJoinPool
+import java.util.concurrent.Executors; // Java Concurrent library for creating executors
+import java.util.concurrent.ScheduledExecutorService; // Java Concurrent library for running periodic tasks
+import java.util.concurrent.TimeUnit; // Java Concurrent library for handling time units
+
+/**
+ * The BatchScheduler class processes many videos at the same time.
+ * Every video is processed by its own HeadlessRunner, with its own background model, counters and pending vehicles,
+ * in a work-stealing pool which by default has one thread per core.
+ * Every video is named by its path relative to the directory holding all the videos (e.g. "camera1/2024-05-01.avi"),
+ * so videos with the same file name from different directories are kept apart.
+ * The results of every video are written to the subdirectory of the results directory with the same relative path
+ * (e.g. "camera1/2024-05-01_avi"), and the totals of all the videos are merged into the "Summary.csv" file.
+ * The directory of a video is its camera: with a directory of models, every camera keeps one model of the background
+ * (e.g. "camera1.model"), and the videos of a camera are processed one after another in the order of their paths,
+ * so every recording starts from the background learnt on the previous one and no two runs write the same model.
+ * While the videos are processed, the progress and the throughput of every video are printed periodically.
+ */
+public class BatchScheduler {
+
+    // The extensions of the video files found in a directory, the same as in the GUI
+    private static final List<String> VIDEO_EXTENSIONS = Arrays.asList("avi", "mp4", "mpg", "mov");
+
+    // The interval of the progress reports in seconds
+    private static final int PROGRESS_INTERVAL = 10;
+
+    // The settings shared by all the videos
+    private final DetectorSettings settings;
+    // The number of threads of the pool
+    private final int parallelism;
+
+    // The runners of the videos which are being processed, by the relative path of the video
+    private final Map<String, HeadlessRunner> activeRunners = new ConcurrentHashMap<>();
+    // The time when the processing of each active video has started
+    private final Map<String, Long> startTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for the BatchScheduler class.
+     *
+     * @param settings the settings shared by all the videos; the video path is set for every video.
+     * @param parallelism the number of videos processed at the same time, or 0 for one per core.
+     */
+    public BatchScheduler(DetectorSettings settings, int parallelism) {
+        this.settings = settings;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * This method finds the videos in the given paths.
+     * A path can be a video file or a directory, in which case all the video files in the directory are used.
+     * A video given more than once is returned only once.
+     *
+     * @param paths the paths of the videos or the directories.
+     * @return the absolute video files, sorted by their path.
+     * @throws IOException if a path does not exist.
+     */
+    public static List<File> findVideos(String[] paths) throws IOException {
+        LinkedHashSet<File> found = new LinkedHashSet<>();
+        for (String path : paths) {
+            File file = new File(path.trim());
+            if (file.isDirectory()) {
+                File[] files = file.listFiles((dir, name) -> {
+                    int dot = name.lastIndexOf('.');
+                    return dot >= 0 && VIDEO_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+                });
+                if (files != null) {
+                    for (File video : files) {
+                        found.add(video.getCanonicalFile());
+                    }
+                }
+            } else if (file.isFile()) {
+                found.add(file.getCanonicalFile());
+            } else {
+                throw new IOException("No such video or directory: " + path);
+            }
+        }
+        List<File> videos = new ArrayList<>(found);
+        videos.sort(null);
+        return videos;
+    }
+
+    /**
+     * This method names every video by its path relative to the deepest directory holding all the videos,
+     * with "/" as the separator. The names are unique, as the videos are different files.
+     *
+     * @param videos the absolute video files.
+     * @return the names of the videos, in the same order.
+     */
+    public static List<String> relativeNames(List<File> videos) {
+        Path root = videos.isEmpty() ? null : videos.get(0).toPath().getParent();
+        for (File video : videos) {
+            while (root != null && !video.toPath().startsWith(root))
+                root = root.getParent();
+        }
+
+        List<String> names = new ArrayList<>();
+        for (File video : videos) {
+            Path path = video.toPath();
+            // Without a common directory (e.g. videos on different drives), the whole path without the drive is used
+            Path relative = root != null ? root.relativize(path) : path.subpath(0, path.getNameCount());
+            StringBuilder name = new StringBuilder();
+            for (Path part : relative) {
+                if (name.length() > 0)
+                    name.append('/');
+                name.append(part);
+            }
+            names.add(name.toString());
+        }
+        return names;
+    }
+
+    /**
+     * This method processes all the videos and writes the summary.
+     * The videos are submitted to a work-stealing pool, and every video runs its stages in the thread of the pool,
+     * so no more videos are processed at the same time than there are threads.
+     * A video which cannot be processed is reported in the summary and does not stop the other videos.
+     *
+     * @param videos the videos to be processed.
+     * @return the summary of every video, followed by the merged summary of all of them.
+     * @throws IOException if the summary cannot be written.
+     */
+    public List<VideoSummary> run(List<File> videos) throws IOException {
+        File directory = new File(settings.getSavePath());
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create the results directory: " + directory);
+        if (settings.getModelPath() != null) {
+            File models = new File(settings.getModelPath());
+            if (!models.isDirectory() && !models.mkdirs())
+                throw new IOException("Cannot create the models directory: " + models);
+        }
+
+        // The videos sharing a model are processed one after another by the same task, the other videos in parallel
+        List<String> names = relativeNames(videos);
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < videos.size(); i++) {
+            String group = settings.getModelPath() != null ? cameraName(videos.get(i), names.get(i)) : names.get(i);
+            groups.computeIfAbsent(group, key -> new ArrayList<>()).add(i);
+        }
+        VideoSummary[] results = new VideoSummary[videos.size()];
+
+        // Share the cores between the videos instead of letting every video use all of them
+        int workers = Math.max(1, Math.min(parallelism, groups.size()));
+        Core.setNumThreads(Math.max(1, Runtime.getRuntime().availableProcessors() / workers));
+
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Batch-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::reportProgress, PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.SECONDS);
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (List<Integer> group : groups.values()) {
+            tasks.add(pool.submit(() -> {
+                for (int i : group) {
+                    results[i] = process(videos.get(i), names.get(i), directory);
+                }
+            }));
+        }
+
+        List<VideoSummary> summaries = new ArrayList<>();
+        VideoSummary total = new VideoSummary("Total");
+        try {
+            for (ForkJoinTask<?> task : tasks) {
+                task.get();
+            }
+            for (VideoSummary summary : results) {
+                summaries.add(summary);
+                total.merge(summary);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            throw new IOException("The batch processing has been interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            reporter.shutdownNow();
+            pool.shutdown();
+        }
+        summaries.add(total);
+
+        try (CSVWriter writer = new CSVWriter(new FileWriter(new File(directory, "Summary.csv")), '\t')) {
+            writer.writeNext(VideoSummary.header());
+            for (VideoSummary summary : summaries) {
+                writer.writeNext(summary.toRow());
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * This method returns the camera of a video, which is the directory of the video: its path relative to the directory
+     * holding all the videos, or the name of the directory if all the videos are in it.
+     *
+     * @param video the absolute video file.
+     * @param name the path of the video relative to the directory holding all the videos.
+     * @return the camera of the video, with "/" as the separator.
+     */
+    public static String cameraName(File video, String name) {
+        int slash = name.lastIndexOf('/');
+        if (slash >= 0)
+            return name.substring(0, slash);
+        File directory = video.getParentFile();
+        return directory == null || directory.getName().isEmpty() ? "camera" : directory.getName();
+    }
+
+    /**
+     * This method returns the name of the results directory of a video, which is its relative path
+     * with the dot of the extension replaced by an underscore, e.g. "cam.1/a_mp4" for "cam.1/a.mp4".
+     * The directories of the path are kept as they are, so two videos never share a results directory.
+     *
+     * @param name the path of the video relative to the directory holding all the videos.
+     * @return the name of the results directory.
+     */
+    static String resultsName(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= name.lastIndexOf('/') + 1)
+            return name;
+        return name.substring(0, dot) + '_' + name.substring(dot + 1);
+    }
+
+    /**
+     * This method processes a single video in the current thread of the pool.
+     * The results are written to the subdirectory of the results directory with the relative path of the video,
+     * in which the dot of the extension is replaced by an underscore.
+     *
+     * @param video the video to be processed.
+     * @param name the path of the video relative to the directory holding all the videos.
+     * @param directory the results directory.
+     * @return the summary of the video.
+     */
+    private VideoSummary process(File video, String name, File directory) {
+        DetectorSettings videoSettings = settings.copy();
+        videoSettings.setVideoPath(video.getPath());
+        videoSettings.setSavePath(new File(directory, resultsName(name)).getPath());
+        // Every camera keeps its own model of the background in the directory of the models
+        if (settings.getModelPath() != null) {
+            File modelFile = new File(settings.getModelPath(), cameraName(video, name) + ".model");
+            modelFile.getParentFile().mkdirs();
+            videoSettings.setModelPath(modelFile.getPath());
+        }
+        // The videos are already processed in parallel, so every video is processed in one piece
+        videoSettings.setSegments(1);
+
+        HeadlessRunner runner = new HeadlessRunner(videoSettings);
+        runner.setPipelined(false);
+
+        long startTime = System.currentTimeMillis();
+        activeRunners.put(name, runner);
+        startTimes.put(name, startTime);
+        System.out.println("Started " + name);
+        try {
+            TrafficCounter counter = runner.run();
+            VideoSummary summary = VideoSummary.of(name, counter, (System.currentTimeMillis() - startTime) / 1000.0);
+            System.out.printf(Locale.ROOT, "Finished %s: %d vehicles, %d frames, %.1f fps%n",
+                    name, summary.getVehicles(), summary.getFrames(), summary.getFramesPerSecond());
+            return summary;
+        } catch (Exception e) {
+            System.err.println("Failed " + name + ": " + e.getMessage());
+            return VideoSummary.failed(name, e.toString());
+        } finally {
+            activeRunners.remove(name);
+            startTimes.remove(name);
+        }
+    }
+
+    /**
+     * This method prints the progress and the throughput of every video which is being processed.
+     */
+    private void reportProgress() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, HeadlessRunner> entry : activeRunners.entrySet()) {
+            Long startTime = startTimes.get(entry.getKey());
+            if (startTime == null)
+                continue;
+            HeadlessRunner runner = entry.getValue();
+            int processed = runner.getProcessedFrames();
+            int total = runner.getTotalFrames();
+            double seconds = Math.max((now - startTime) / 1000.0, 0.001);
+            System.out.printf(Locale.ROOT, "%s: %d/%s frames (%s), %.1f fps%n", entry.getKey(), processed,
+                    total > 0 ? Integer.toString(total) : "?",
+                    total > 0 ? String.format(Locale.ROOT, "%.0f%%", 100.0 * processed / total) : "?",
+                    processed / seconds);
+        }
+    }
+}
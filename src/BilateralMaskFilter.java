@@ -0,0 +1,17 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+/**
+ * The BilateralMaskFilter class smooths the foreground mask with a bilateral filter,
+ * which is how the masks have always been cleaned before the contours are searched.
+ * It is the most expensive of the filters.
+ */
+public class BilateralMaskFilter implements MaskFilter {
+
+    @Override
+    public void filter(Mat mask, Mat destination) {
+        Imgproc.bilateralFilter(mask, destination, 2, 1600, 400);
+    }
+}
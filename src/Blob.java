@@ -0,0 +1,37 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+
+/**
+ * The Blob class holds a connected region of the foreground mask found by the MaskRefiner,
+ * with its area, its bounding rectangle and its centroid already computed,
+ * so the detection does not have to search and measure the contours again.
+ * The coordinates are those of the whole frame, even when the mask covers only a region of the frame.
+ */
+public class Blob {
+
+    // The bounding rectangle of the region
+    public final Rect bounds;
+
+    // The number of pixels of the region
+    public final int area;
+
+    // The centroid of the region
+    public final double centroidX;
+    public final double centroidY;
+
+    /**
+     * Constructor for the Blob class.
+     *
+     * @param bounds the bounding rectangle of the region.
+     * @param area the number of pixels of the region.
+     * @param centroidX the horizontal coordinate of the centroid of the region.
+     * @param centroidY the vertical coordinate of the centroid of the region.
+     */
+    public Blob(Rect bounds, int area, double centroidX, double centroidY) {
+        this.bounds = bounds;
+        this.area = area;
+        this.centroidX = centroidX;
+        this.centroidY = centroidY;
+    }
+}
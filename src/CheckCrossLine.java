@@ -47,17 +47,17 @@ public class CheckCrossLine {
      * @return true if the line crosses the rectangle, false otherwise.
      */
     public boolean rectContainLine(Rect rect) {
-        // Calculate the center point of the rectangle
-        int PrA = (int) ((rect.tl().x + rect.br().x) / 2);      // X-coordinate of the center point
-        int PrB = (int) ((rect.tl().y + rect.br().y) / 2);      // Y-coordinate of the center point
+        // Calculate the center point of the rectangle, from its fields instead of the corner points, which would be new objects
+        int PrA = (int) ((rect.x + (double) (rect.x + rect.width)) / 2);      // X-coordinate of the center point
+        int PrB = (int) ((rect.y + (double) (rect.y + rect.height)) / 2);     // Y-coordinate of the center point
 
         // Calculate the top and bottom Y-coordinates of the rectangle
-        int pktCy = (int) (rect.tl().y); // Top Y-coordinate
-        int pktDy = (int) (rect.br().y); // Bottom Y-coordinate
+        int pktCy = rect.y; // Top Y-coordinate
+        int pktDy = rect.y + rect.height; // Bottom Y-coordinate
 
         // Calculate the left and right X-coordinates of the rectangle
-        int pktEx = (int) (rect.tl().x); // Left X-coordinate
-        int pktFx = (int) (rect.br().x); // Right X-coordinate
+        int pktEx = rect.x; // Left X-coordinate
+        int pktFx = rect.x + rect.width; // Right X-coordinate
 
         // Check if the line is not a point
         if (lBx != lAx && lBy != lAy) {
@@ -85,4 +85,42 @@ public class CheckCrossLine {
         } else
             return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * This method returns the signed distance of a point from the line, positive on one side of the line and negative on the other.
+     * It is used for finding the moment at which a moving point crosses the line.
+     *
+     * @param x The X-coordinate of the point.
+     * @param y The Y-coordinate of the point.
+     * @return The signed distance of the point from the line, or 0 if the line is a point.
+     */
+    public double signedDistance(double x, double y) {
+        double dx = l2.x - l1.x;
+        double dy = l2.y - l1.y;
+        double length = Math.hypot(dx, dy);
+        return length == 0 ? 0 : (dx * (y - l1.y) - dy * (x - l1.x)) / length;
+    }
+
+    /**
+     * This method finds where a point moving from one position to another crosses the line, within the ends of the line.
+     *
+     * @param x0 The X-coordinate of the first position.
+     * @param y0 The Y-coordinate of the first position.
+     * @param x1 The X-coordinate of the second position.
+     * @param y1 The Y-coordinate of the second position.
+     * @return The fraction of the movement, from 0 to 1, at which the point crosses the line,
+     * or NaN if the point does not cross the line between the two positions.
+     */
+    public double crossingFraction(double x0, double y0, double x1, double y1) {
+        double d0 = signedDistance(x0, y0);
+        double d1 = signedDistance(x1, y1);
+        if (d0 == d1 || (d0 > 0 && d1 > 0) || (d0 < 0 && d1 < 0))
+            return Double.NaN;
+        double fraction = d0 / (d0 - d1);
+        // The position of the crossing point along the line, from 0 at the first point of the line to 1 at the second one
+        double dx = l2.x - l1.x;
+        double dy = l2.y - l1.y;
+        double along = ((x0 + fraction * (x1 - x0) - l1.x) * dx + (y0 + fraction * (y1 - y0) - l1.y) * dy) / (dx * dx + dy * dy);
+        return along >= 0 && along <= 1 ? fraction : Double.NaN;
+    }
+}
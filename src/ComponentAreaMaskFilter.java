@@ -0,0 +1,73 @@
+// Importing the necessary libraries
+
+import org.opencv.core.CvType; // OpenCV library for handling types of matrices
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+/**
+ * The ComponentAreaMaskFilter class removes from the foreground mask the connected regions which are smaller than a minimum area.
+ * The contours of such regions would be dropped by the area threshold anyway, but they cost time in the search for the contours.
+ * The regions which are kept are written as they are, without smoothing their edges, so their areas do not change.
+ */
+public class ComponentAreaMaskFilter implements MaskFilter {
+
+    // The default smallest area of a region which is kept, in pixels
+    public static final int DEFAULT_MIN_AREA = 100;
+
+    // The smallest area of a region which is kept, in pixels
+    private final int minArea;
+
+    // The labels and the statistics of the connected regions
+    private final Mat labels = new Mat();
+    private final Mat stats = new Mat();
+    private final Mat centroids = new Mat();
+    // The buffers for reading the labels and the statistics and for writing the mask
+    private int[] labelData = new int[0];
+    private int[] statsData = new int[0];
+    private boolean[] isKept = new boolean[0];
+    private byte[] maskData = new byte[0];
+
+    /**
+     * Constructor for the ComponentAreaMaskFilter class.
+     *
+     * @param minArea the smallest area of a region which is kept, in pixels.
+     */
+    public ComponentAreaMaskFilter(int minArea) {
+        this.minArea = minArea;
+    }
+
+    @Override
+    public void filter(Mat mask, Mat destination) {
+        int count = Imgproc.connectedComponentsWithStats(mask, labels, stats, centroids, 8, CvType.CV_32S);
+        int length = mask.cols() * mask.rows();
+        if (labelData.length != length) {
+            labelData = new int[length];
+            maskData = new byte[length];
+        }
+        if (statsData.length < stats.rows() * stats.cols())
+            statsData = new int[stats.rows() * stats.cols()];
+        if (isKept.length < count)
+            isKept = new boolean[count];
+
+        stats.get(0, 0, statsData);
+        // The label 0 is the background
+        isKept[0] = false;
+        for (int label = 1; label < count; label++) {
+            isKept[label] = statsData[label * stats.cols() + Imgproc.CC_STAT_AREA] >= minArea;
+        }
+
+        labels.get(0, 0, labelData);
+        for (int i = 0; i < length; i++) {
+            maskData[i] = isKept[labelData[i]] ? (byte) -1 : 0;
+        }
+        destination.create(mask.rows(), mask.cols(), CvType.CV_8UC1);
+        destination.put(0, 0, maskData);
+    }
+
+    @Override
+    public void release() {
+        labels.release();
+        stats.release();
+        centroids.release();
+    }
+}
@@ -0,0 +1,82 @@
+// Importing the necessary libraries
+
+import java.io.File; // Java IO library for handling files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.util.concurrent.Executors; // Java Concurrent library for creating executors
+import java.util.concurrent.ScheduledExecutorService; // Java Concurrent library for running periodic tasks
+import java.util.concurrent.TimeUnit; // Java Concurrent library for handling time units
+import java.util.concurrent.atomic.AtomicReference; // Java Concurrent library for references swapped atomically
+
+/**
+ * The ConfigReloader class watches the configuration file of a headless run and reloads its thresholds when the file changes,
+ * so the thresholds of a long video can be tuned without restarting it and learning the background again.
+ * The new thresholds are swapped into the reference read by the pipeline, which picks them up at the start of the next frame.
+ */
+public class ConfigReloader {
+
+    // The interval of the checks of the configuration file in seconds
+    private static final int CHECK_INTERVAL = 2;
+
+    // The settings read from the configuration file
+    private final DetectorSettings settings;
+    // The reference to the current thresholds
+    private final AtomicReference<DetectorConfig> config;
+    // The configuration file
+    private final File file;
+
+    // The thread checking the configuration file, or null if the reloader is not running
+    private ScheduledExecutorService checker;
+    // The time of the last modification of the configuration file which has been read
+    private long lastModified;
+
+    /**
+     * Constructor for the ConfigReloader class.
+     *
+     * @param settings the settings read from the configuration file.
+     * @param config the reference to the current thresholds.
+     */
+    public ConfigReloader(DetectorSettings settings, AtomicReference<DetectorConfig> config) {
+        this.settings = settings;
+        this.config = config;
+        this.file = new File(settings.getConfigPath());
+    }
+
+    /**
+     * This method starts checking the configuration file periodically.
+     */
+    public void start() {
+        lastModified = file.lastModified();
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Config-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::check, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * This method reloads the thresholds if the configuration file has been modified since it was last read.
+     * A file which cannot be read or holds an invalid threshold is reported and the current thresholds are kept.
+     */
+    private void check() {
+        long modified = file.lastModified();
+        if (modified == lastModified)
+            return;
+        lastModified = modified;
+        try {
+            DetectorConfig reloaded = settings.reloadConfig();
+            DetectorConfig current = config.updateAndGet(previous -> previous.withThresholdsOf(reloaded));
+            System.out.printf("Reloaded the thresholds from %s (version %d)%n", file, current.getVersion());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot reload the thresholds from " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method stops checking the configuration file.
+     */
+    public void stop() {
+        if (checker != null)
+            checker.shutdownNow();
+    }
+}
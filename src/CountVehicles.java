@@ -11,14 +11,32 @@ import java.util.List; // Java utility library for handling List
  * The CountVehicles class is responsible for detecting and classifying vehicles in a video feed,
  * and determining when a vehicle crosses the counting line or the speed line.
  * It uses the OpenCV library for image processing.
+ * One instance is used for all the frames of a video, so its buffers are allocated once and reused for every frame,
+ * and the contours of the previous frame are released as soon as the next frame is processed.
  */
 public class CountVehicles {
+    // The colors of the counting line, the speed line and the bounding boxes
+    private static final Scalar COUNTING_LINE_COLOR = new Scalar(255, 255, 255);
+    private static final Scalar SPEED_LINE_COLOR = new Scalar(255, 255, 0);
+    private static final Scalar BOUNDING_BOX_COLOR = new Scalar(255, 100, 10);
+
     // Fields for storing image, contours and points for drawing lines
 // The image on which the vehicle detection and counting will be performed
     private Mat image;
 
     // A list of contours that pass the area threshold check and are considered as potential vehicles
     public List<MatOfPoint> goodContours = new ArrayList<MatOfPoint>();
+    // The bounding rectangles of the good contours (or of the good blobs), in the same order
+    private List<Rect> goodRects = new ArrayList<Rect>();
+    // The areas of the good contours (or of the good blobs), in the same order
+    private List<Double> goodAreas = new ArrayList<Double>();
+
+    // The list of all the contours found in the current frame, reused for every frame
+    private List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
+    // The hierarchy of the contours, reused for every frame
+    private Mat hierarchy = new Mat();
+    // The offset of the binary image in the image, reused for every frame
+    private Point offset = new Point();
 
     // The minimum area a contour must have to be considered a potential vehicle
     private int areaThreshold;
@@ -52,8 +70,8 @@ public class CountVehicles {
     // A flag indicating if a vehicle has crossed the speed line
     boolean crossingSpeedLine;
 
-    // The contour of the vehicle that is currently being processed
-    MatOfPoint contourVehicle;
+    // The area of the vehicle that is currently being processed
+    double vehicleArea;
 
     /**
      * Constructor for the CountVehicles class.
@@ -73,29 +91,81 @@ public class CountVehicles {
         this.checkSpeedLine = new CheckCrossLine(lineSpeed1, lineSpeed2);
     }
 
+    /**
+     * This method sets the thresholds used for detecting and classifying the vehicles in the next frames.
+     *
+     * @param areaThreshold the minimum area of a contour to be considered a vehicle.
+     * @param vehicleSizeThreshold the size threshold used for classifying the vehicles.
+     */
+    public void setThresholds(int areaThreshold, int vehicleSizeThreshold) {
+        this.areaThreshold = areaThreshold;
+        this.vehicleSizeThreshold = vehicleSizeThreshold;
+    }
+
+    /**
+     * This method sets the counting line and the speed line used in the next frames.
+     * The lines are checked again only if they have changed.
+     *
+     * @param lineCount1 the first point of the counting line.
+     * @param lineCount2 the second point of the counting line.
+     * @param lineSpeed1 the first point of the speed line.
+     * @param lineSpeed2 the second point of the speed line.
+     */
+    public void setLines(Point lineCount1, Point lineCount2, Point lineSpeed1, Point lineSpeed2) {
+        if (!lineCount1.equals(this.lineCount1) || !lineCount2.equals(this.lineCount2)) {
+            this.lineCount1 = lineCount1;
+            this.lineCount2 = lineCount2;
+            this.checkRectLine = new CheckCrossLine(lineCount1, lineCount2);
+        }
+        if (!lineSpeed1.equals(this.lineSpeed1) || !lineSpeed2.equals(this.lineSpeed2)) {
+            this.lineSpeed1 = lineSpeed1;
+            this.lineSpeed2 = lineSpeed2;
+            this.checkSpeedLine = new CheckCrossLine(lineSpeed1, lineSpeed2);
+        }
+    }
+
 
     /**
      * This method finds and draws contours on the given image.
      * It uses the OpenCV library to find contours in the binary image.
      * It draws lines on the image and adds contours that have an area greater than a certain threshold to the goodContours list.
+     * The contours of the previous frame are released first, and the flags of the previous frame are cleared,
+     * while the crossing flags are kept, so a vehicle which is still crossing a line is not counted again.
      *
      * @param image The image on which the vehicle detection and counting will be performed.
      * @param binary The binary image used for finding contours.
      * @return The image with the drawn contours and lines.
      */
     public Mat findAndDrawContours(Mat image, Mat binary) {
-        // List to store the contours found in the binary image
-        List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
+        return findAndDrawContours(image, binary, null);
+    }
+
+    /**
+     * This method finds and draws contours on the given image, when the binary image covers only a region of the image.
+     * The contours are found only in the region, but they are moved to the coordinates of the whole image,
+     * so the lines, the bounding boxes and the crossing checks are the same as for the whole image.
+     *
+     * @param image The image on which the vehicle detection and counting will be performed, or null if nothing is drawn.
+     * @param binary The binary image of the region used for finding contours.
+     * @param region The region of the image covered by the binary image, or null if it covers the whole image.
+     * @return The image with the drawn contours and lines.
+     */
+    public Mat findAndDrawContours(Mat image, Mat binary, Rect region) {
+        // Release the contours of the previous frame and clear the flags of the previous frame
+        releaseContours();
+        countingFlag = false;
+        speedFlag = false;
 
         // Set the class image field to the provided image
         this.image = image;
 
         // Find contours in the binary image
-        Imgproc.findContours(binary, contours, new Mat(), Imgproc.CHAIN_APPROX_NONE, Imgproc.CHAIN_APPROX_SIMPLE);
+        offset.x = region == null ? 0 : region.x;
+        offset.y = region == null ? 0 : region.y;
+        Imgproc.findContours(binary, contours, hierarchy, Imgproc.CHAIN_APPROX_NONE, Imgproc.CHAIN_APPROX_SIMPLE, offset);
 
         // Draw the lines for counting vehicles and measuring speed on the image
-        Imgproc.line(image, lineCount1, lineCount2, new Scalar(255, 255, 255), 1);
-        Imgproc.line(image, lineSpeed1, lineSpeed2, new Scalar(255, 255, 0), 1);
+        drawLines(image);
 
         // Iterate over the found contours
         for (int i = 0; i < contours.size(); i++) {
@@ -107,8 +177,12 @@ public class CountVehicles {
 
             // If the area of the current contour is greater than the area threshold, add it to the goodContours list and draw a bounding box around it
             if (currentArea > areaThreshold) {
-                goodContours.add(contours.get(i));
-                drawBoundingBox(currentContour);
+                Rect rectangle = Imgproc.boundingRect(currentContour);
+                goodContours.add(currentContour);
+                goodRects.add(rectangle);
+                goodAreas.add(currentArea);
+                if (image != null)
+                    Imgproc.rectangle(image, rectangle.tl(), rectangle.br(), BOUNDING_BOX_COLOR, 1);
             }
         }
 
@@ -116,22 +190,80 @@ public class CountVehicles {
         return image;
     }
 
+    /**
+     * This method draws the blobs found by the MaskRefiner on the given image, instead of searching the contours of the mask.
+     * The blobs already carry their areas and bounding rectangles, so only the blobs larger than the area threshold are kept,
+     * and the crossing checks and the classification use the bounding rectangles and the areas of the blobs.
+     * The contours of the previous frame are released first, and the flags of the previous frame are cleared,
+     * while the crossing flags are kept.
+     *
+     * @param image The image on which the blobs and the lines are drawn, or null if nothing is drawn.
+     * @param blobs The blobs of the foreground, in the coordinates of the image.
+     * @return The image with the drawn blobs and lines.
+     */
+    public Mat drawBlobs(Mat image, List<Blob> blobs) {
+        releaseContours();
+        countingFlag = false;
+        speedFlag = false;
+        this.image = image;
+        drawLines(image);
+
+        for (Blob blob : blobs) {
+            if (blob.area > areaThreshold) {
+                goodRects.add(blob.bounds);
+                goodAreas.add((double) blob.area);
+                if (image != null)
+                    Imgproc.rectangle(image, blob.bounds.tl(), blob.bounds.br(), BOUNDING_BOX_COLOR, 1);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * This method skips a frame in which the light of the whole scene has changed, so its contours are not vehicles.
+     * The contours of the previous frame are released and only the lines are drawn on the image.
+     * The crossing flags are kept, so a vehicle which was crossing a line before the change is not counted again after it.
+     *
+     * @param image The image on which the lines are drawn, or null if nothing is drawn.
+     * @return The image with the drawn lines.
+     */
+    public Mat skipFrame(Mat image) {
+        releaseContours();
+        countingFlag = false;
+        speedFlag = false;
+        this.image = image;
+        drawLines(image);
+        return image;
+    }
+
+    /**
+     * This method draws the counting line and the speed line on the image.
+     *
+     * @param image The image on which the lines are drawn, or null if nothing is drawn.
+     */
+    private void drawLines(Mat image) {
+        if (image == null)
+            return;
+        Imgproc.line(image, lineCount1, lineCount2, COUNTING_LINE_COLOR, 1);
+        Imgproc.line(image, lineSpeed1, lineSpeed2, SPEED_LINE_COLOR, 1);
+    }
+
     /**
      * This method checks if a vehicle should be added to the count.
-     * It iterates over the goodContours list, which contains contours that have passed the area threshold check.
-     * For each contour, it creates a bounding rectangle and checks if this rectangle contains the counting line.
-     * If it does, the contour is set as the current vehicle contour and the countingFlag is set to true.
+     * It iterates over the bounding rectangles of the contours (or blobs) that have passed the area threshold check,
+     * and checks if a rectangle contains the counting line.
+     * If it does, the area of the contour is set as the current vehicle area and the countingFlag is set to true.
      * If the countingFlag is true and the counting line was not previously crossed, the method returns true.
      * If the counting line was previously crossed, the method returns false.
-     * If none of the goodContours contain the counting line, the method resets the crossingLine flag and returns false.
+     * If none of the good rectangles contain the counting line, the method resets the crossingLine flag and returns false.
      *
      * @return true if a vehicle should be added to the count, false otherwise.
      */
     public boolean isVehicleToAdd() {
-        for (int i = 0; i < goodContours.size(); i++) {
-            Rect rectangle = Imgproc.boundingRect(goodContours.get(i));
+        for (int i = 0; i < goodRects.size(); i++) {
+            Rect rectangle = goodRects.get(i);
             if (checkRectLine.rectContainLine(rectangle)) {
-                contourVehicle = getGoodContours().get(i);
+                vehicleArea = goodAreas.get(i);
                 countingFlag = true;
                 break;
             }
@@ -152,7 +284,7 @@ public class CountVehicles {
 
     /**
      * This method classifies the vehicle based on the area of its contour.
-     * It uses the contour of the vehicle currently being processed.
+     * It uses the area of the vehicle currently being processed.
      * If the area of the contour is less than or equal to the vehicle size threshold, the vehicle is classified as a "Car".
      * If the area of the contour is less than or equal to 1.9 times the vehicle size threshold, the vehicle is classified as a "Van".
      * Otherwise, the vehicle is classified as a "Lorry".
@@ -160,7 +292,16 @@ public class CountVehicles {
      * @return The classification of the vehicle ("Car", "Van", or "Lorry").
      */
     public String classifier() {
-        double currentArea = Imgproc.contourArea(contourVehicle);
+        return classify(vehicleArea);
+    }
+
+    /**
+     * This method classifies a vehicle of the given area, in the same way as the classifier method.
+     *
+     * @param currentArea The area of the vehicle.
+     * @return The classification of the vehicle ("Car", "Van", or "Lorry").
+     */
+    public String classify(double currentArea) {
         if (currentArea <= (double) vehicleSizeThreshold)
             return "Car";
         else if (currentArea <= 1.9 * (double) vehicleSizeThreshold)
@@ -169,34 +310,42 @@ public class CountVehicles {
     }
 
     /**
-     * This method draws a bounding box around the given contour on the image.
-     * The bounding box is represented by a rectangle, which is calculated using the boundingRect method from the Imgproc class.
-     * The top left and bottom right points of the rectangle are used to draw the bounding box on the image.
-     * The color of the bounding box is specified by the Scalar object (255, 100, 10), which represents the color in BGR format.
-     *
-     * @param currentContour The contour for which the bounding box is to be drawn.
+     * This method releases the native memory of the contours found in the previous frame and clears the lists of contours.
      */
-    private void drawBoundingBox(MatOfPoint currentContour) {
-        Rect rectangle = Imgproc.boundingRect(currentContour);
-        Imgproc.rectangle(image, rectangle.tl(), rectangle.br(), new Scalar(255, 100, 10), 1);
+    private void releaseContours() {
+        for (MatOfPoint contour : contours) {
+            contour.release();
+        }
+        contours.clear();
+        goodContours.clear();
+        goodRects.clear();
+        goodAreas.clear();
+    }
 
+    /**
+     * This method releases the native memory of the contours and of the hierarchy.
+     * It is called when the video has finished.
+     */
+    public void release() {
+        releaseContours();
+        hierarchy.release();
     }
 
     /**
      * This method checks if a vehicle's speed should be measured.
-     * It iterates over the goodContours list, which contains contours that have passed the area threshold check.
-     * For each contour, it creates a bounding rectangle and checks if this rectangle contains the speed line.
+     * It iterates over the bounding rectangles of the contours (or blobs) that have passed the area threshold check,
+     * and checks if a rectangle contains the speed line.
      * If it does, the speedFlag is set to true.
      * If the speedFlag is true and the speed line was not previously crossed, the method returns true.
      * If the speed line was previously crossed, the method returns false.
-     * If none of the goodContours contain the speed line, the method resets the crossingSpeedLine flag and returns false.
+     * If none of the good rectangles contain the speed line, the method resets the crossingSpeedLine flag and returns false.
      *
      * @return true if a vehicle's speed should be measured, false otherwise.
      */
 
     public boolean isToSpeedMeasure() {
-        for (int i = 0; i < goodContours.size(); i++) {
-            Rect rectangle = Imgproc.boundingRect(goodContours.get(i));
+        for (int i = 0; i < goodRects.size(); i++) {
+            Rect rectangle = goodRects.get(i);
             if (checkSpeedLine.rectContainLine(rectangle)) {
                 speedFlag = true;
                 break;
@@ -234,6 +383,63 @@ public class CountVehicles {
         return goodContours;
     }
 
+    public List<Rect> getGoodRects() {
+        return goodRects;
+    }
+
+    public List<Double> getGoodAreas() {
+        return goodAreas;
+    }
+
+    /**
+     * The isOnCountingLine and isOnSpeedLine methods check whether a bounding rectangle contains the counting line
+     * or the speed line respectively, without changing the crossing flags.
+     * They are used when the vehicles are followed by tracks instead of the flags.
+     *
+     * @param rectangle The bounding rectangle of a vehicle.
+     * @return true if the rectangle contains the line, false otherwise.
+     */
+    public boolean isOnCountingLine(Rect rectangle) {
+        return checkRectLine.rectContainLine(rectangle);
+    }
+
+    public boolean isOnSpeedLine(Rect rectangle) {
+        return checkSpeedLine.rectContainLine(rectangle);
+    }
+
+    /**
+     * This method checks whether a bounding rectangle is within a margin of the counting line,
+     * measured from the edge of the rectangle nearest to the line.
+     * It is used for finding the vehicles approaching the counting line, which must not cross it between two processed frames.
+     *
+     * @param rectangle The bounding rectangle of a vehicle.
+     * @param margin The margin in pixels.
+     * @return true if the rectangle is within the margin of the line, false otherwise.
+     */
+    public boolean isNearCountingLine(Rect rectangle, double margin) {
+        double distance = Math.abs(checkRectLine.signedDistance(rectangle.x + rectangle.width / 2.0, rectangle.y + rectangle.height / 2.0));
+        return distance <= margin + Math.max(rectangle.width, rectangle.height) / 2.0;
+    }
+
+    public CheckCrossLine getCountingLine() {
+        return checkRectLine;
+    }
+
+    public CheckCrossLine getSpeedLine() {
+        return checkSpeedLine;
+    }
+
+    /**
+     * This method draws a label above a bounding rectangle on the image of the current frame, if it is drawn.
+     *
+     * @param rectangle The bounding rectangle.
+     * @param label The text of the label.
+     */
+    public void drawLabel(Rect rectangle, String label) {
+        if (image != null)
+            Imgproc.putText(image, label, new Point(rectangle.x, Math.max(10, rectangle.y - 3)), Core.FONT_HERSHEY_SIMPLEX, 0.4, BOUNDING_BOX_COLOR, 1);
+    }
+
     /**
      * In summary, the CountVehicles class is responsible
      * for detecting and classifying vehicles in a video feed,
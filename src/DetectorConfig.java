@@ -0,0 +1,119 @@
+/**
+ * The DetectorConfig class is an immutable snapshot of the thresholds which can be tuned while a video is processed:
+ * the image threshold and the history of the background subtraction, and the area threshold and the vehicle size threshold
+ * of the counting. A change creates a new snapshot with a higher version, which is swapped atomically into an AtomicReference,
+ * so the processing threads never see half of a change. The pipeline picks the snapshot up at the start of every frame,
+ * and every stage uses the snapshot of the frame it is processing.
+ */
+public final class DetectorConfig {
+
+    // The version of the snapshot, raised by every change
+    private final long version;
+    // The image threshold for the background subtraction
+    private final double imageThreshold;
+    // The history for the background subtraction
+    private final int history;
+    // The area threshold for detecting vehicles
+    private final int areaThreshold;
+    // The vehicle size threshold for classifying the vehicles
+    private final int vehicleSizeThreshold;
+
+    /**
+     * Constructor for the DetectorConfig class, which creates the first version of the thresholds.
+     *
+     * @param imageThreshold the image threshold for the background subtraction.
+     * @param history the history for the background subtraction.
+     * @param areaThreshold the area threshold for detecting vehicles.
+     * @param vehicleSizeThreshold the vehicle size threshold for classifying the vehicles.
+     */
+    public DetectorConfig(double imageThreshold, int history, int areaThreshold, int vehicleSizeThreshold) {
+        this(0, imageThreshold, history, areaThreshold, vehicleSizeThreshold);
+    }
+
+    private DetectorConfig(long version, double imageThreshold, int history, int areaThreshold, int vehicleSizeThreshold) {
+        this.version = version;
+        this.imageThreshold = imageThreshold;
+        this.history = history;
+        this.areaThreshold = areaThreshold;
+        this.vehicleSizeThreshold = vehicleSizeThreshold;
+    }
+
+    /**
+     * The with methods return a snapshot with one threshold changed and the next version,
+     * or this snapshot if the threshold has not changed.
+     *
+     * @param imageThreshold the new image threshold.
+     * @return the snapshot with the new threshold.
+     */
+    public DetectorConfig withImageThreshold(double imageThreshold) {
+        if (imageThreshold == this.imageThreshold)
+            return this;
+        return new DetectorConfig(version + 1, imageThreshold, history, areaThreshold, vehicleSizeThreshold);
+    }
+
+    public DetectorConfig withHistory(int history) {
+        if (history == this.history)
+            return this;
+        return new DetectorConfig(version + 1, imageThreshold, history, areaThreshold, vehicleSizeThreshold);
+    }
+
+    public DetectorConfig withAreaThreshold(int areaThreshold) {
+        if (areaThreshold == this.areaThreshold)
+            return this;
+        return new DetectorConfig(version + 1, imageThreshold, history, areaThreshold, vehicleSizeThreshold);
+    }
+
+    public DetectorConfig withVehicleSizeThreshold(int vehicleSizeThreshold) {
+        if (vehicleSizeThreshold == this.vehicleSizeThreshold)
+            return this;
+        return new DetectorConfig(version + 1, imageThreshold, history, areaThreshold, vehicleSizeThreshold);
+    }
+
+    /**
+     * This method returns a snapshot with all the thresholds of another snapshot and the next version,
+     * or this snapshot if none of the thresholds has changed. It is used when the thresholds are reloaded together.
+     *
+     * @param other the snapshot holding the new thresholds.
+     * @return the snapshot with the new thresholds.
+     */
+    public DetectorConfig withThresholdsOf(DetectorConfig other) {
+        if (other.imageThreshold == imageThreshold && other.history == history
+                && other.areaThreshold == areaThreshold && other.vehicleSizeThreshold == vehicleSizeThreshold)
+            return this;
+        return new DetectorConfig(version + 1, other.imageThreshold, other.history, other.areaThreshold, other.vehicleSizeThreshold);
+    }
+
+    /**
+     * This method applies the thresholds of the background subtraction which differ from the previous snapshot to the video processor.
+     * The history is set only if it has changed, so the model of the background is kept.
+     *
+     * @param videoProcessor the video processor.
+     * @param previous the snapshot applied before, or null if none has been applied.
+     */
+    public void applyTo(VideoProcessor videoProcessor, DetectorConfig previous) {
+        if (previous == null || previous.imageThreshold != imageThreshold)
+            videoProcessor.setImageThreshold(imageThreshold);
+        if (previous == null || previous.history != history)
+            videoProcessor.setHistory(history);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public double getImageThreshold() {
+        return imageThreshold;
+    }
+
+    public int getHistory() {
+        return history;
+    }
+
+    public int getAreaThreshold() {
+        return areaThreshold;
+    }
+
+    public int getVehicleSizeThreshold() {
+        return vehicleSizeThreshold;
+    }
+}
@@ -0,0 +1,533 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Point; // OpenCV library for handling points in 2D space
+
+import java.io.File; // Java IO library for handling files
+import java.io.FileInputStream; // Java IO library for reading files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.io.InputStream; // Java IO library for reading streams
+import java.util.Properties; // Java Util library for handling key-value configuration files
+
+/**
+ * The DetectorSettings class holds everything needed to process a video without the GUI:
+ * the paths of the video and the results, the counting and speed lines, the distance between them,
+ * the thresholds of the detection and the output format.
+ * The settings can be read from a configuration file and from the command-line arguments,
+ * which use the same keys, e.g. "--countingLine=100,200,300,200".
+ */
+public class DetectorSettings {
+
+    // The paths for the video and the results
+    private String videoPath; // The path of the video
+    private String savePath; // The path of the directory for saving the results
+
+    // The points for the counting line
+    private Point lineCount1;
+    private Point lineCount2;
+    // The points for the speed line
+    private Point lineSpeed1;
+    private Point lineSpeed2;
+
+    // The distance between the counting line and the speed line
+    private double distanceCS = 6.0;
+
+    // Settings for the detection process
+    private int areaThreshold = 1700; // The area threshold for detecting vehicles
+    private double imageThreshold = 20; // The image threshold for the background subtraction
+    private int history = 1500; // The history for the background subtraction
+    private int vehicleSizeThreshold = 20000; // The vehicle size threshold for classifying the vehicles
+    private BackgroundEngine engine = BackgroundEngine.MOG2; // The model of the background subtraction
+    private MaskCleanup maskFilter = MaskCleanup.BILATERAL; // The filter cleaning the foreground masks
+    private int pyramidLevels = 0; // The number of pyramid levels on which the model runs, or 0 for the full resolution
+    private TrackingMode trackingMode = TrackingMode.LINES; // The way in which the vehicles are followed between the lines
+    private boolean isMaskRefined = false; // Whether the shadows are removed and the blobs are found instead of the contours
+    private boolean isGrayscale = false; // Whether the frames are processed in grayscale from the decoding onward
+    private boolean isIlluminationCheck = true; // Whether the frames in which the light of the whole scene changes are skipped
+    // The file of the model of the background, restored before and saved after the video, or null to learn it from the video;
+    // in the batch mode, the directory in which the model of every video is kept
+    private String modelPath;
+
+    // The format for saving the results, either "XLS" or "CSV"
+    private String writeFlag = ResultsWriter.xlsWriteResults;
+    // Whether to save the processed video
+    private boolean isToSave = false;
+
+    // The videos or directories of videos processed in the batch mode, separated by commas
+    private String batch;
+    // The number of videos processed at the same time in the batch mode, or 0 for one per core
+    private int threads = 0;
+    // The number of segments of a single video processed at the same time, or 1 to process the video in one piece
+    private int segments = 1;
+    // The largest number of frames from one processed frame to the next one when the processing falls behind the video,
+    // or 1 to process every frame
+    private int maxFrameStep = 1;
+    // The number of frames from one processed frame to the next one, also while a vehicle is between the lines,
+    // or 1 to process every frame; meant for the KALMAN tracking, which predicts the vehicles over the skipped frames
+    private int detectionStep = 1;
+    // Whether only the band around the lines is processed, and the padding of the band in pixels
+    private boolean isRegionOfInterest = false;
+    private int roiPadding = RegionOfInterest.DEFAULT_PADDING;
+
+    // The configuration file from which the settings have been read, or null, and the arguments which override it
+    private String configPath;
+    private Properties arguments = new Properties();
+
+    /**
+     * This method creates the settings from the command-line arguments.
+     * Every argument has the form "--key=value".
+     * If the "--config" argument is given, the settings are first read from that configuration file
+     * and then overridden by the other arguments.
+     *
+     * @param args the command-line arguments.
+     * @return the settings.
+     * @throws IOException if the configuration file cannot be read.
+     * @throws IllegalArgumentException if an argument is not valid.
+     */
+    public static DetectorSettings fromArguments(String[] args) throws IOException {
+        Properties properties = new Properties();
+        Properties arguments = new Properties();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            int split = arg.indexOf('=');
+            arguments.setProperty(arg.substring(2, split), arg.substring(split + 1));
+        }
+
+        String config = arguments.getProperty("config");
+        if (config != null) {
+            try (InputStream in = new FileInputStream(config)) {
+                properties.load(in);
+            }
+        }
+        properties.putAll(arguments);
+
+        DetectorSettings settings = new DetectorSettings();
+        settings.apply(properties);
+        settings.configPath = config;
+        settings.arguments = arguments;
+        return settings;
+    }
+
+    /**
+     * This method reads the configuration file again and returns its thresholds, still overridden by the command-line arguments.
+     * The other settings cannot be changed while a video is processed, so they are ignored.
+     *
+     * @return the thresholds of the configuration file, with the first version.
+     * @throws IOException if the configuration file cannot be read.
+     * @throws IllegalArgumentException if a threshold in the file is not valid.
+     */
+    public DetectorConfig reloadConfig() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(configPath)) {
+            properties.load(in);
+        }
+        properties.putAll(arguments);
+
+        DetectorSettings reloaded = copy();
+        reloaded.apply(properties);
+        return reloaded.createConfig();
+    }
+
+    /**
+     * This method creates the snapshot of the thresholds which can be tuned while a video is processed.
+     *
+     * @return the thresholds, with the first version.
+     */
+    public DetectorConfig createConfig() {
+        return new DetectorConfig(imageThreshold, history, areaThreshold, vehicleSizeThreshold);
+    }
+
+    /**
+     * This method sets the settings from the given properties.
+     * The properties which are not given keep their current values.
+     *
+     * @param properties the properties to be applied.
+     * @throws IllegalArgumentException if a property is not valid.
+     */
+    public void apply(Properties properties) {
+        videoPath = properties.getProperty("video", videoPath);
+        savePath = properties.getProperty("output", savePath);
+
+        String countingLine = properties.getProperty("countingLine");
+        if (countingLine != null) {
+            Point[] line = parseLine("countingLine", countingLine);
+            lineCount1 = line[0];
+            lineCount2 = line[1];
+        }
+        String speedLine = properties.getProperty("speedLine");
+        if (speedLine != null) {
+            Point[] line = parseLine("speedLine", speedLine);
+            lineSpeed1 = line[0];
+            lineSpeed2 = line[1];
+        }
+
+        distanceCS = parseDouble(properties, "distance", distanceCS);
+        areaThreshold = parseInt(properties, "areaThreshold", areaThreshold);
+        imageThreshold = parseDouble(properties, "imageThreshold", imageThreshold);
+        history = parseInt(properties, "history", history);
+        vehicleSizeThreshold = parseInt(properties, "vehicleSizeThreshold", vehicleSizeThreshold);
+        String engineName = properties.getProperty("engine");
+        if (engineName != null)
+            engine = BackgroundEngine.fromName(engineName);
+        String maskFilterName = properties.getProperty("maskFilter");
+        if (maskFilterName != null)
+            maskFilter = MaskCleanup.fromName(maskFilterName);
+        pyramidLevels = parseInt(properties, "pyramidLevels", pyramidLevels);
+        String trackingName = properties.getProperty("tracking");
+        if (trackingName != null)
+            trackingMode = TrackingMode.fromName(trackingName);
+        isMaskRefined = Boolean.parseBoolean(properties.getProperty("refineMask", Boolean.toString(isMaskRefined)));
+        isGrayscale = Boolean.parseBoolean(properties.getProperty("grayscale", Boolean.toString(isGrayscale)));
+        isIlluminationCheck = Boolean.parseBoolean(properties.getProperty("illuminationCheck", Boolean.toString(isIlluminationCheck)));
+        modelPath = properties.getProperty("model", modelPath);
+
+        String format = properties.getProperty("format");
+        if (format != null) {
+            if (format.equalsIgnoreCase(ResultsWriter.xlsWriteResults))
+                writeFlag = ResultsWriter.xlsWriteResults;
+            else if (format.equalsIgnoreCase(ResultsWriter.csvWriteResults))
+                writeFlag = ResultsWriter.csvWriteResults;
+            else
+                throw new IllegalArgumentException("Invalid format: " + format);
+        }
+        isToSave = Boolean.parseBoolean(properties.getProperty("saveVideo", Boolean.toString(isToSave)));
+
+        batch = properties.getProperty("batch", batch);
+        threads = parseInt(properties, "threads", threads);
+        segments = parseInt(properties, "segments", segments);
+        maxFrameStep = parseInt(properties, "maxFrameStep", maxFrameStep);
+        detectionStep = parseInt(properties, "detectionStep", detectionStep);
+        isRegionOfInterest = Boolean.parseBoolean(properties.getProperty("roi", Boolean.toString(isRegionOfInterest)));
+        roiPadding = parseInt(properties, "roiPadding", roiPadding);
+    }
+
+    /**
+     * This method creates a copy of the settings, which can be changed without changing these settings.
+     *
+     * @return the copy of the settings.
+     */
+    public DetectorSettings copy() {
+        DetectorSettings copy = new DetectorSettings();
+        copy.videoPath = videoPath;
+        copy.savePath = savePath;
+        copy.lineCount1 = lineCount1;
+        copy.lineCount2 = lineCount2;
+        copy.lineSpeed1 = lineSpeed1;
+        copy.lineSpeed2 = lineSpeed2;
+        copy.distanceCS = distanceCS;
+        copy.areaThreshold = areaThreshold;
+        copy.imageThreshold = imageThreshold;
+        copy.history = history;
+        copy.vehicleSizeThreshold = vehicleSizeThreshold;
+        copy.engine = engine;
+        copy.maskFilter = maskFilter;
+        copy.pyramidLevels = pyramidLevels;
+        copy.trackingMode = trackingMode;
+        copy.isMaskRefined = isMaskRefined;
+        copy.isGrayscale = isGrayscale;
+        copy.isIlluminationCheck = isIlluminationCheck;
+        copy.modelPath = modelPath;
+        copy.writeFlag = writeFlag;
+        copy.isToSave = isToSave;
+        copy.batch = batch;
+        copy.threads = threads;
+        copy.segments = segments;
+        copy.maxFrameStep = maxFrameStep;
+        copy.detectionStep = detectionStep;
+        copy.isRegionOfInterest = isRegionOfInterest;
+        copy.roiPadding = roiPadding;
+        copy.configPath = configPath;
+        copy.arguments = arguments;
+        return copy;
+    }
+
+    /**
+     * This method checks that the settings needed for processing a video are given.
+     *
+     * @throws IllegalArgumentException if a required setting is missing.
+     */
+    public void validate() {
+        if (videoPath == null && batch == null)
+            throw new IllegalArgumentException("Missing setting: video or batch");
+        if (savePath == null)
+            throw new IllegalArgumentException("Missing setting: output");
+        if (lineCount1 == null)
+            throw new IllegalArgumentException("Missing setting: countingLine");
+        if (lineSpeed1 == null)
+            throw new IllegalArgumentException("Missing setting: speedLine");
+        if (segments < 1)
+            throw new IllegalArgumentException("Invalid segments: " + segments);
+        if (maxFrameStep < 1)
+            throw new IllegalArgumentException("Invalid maxFrameStep: " + maxFrameStep);
+        if (detectionStep < 1)
+            throw new IllegalArgumentException("Invalid detectionStep: " + detectionStep);
+        if (pyramidLevels < 0 || pyramidLevels > 2)
+            throw new IllegalArgumentException("Invalid pyramidLevels, expected 0, 1 or 2: " + pyramidLevels);
+        if (roiPadding < 0)
+            throw new IllegalArgumentException("Invalid roiPadding: " + roiPadding);
+        if (segments > 1 && isToSave)
+            throw new IllegalArgumentException("The processed video cannot be saved when the video is split into segments");
+    }
+
+    /**
+     * This method parses a line given as "x1,y1,x2,y2".
+     *
+     * @param key the key of the line, used in the error message.
+     * @param value the value to be parsed.
+     * @return the two points of the line.
+     */
+    private static Point[] parseLine(String key, String value) {
+        String[] coordinates = value.split(",");
+        if (coordinates.length != 4)
+            throw new IllegalArgumentException("Invalid " + key + ", expected x1,y1,x2,y2: " + value);
+        try {
+            return new Point[]{
+                    new Point(Double.parseDouble(coordinates[0].trim()), Double.parseDouble(coordinates[1].trim())),
+                    new Point(Double.parseDouble(coordinates[2].trim()), Double.parseDouble(coordinates[3].trim()))
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ", expected x1,y1,x2,y2: " + value);
+        }
+    }
+
+    /**
+     * The parseInt and parseDouble methods read a number from the properties.
+     *
+     * @param properties the properties from which the number is read.
+     * @param key the key of the number.
+     * @param defaultValue the value returned if the number is not given.
+     * @return the number.
+     */
+    private static int parseInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+
+    private static double parseDouble(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+
+    public String getConfigPath() {
+        return configPath;
+    }
+
+    public String getVideoPath() {
+        return videoPath;
+    }
+
+    public void setVideoPath(String videoPath) {
+        this.videoPath = videoPath;
+    }
+
+    public String getSavePath() {
+        return savePath;
+    }
+
+    public void setSavePath(String savePath) {
+        this.savePath = savePath;
+    }
+
+    public Point getLineCount1() {
+        return lineCount1;
+    }
+
+    public Point getLineCount2() {
+        return lineCount2;
+    }
+
+    public Point getLineSpeed1() {
+        return lineSpeed1;
+    }
+
+    public Point getLineSpeed2() {
+        return lineSpeed2;
+    }
+
+    public double getDistance() {
+        return distanceCS;
+    }
+
+    public int getAreaThreshold() {
+        return areaThreshold;
+    }
+
+    public double getImageThreshold() {
+        return imageThreshold;
+    }
+
+    public int getHistory() {
+        return history;
+    }
+
+    public int getVehicleSizeThreshold() {
+        return vehicleSizeThreshold;
+    }
+
+    public BackgroundEngine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(BackgroundEngine engine) {
+        this.engine = engine;
+    }
+
+    public MaskCleanup getMaskFilter() {
+        return maskFilter;
+    }
+
+    public void setMaskFilter(MaskCleanup maskFilter) {
+        this.maskFilter = maskFilter;
+    }
+
+    public String getModelPath() {
+        return modelPath;
+    }
+
+    public void setModelPath(String modelPath) {
+        this.modelPath = modelPath;
+    }
+
+    /**
+     * This method restores the model of the background of the video processor from the model file, if the file exists.
+     *
+     * @param videoProcessor the video processor whose model is restored.
+     * @return true if the model has been restored, false if there is no model file or it cannot be used.
+     * @throws IOException if the model file cannot be read.
+     */
+    public boolean restoreModel(VideoProcessor videoProcessor) throws IOException {
+        if (modelPath == null || !new File(modelPath).isFile())
+            return false;
+        return videoProcessor.loadModel(new File(modelPath));
+    }
+
+    /**
+     * This method saves the model of the background of the video processor to the model file, if it is set.
+     *
+     * @param videoProcessor the video processor whose model is saved.
+     * @throws IOException if the model file cannot be written.
+     */
+    public void saveModel(VideoProcessor videoProcessor) throws IOException {
+        if (modelPath != null)
+            videoProcessor.saveModel(new File(modelPath));
+    }
+
+    public int getPyramidLevels() {
+        return pyramidLevels;
+    }
+
+    public TrackingMode getTrackingMode() {
+        return trackingMode;
+    }
+
+    /**
+     * This method creates the tracker of the selected tracking mode for the frames of the pipeline.
+     *
+     * @return the new tracker, or null if the crossings of the lines are kept as flags.
+     */
+    public VehicleTracker createTracker() {
+        return trackingMode.create(FramePipeline.PROCESSING_SIZE);
+    }
+
+    public boolean isMaskRefined() {
+        return isMaskRefined;
+    }
+
+    /**
+     * This method creates the refiner of the foreground masks, if the shadows are removed and the blobs are found.
+     *
+     * @return the new refiner, or null if the contours of the filtered masks are searched.
+     */
+    public MaskRefiner createMaskRefiner() {
+        return isMaskRefined ? new MaskRefiner(ComponentAreaMaskFilter.DEFAULT_MIN_AREA) : null;
+    }
+
+    public boolean isGrayscale() {
+        return isGrayscale;
+    }
+
+    public boolean isIlluminationCheck() {
+        return isIlluminationCheck;
+    }
+
+    /**
+     * This method creates the monitor of the changes of the light of the whole scene, if such frames are skipped.
+     *
+     * @return the new monitor, or null if every frame is processed.
+     */
+    public IlluminationMonitor createIlluminationMonitor() {
+        return isIlluminationCheck ? new IlluminationMonitor() : null;
+    }
+
+    /**
+     * This method creates the video processor of the selected engine with the image threshold and the history.
+     * If pyramid levels are set, the engine runs on the downsampled image and the foreground is refined at the full resolution.
+     *
+     * @return the new video processor.
+     */
+    public VideoProcessor createVideoProcessor() {
+        VideoProcessor videoProcessor = engine.create(imageThreshold, history);
+        return pyramidLevels > 0 ? new PyramidBackground(videoProcessor, pyramidLevels, imageThreshold) : videoProcessor;
+    }
+
+    public String getWriteFlag() {
+        return writeFlag;
+    }
+
+    public boolean isToSave() {
+        return isToSave;
+    }
+
+    public String getBatch() {
+        return batch;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    public void setSegments(int segments) {
+        this.segments = segments;
+    }
+
+    public int getMaxFrameStep() {
+        return maxFrameStep;
+    }
+
+    public int getDetectionStep() {
+        return detectionStep;
+    }
+
+    public boolean isRegionOfInterest() {
+        return isRegionOfInterest;
+    }
+
+    public int getRoiPadding() {
+        return roiPadding;
+    }
+
+    /**
+     * This method creates the region of interest around the lines, if only the band around the lines is processed.
+     *
+     * @return the region of interest, or null if the whole frames are processed.
+     */
+    public RegionOfInterest createRegionOfInterest() {
+        if (!isRegionOfInterest)
+            return null;
+        RegionOfInterest regionOfInterest = new RegionOfInterest(roiPadding, FramePipeline.PROCESSING_SIZE);
+        regionOfInterest.setLines(lineCount1, lineCount2, lineSpeed1, lineSpeed2);
+        return regionOfInterest;
+    }
+}
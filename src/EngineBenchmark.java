@@ -0,0 +1,134 @@
+// Importing the necessary libraries
+
+import com.opencsv.CSVWriter; // Library for writing to CSV files
+import jxl.write.WriteException; // JExcel library for handling exceptions while writing to Excel
+
+import java.io.File; // Java IO library for handling files
+import java.io.FileWriter; // Java IO library for writing to files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+import java.util.List; // Java Util library for handling lists
+import java.util.Locale; // Java Util library for formatting numbers
+
+/**
+ * The EngineBenchmark class compares the background engines and the mask filters on a sample video.
+ * Every combination of an engine and a filter processes the whole video in the calling thread with the same settings,
+ * and the throughput and the counts of every combination are printed next to the counts of the first one, the reference.
+ * The results of every combination are written to a subdirectory of the results directory named after it,
+ * and the table of all the combinations is recorded in the "Benchmark.csv" file of the results directory.
+ * Every combination starts with an empty model of the background, so a saved model is neither restored nor written.
+ *
+ * It takes the same arguments as the HeadlessApplication, "--engines=MOG2,JAVA_AVERAGE,..." for the engines to be compared,
+ * by default only the engine of the settings, and "--filters=BILATERAL,OPEN_CLOSE,..." for the mask filters to be compared,
+ * by default only the filter of the settings.
+ */
+public class EngineBenchmark {
+    // Static initializer block to load the OpenCV library
+    static {
+        Application.loadNativeLibrary();
+    }
+
+    /**
+     * The main method of the benchmark.
+     *
+     * @param args the command-line arguments.
+     * @throws IOException if the video cannot be opened or the results cannot be written.
+     * @throws WriteException if an error occurs while writing to an Excel file.
+     */
+    public static void main(String[] args) throws IOException, WriteException {
+        List<BackgroundEngine> engines = new ArrayList<>();
+        List<MaskCleanup> filters = new ArrayList<>();
+        List<String> settingsArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--engines=")) {
+                for (String name : arg.substring("--engines=".length()).split(",")) {
+                    engines.add(BackgroundEngine.fromName(name));
+                }
+            } else if (arg.startsWith("--filters=")) {
+                for (String name : arg.substring("--filters=".length()).split(",")) {
+                    filters.add(MaskCleanup.fromName(name));
+                }
+            } else {
+                settingsArgs.add(arg);
+            }
+        }
+        DetectorSettings settings = DetectorSettings.fromArguments(settingsArgs.toArray(new String[0]));
+        settings.validate();
+        if (engines.isEmpty())
+            engines.add(settings.getEngine());
+        if (filters.isEmpty())
+            filters.add(settings.getMaskFilter());
+
+        System.out.printf("%-25s %8s %8s %6s %6s %8s %10s %10s%n",
+                "Engine/filter", "fps", "speedup", "cars", "vans", "lorries", "agreement", "speed diff");
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[]{"Engine/filter", "FPS", "Speedup", "Cars", "Vans", "Lorries", "Agreement [%]", "Speed difference [km/h]"});
+        double referenceFPS = 0;
+        TrafficCounter reference = null;
+        for (BackgroundEngine engine : engines) {
+            for (MaskCleanup filter : filters) {
+                String name = engine.name() + "/" + filter.name();
+                DetectorSettings benchmarkSettings = settings.copy();
+                benchmarkSettings.setEngine(engine);
+                benchmarkSettings.setMaskFilter(filter);
+                // A model saved by the previous combination would warm the next one up, or not fit its engine at all
+                benchmarkSettings.setModelPath(null);
+                benchmarkSettings.setSavePath(new File(settings.getSavePath(), engine.name() + "_" + filter.name()).getPath());
+
+                HeadlessRunner runner = new HeadlessRunner(benchmarkSettings);
+                runner.setPipelined(false);
+                long startTime = System.nanoTime();
+                TrafficCounter result = runner.run();
+                double fps = result.getFrameCount() / Math.max((System.nanoTime() - startTime) / 1e9, 0.001);
+
+                if (reference == null) {
+                    reference = result;
+                    referenceFPS = fps;
+                }
+                double agreement = agreement(result, reference) * 100;
+                double speedDifference = averageSpeed(result) - averageSpeed(reference);
+                System.out.printf("%-25s %8.1f %7.2fx %6d %6d %8d %9.1f%% %9.1f%n",
+                        name, fps, fps / referenceFPS, result.getCars(), result.getVans(), result.getLorries(),
+                        agreement, speedDifference);
+                rows.add(new String[]{name, String.format(Locale.ROOT, "%.1f", fps), String.format(Locale.ROOT, "%.2f", fps / referenceFPS),
+                        Integer.toString(result.getCars()), Integer.toString(result.getVans()), Integer.toString(result.getLorries()),
+                        String.format(Locale.ROOT, "%.1f", agreement), String.format(Locale.ROOT, "%.1f", speedDifference)});
+            }
+        }
+
+        try (CSVWriter writer = new CSVWriter(new FileWriter(new File(settings.getSavePath(), "Benchmark.csv")), '\t')) {
+            writer.writeAll(rows);
+        }
+    }
+
+    /**
+     * This method returns how well the counts of a result agree with the counts of the reference,
+     * as one minus the sum of the differences of the counts of every type divided by the total count of the reference.
+     *
+     * @param result the counter of the engine.
+     * @param reference the counter of the reference engine.
+     * @return the agreement, 1 if all the counts are equal.
+     */
+    private static double agreement(TrafficCounter result, TrafficCounter reference) {
+        int total = reference.getCars() + reference.getVans() + reference.getLorries();
+        int difference = Math.abs(result.getCars() - reference.getCars())
+                + Math.abs(result.getVans() - reference.getVans())
+                + Math.abs(result.getLorries() - reference.getLorries());
+        return total == 0 ? (difference == 0 ? 1 : 0) : 1 - (double) difference / total;
+    }
+
+    /**
+     * This method returns the average speed of all the measured vehicles.
+     *
+     * @param counter the counter of the vehicles.
+     * @return the average speed in km/h, or 0 if no speed has been measured.
+     */
+    private static double averageSpeed(TrafficCounter counter) {
+        int measured = counter.getMeasuredCars() + counter.getMeasuredVans() + counter.getMeasuredLorries();
+        if (measured == 0)
+            return 0;
+        return (counter.getAverageSpeedCar() * counter.getMeasuredCars()
+                + counter.getAverageSpeedVan() * counter.getMeasuredVans()
+                + counter.getAverageSpeedLorry() * counter.getMeasuredLorries()) / measured;
+    }
+}
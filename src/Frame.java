@@ -0,0 +1,124 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+import org.opencv.imgproc.Imgproc; // OpenCV library for handling image processing functionalities
+
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+import java.util.List; // Java Util library for handling lists
+
+/**
+ * The Frame class holds the buffers of a single video frame while it travels through the FramePipeline.
+ * Frames are pooled by the pipeline, so their matrices are allocated once and overwritten for every new frame.
+ */
+public class Frame {
+
+    // The frame as read from the video, in the size of the video
+    public final Mat raw = new Mat();
+
+    // The frame resized to the processing size, with a single channel in the grayscale mode
+    public final Mat image = new Mat();
+
+    // The frame as read from the video converted to grayscale, used only in the grayscale mode
+    public final Mat rawGray = new Mat();
+
+    // The frame resized to the processing size in colour, produced from the raw frame only when it is asked for in the grayscale mode
+    private final Mat colour = new Mat();
+    // Whether the colour image holds the current frame
+    private boolean hasColour;
+
+    // Whether the image of the frame has a single channel, so the colour image is produced separately
+    public boolean isGrayscale;
+
+    // The foreground mask of the frame after the background subtraction and filtering, of the size of the region
+    public final Mat foreground = new Mat();
+
+    // The region of the image which has been processed, or null if the whole image has been processed
+    public Rect region;
+
+    // The view of the region of the image, kept between the frames as long as the region and the image buffer do not change
+    private Mat regionView;
+    // The region and the address of the image buffer of the view
+    private Rect regionViewRect;
+    private long regionViewData;
+
+    // The index of the frame in the video, starting from 1
+    public int index;
+
+    // The number of frames of the video from the previous processed frame to this one, more than 1 if frames were skipped
+    public int step = 1;
+
+    // The timestamp of the frame reported by the video capture in milliseconds, or 0 if the capture does not report it
+    public double timestamp;
+
+    // The time spent on the frame by the slowest stage so far, in nanoseconds
+    public long cost;
+
+    // The thresholds with which the frame is processed, or null if the pipeline has no tunable thresholds
+    public DetectorConfig config;
+
+    // The blobs of the foreground found by the mask refiner, in the coordinates of the whole frame, reused for every frame
+    public final List<Blob> blobs = new ArrayList<>();
+
+    // Whether the blobs have been found, so the detection uses them instead of searching the contours of the foreground
+    public boolean isRefined;
+
+    // Whether the light of the whole scene has changed in the frame, so its foreground mask does not show the vehicles
+    public boolean isIlluminationChange;
+
+    /**
+     * This method returns the processed region of the image, which shares the memory of the image.
+     *
+     * @return the region of the image, or the whole image if no region is set.
+     */
+    public Mat imageRegion() {
+        if (region == null)
+            return image;
+        if (regionView == null || !region.equals(regionViewRect) || image.dataAddr() != regionViewData) {
+            if (regionView != null)
+                regionView.release();
+            regionView = image.submat(region);
+            regionViewRect = region;
+            regionViewData = image.dataAddr();
+        }
+        return regionView;
+    }
+
+    /**
+     * This method returns the frame resized to the processing size in colour, on which the contours and the lines are drawn.
+     * In the grayscale mode the colour image is produced from the raw frame the first time it is asked for,
+     * so it costs nothing when the frames are neither displayed nor saved.
+     *
+     * @return the colour image of the frame, which is the image of the frame unless the grayscale mode is on.
+     */
+    public Mat colourImage() {
+        if (!isGrayscale)
+            return image;
+        if (!hasColour) {
+            Imgproc.resize(raw, colour, image.size());
+            hasColour = true;
+        }
+        return colour;
+    }
+
+    /**
+     * This method marks the colour image as outdated, when a new frame has been read into the raw buffer.
+     */
+    public void invalidateColour() {
+        hasColour = false;
+    }
+
+    /**
+     * This method releases the native memory of the matrices of the frame.
+     * It is called when the pipeline has finished, the frame must not be used afterwards.
+     */
+    public void release() {
+        raw.release();
+        image.release();
+        foreground.release();
+        rawGray.release();
+        colour.release();
+        if (regionView != null)
+            regionView.release();
+    }
+}
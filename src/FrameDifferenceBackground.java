@@ -0,0 +1,54 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Core; // OpenCV library for handling core functionalities
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+/**
+ * The FrameDifferenceBackground class uses the previous frame as the background.
+ * A pixel belongs to the foreground when its brightness differs from the previous frame by more than the image threshold.
+ * It is the cheapest model and it adapts at once to any change of the light, but it finds only the moving edges
+ * of the vehicles, so the masks usually need a closing before the contours are searched, and stopped vehicles disappear.
+ * The history is not used.
+ */
+public class FrameDifferenceBackground extends GrayscaleBackground {
+
+    // The previous grayscale frame
+    private final Mat previous = new Mat();
+    // The absolute difference between the frame and the previous frame
+    private final Mat difference = new Mat();
+
+    /**
+     * Constructor for the FrameDifferenceBackground class.
+     *
+     * @param imageThreshold the difference of brightness above which a pixel belongs to the foreground.
+     * @param history not used, kept for the same constructor as the other models.
+     */
+    public FrameDifferenceBackground(double imageThreshold, int history) {
+        super(imageThreshold, history);
+    }
+
+    @Override
+    protected void initialize(Mat gray) {
+        gray.copyTo(previous);
+    }
+
+    @Override
+    protected void update(Mat gray, int step) {
+        Core.absdiff(gray, previous, difference);
+        Imgproc.threshold(difference, foreground, imageThreshold, 255, Imgproc.THRESH_BINARY);
+        gray.copyTo(previous);
+    }
+
+    @Override
+    protected void writeBackground(Mat backgroundImage) {
+        previous.copyTo(backgroundImage);
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        previous.release();
+        difference.release();
+    }
+}
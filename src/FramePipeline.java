@@ -0,0 +1,488 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.core.Size; // OpenCV library for handling sizes
+import org.opencv.imgproc.Imgproc; // OpenCV library for handling image processing functionalities
+import org.opencv.videoio.VideoCapture; // OpenCV library for capturing video
+import org.opencv.videoio.Videoio; // OpenCV library for the properties of the video capture
+
+import java.util.concurrent.ArrayBlockingQueue; // Java Concurrent library for bounded hand-off queues
+import java.util.concurrent.BlockingQueue; // Java Concurrent library for blocking queues
+import java.util.concurrent.atomic.AtomicReference; // Java Concurrent library for references swapped atomically
+
+/**
+ * The FramePipeline class processes a video as a graph of stages running on their own threads:
+ * decode -> subtract -> detect -> render.
+ * The stages are connected by bounded queues and share a fixed pool of Frame buffers,
+ * so decoding of frame N+1 overlaps with the background subtraction of frame N and the rendering of frame N-1.
+ * Every stage is served by a single thread and takes the frames in FIFO order,
+ * so the detect stage (which counts the vehicles) always sees the frames strictly in order.
+ */
+public class FramePipeline {
+
+    /**
+     * The FrameHandler interface is implemented by the code which is run by the detect and render stages.
+     */
+    public interface FrameHandler {
+        /**
+         * This method handles a single frame of the video.
+         *
+         * @param frame the frame to be handled.
+         */
+        void handle(Frame frame);
+    }
+
+    // The size to which every frame is resized before processing
+    public static final Size PROCESSING_SIZE = new Size(640, 360);
+
+    // The number of frames which can be in flight between the stages at the same time
+    private static final int POOL_SIZE = 4;
+
+    // The video capture from which the frames are read
+    private final VideoCapture capture;
+    // The video processor used for the background subtraction
+    private final VideoProcessor videoProcessor;
+    // The gate in which the decoding waits while the video is paused, may be null
+    private final PauseGate pauseGate;
+    // The handler run by the detect stage
+    private final FrameHandler detector;
+    // The handler run by the render stage, may be null
+    private final FrameHandler renderer;
+    // The action run once the last frame has been rendered
+    private final Runnable onFinished;
+
+    // The pool of free frames and the hand-off queues between the stages
+    private final BlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Frame> subtractQueue = new ArrayBlockingQueue<>(POOL_SIZE + 1);
+    private final BlockingQueue<Frame> detectQueue = new ArrayBlockingQueue<>(POOL_SIZE + 1);
+    private final BlockingQueue<Frame> renderQueue = new ArrayBlockingQueue<>(POOL_SIZE + 1);
+
+    // The marker passed through the stages after the last frame of the video
+    private final Frame endOfStream = new Frame();
+    // All the frames of the pool, wherever they currently are
+    private final Frame[] frames = new Frame[POOL_SIZE];
+
+    // The threads of the stages
+    private final Thread[] stages;
+
+    // The number of the frames read by the decode stage which have not been handled by the detect stage yet, guarded by detectLock
+    private int undetectedFrames = 0;
+    private final Object detectLock = new Object();
+
+    // Whether the pipeline is still running
+    private volatile boolean running = true;
+    // The maximum number of frames to be read, or 0 to read the video until its end
+    private int frameLimit = 0;
+    // The decimator deciding how many frames are skipped, may be null
+    private AdaptiveDecimator decimator;
+    // The region of the frames which is processed, may be null
+    private RegionOfInterest regionOfInterest;
+    // The filter cleaning the foreground masks, used only by the subtract stage
+    private MaskFilter maskFilter = MaskCleanup.BILATERAL.create();
+    // The current thresholds, which may be swapped by other threads while the video is processed, may be null
+    private AtomicReference<DetectorConfig> config;
+    // The thresholds last applied to the video processor, used only by the subtract stage
+    private DetectorConfig appliedConfig;
+    // The refiner removing the shadows and finding the blobs of the foreground masks, used only by the subtract stage, may be null
+    private MaskRefiner maskRefiner;
+    // Whether the frames are converted to grayscale right after decoding
+    private boolean isGrayscale;
+    // The monitor flagging the frames in which the light of the whole scene changes, used only by the subtract stage, may be null
+    private IlluminationMonitor illuminationMonitor;
+
+    /**
+     * Constructor for the FramePipeline class.
+     * It fills the pool of frames and creates (but does not start) the threads of the stages.
+     *
+     * @param capture the video capture from which the frames are read.
+     * @param videoProcessor the video processor used for the background subtraction.
+     * @param pauseGate the gate in which the decoding waits while the video is paused, or null if the video is never paused.
+     * @param detector the handler run by the detect stage.
+     * @param renderer the handler run by the render stage, or null if nothing has to be rendered.
+     * @param onFinished the action run once the last frame of the video has been rendered.
+     */
+    public FramePipeline(VideoCapture capture, VideoProcessor videoProcessor, PauseGate pauseGate,
+                         FrameHandler detector, FrameHandler renderer, Runnable onFinished) {
+        this.capture = capture;
+        this.videoProcessor = videoProcessor;
+        this.pauseGate = pauseGate;
+        this.detector = detector;
+        this.renderer = renderer;
+        this.onFinished = onFinished;
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+            frames[i] = new Frame();
+            freeFrames.add(frames[i]);
+        }
+
+        stages = new Thread[]{
+                new Thread(this::decode, "Pipeline-decode"),
+                new Thread(this::subtract, "Pipeline-subtract"),
+                new Thread(this::detect, "Pipeline-detect"),
+                new Thread(this::render, "Pipeline-render")
+        };
+    }
+
+    /**
+     * This method sets the maximum number of frames to be read from the video capture.
+     * It is used for processing a segment of a video, after the capture has been set to the first frame of the segment.
+     *
+     * @param frameLimit the maximum number of frames, or 0 to read the video until its end.
+     */
+    public void setFrameLimit(int frameLimit) {
+        this.frameLimit = frameLimit;
+    }
+
+    /**
+     * This method sets the decimator which decides how many frames are skipped between two processed frames.
+     * The cost of every processed frame, which is the time spent on it by the slowest stage, is reported to the decimator.
+     *
+     * @param decimator the decimator, or null to process every frame.
+     */
+    public void setDecimator(AdaptiveDecimator decimator) {
+        this.decimator = decimator;
+    }
+
+    /**
+     * This method sets the region of the frames to which the background subtraction and the filtering are restricted.
+     * The region of every frame is passed with the frame, so the detection can find the contours in the same region.
+     *
+     * @param regionOfInterest the region, or null to process the whole frames.
+     */
+    public void setRegionOfInterest(RegionOfInterest regionOfInterest) {
+        this.regionOfInterest = regionOfInterest;
+    }
+
+    /**
+     * This method sets the filter which cleans the foreground masks before the contours are searched.
+     * The pipeline takes over the filter and releases it with its frames.
+     *
+     * @param maskFilter the filter, by default the bilateral filter.
+     */
+    public void setMaskFilter(MaskFilter maskFilter) {
+        this.maskFilter.release();
+        this.maskFilter = maskFilter;
+    }
+
+    /**
+     * This method sets the reference to the current thresholds, which can be swapped while the video is processed.
+     * The subtract stage takes the current snapshot at the start of every frame, applies the thresholds of the background subtraction
+     * to the video processor if the version has changed, and passes the snapshot with the frame to the detect stage,
+     * so every frame is processed with one consistent set of thresholds.
+     *
+     * @param config the reference to the current thresholds, or null if the thresholds never change.
+     */
+    public void setConfig(AtomicReference<DetectorConfig> config) {
+        this.config = config;
+    }
+
+    /**
+     * This method sets the refiner which removes the shadows from the foreground masks before they are filtered,
+     * and finds the blobs of the filtered masks, which the detection uses instead of searching the contours.
+     * The pipeline takes over the refiner and releases it with its frames.
+     *
+     * @param maskRefiner the refiner, or null to search the contours of the filtered masks.
+     */
+    public void setMaskRefiner(MaskRefiner maskRefiner) {
+        if (this.maskRefiner != null)
+            this.maskRefiner.release();
+        this.maskRefiner = maskRefiner;
+    }
+
+    /**
+     * This method sets whether the frames are converted to grayscale right after decoding,
+     * so the background subtraction, the filtering and the detection run on single-channel images,
+     * which takes a third of the memory traffic of the colour images.
+     * The colour image of a frame is produced only when it is asked for by the drawing, the preview or the saved video.
+     *
+     * @param isGrayscale true to process the frames in grayscale, false to process them in colour.
+     */
+    public void setGrayscale(boolean isGrayscale) {
+        this.isGrayscale = isGrayscale;
+    }
+
+    /**
+     * This method sets the monitor which flags the frames in which the light of the whole scene changes.
+     * The foreground mask of a flagged frame is not filtered, because its contours are not searched,
+     * and the video processor is told to adapt its background to the new light.
+     * The monitor stays owned by the caller, which can export its intervals once the video has finished.
+     *
+     * @param illuminationMonitor the monitor, or null if no frame is flagged.
+     */
+    public void setIlluminationMonitor(IlluminationMonitor illuminationMonitor) {
+        this.illuminationMonitor = illuminationMonitor;
+    }
+
+    /**
+     * This method starts the threads of all the stages.
+     */
+    public void start() {
+        for (Thread stage : stages) {
+            stage.start();
+        }
+    }
+
+    /**
+     * This method runs all the stages one after another in the current thread, without starting any other thread.
+     * It is used when many videos are processed at the same time, so every video should use only one core.
+     * The paused state is not checked.
+     */
+    public void runSequentially() {
+        Frame frame = freeFrames.poll();
+        int index = 0;
+        long start = System.nanoTime();
+        while (running && readFrame(frame, index, decimator == null ? 1 : decimator.nextStep())) {
+            index = frame.index;
+            subtractFrame(frame);
+            detector.handle(frame);
+            if (decimator != null) {
+                decimator.recordCost(System.nanoTime() - start);
+            }
+            start = System.nanoTime();
+            if (renderer != null) {
+                renderer.handle(frame);
+            }
+        }
+        freeFrames.add(frame);
+        if (running) {
+            onFinished.run();
+        }
+    }
+
+    /**
+     * This method stops the pipeline.
+     * It interrupts the threads of all the stages and waits until they have finished.
+     * The onFinished action is not run for a stopped pipeline.
+     */
+    public void stop() {
+        running = false;
+        for (Thread stage : stages) {
+            stage.interrupt();
+        }
+        awaitTermination();
+    }
+
+    /**
+     * This method releases the native memory of all the frames of the pool.
+     * It must be called only after the pipeline has finished or has been stopped.
+     */
+    public void release() {
+        for (Frame frame : frames) {
+            frame.release();
+        }
+        maskFilter.release();
+        if (maskRefiner != null)
+            maskRefiner.release();
+    }
+
+    /**
+     * This method waits until the threads of all the stages have finished.
+     */
+    public void awaitTermination() {
+        for (Thread stage : stages) {
+            if (stage == Thread.currentThread())
+                continue;
+            try {
+                stage.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * The decode stage.
+     * It reads the frames from the video capture into free frames of the pool and resizes them to the processing size.
+     * While the video is paused, it waits in the pause gate without using the CPU.
+     * When the video has finished, it passes the end of stream marker to the next stage.
+     */
+    private void decode() {
+        int index = 0;
+        try {
+            while (running) {
+                if (pauseGate != null)
+                    pauseGate.awaitResumed();
+
+                Frame frame = freeFrames.take();
+                if (!readFrame(frame, index, decideStep())) {
+                    freeFrames.put(frame);
+                    subtractQueue.put(endOfStream);
+                    break;
+                }
+                index = frame.index;
+                synchronized (detectLock) {
+                    undetectedFrames++;
+                }
+                subtractQueue.put(frame);
+            }
+        } catch (InterruptedException e) {
+            // The pipeline has been stopped
+        }
+    }
+
+    /**
+     * This method decides the step to the next frame read by the decode stage.
+     * The frames read ahead have not been detected yet, so a vehicle may have entered the band in one of them.
+     * A step larger than the step allowed while the band is occupied is therefore decided only after the detect stage
+     * has handled all the frames read so far, so the occupancy of the band is known for the last read frame.
+     * While the frames are skipped, the decoding does not run ahead of the detection.
+     *
+     * @return the number of frames from the last read frame to the next one.
+     * @throws InterruptedException if the pipeline has been stopped while waiting for the detect stage.
+     */
+    private int decideStep() throws InterruptedException {
+        if (decimator == null)
+            return 1;
+        int step = decimator.nextStep();
+        if (step > decimator.getOccupiedStep()) {
+            synchronized (detectLock) {
+                while (undetectedFrames > 0)
+                    detectLock.wait();
+            }
+            step = decimator.nextStep();
+        }
+        return step;
+    }
+
+    /**
+     * The subtract stage.
+     * It applies the background subtraction to the frames.
+     */
+    private void subtract() {
+        try {
+            while (running) {
+                Frame frame = subtractQueue.take();
+                if (frame != endOfStream) {
+                    long start = System.nanoTime();
+                    subtractFrame(frame);
+                    frame.cost = Math.max(frame.cost, System.nanoTime() - start);
+                }
+                detectQueue.put(frame);
+                if (frame == endOfStream)
+                    break;
+            }
+        } catch (InterruptedException e) {
+            // The pipeline has been stopped
+        }
+    }
+
+    /**
+     * This method reads the next frame of the video and resizes it to the processing size.
+     * The frame is decoded into its own buffer and resized into another one, so no buffer is reallocated between the frames.
+     * In the grayscale mode the frame is converted to grayscale before it is resized.
+     * If the step is larger than 1, the frames in between are grabbed but not retrieved nor processed.
+     *
+     * @param frame the frame into which the video is read.
+     * @param lastIndex the index of the previous read frame in the video, or 0 at the start.
+     * @param step the number of frames from the previous read frame to this one.
+     * @return true if the frame has been read, false if the video (or the segment) has finished.
+     */
+    private boolean readFrame(Frame frame, int lastIndex, int step) {
+        long start = System.nanoTime();
+        if (frameLimit > 0 && lastIndex + step > frameLimit)
+            return false;
+        for (int i = 1; i < step; i++) {
+            capture.grab();
+        }
+        capture.read(frame.raw);
+        if (frame.raw.empty())
+            return false;
+        frame.timestamp = capture.get(Videoio.CAP_PROP_POS_MSEC);
+        if (isGrayscale) {
+            Imgproc.cvtColor(frame.raw, frame.rawGray, Imgproc.COLOR_BGR2GRAY);
+            Imgproc.resize(frame.rawGray, frame.image, PROCESSING_SIZE);
+        } else {
+            Imgproc.resize(frame.raw, frame.image, PROCESSING_SIZE);
+        }
+        frame.isGrayscale = isGrayscale;
+        frame.invalidateColour();
+        frame.index = lastIndex + step;
+        frame.step = step;
+        frame.cost = System.nanoTime() - start;
+        return true;
+    }
+
+    /**
+     * This method applies the background subtraction to the frame and filters the resulting foreground mask
+     * straight into the foreground buffer of the frame.
+     * If a region of interest is set, only the region of the frame is processed.
+     * If an illumination monitor is set, the frame is flagged when the light of the whole scene has changed.
+     * If a mask refiner is set, the shadows are removed before the filtering and the blobs of the filtered mask are found.
+     *
+     * @param frame the frame to be processed.
+     */
+    private void subtractFrame(Frame frame) {
+        frame.region = regionOfInterest == null ? null : regionOfInterest.getRect();
+        frame.config = config == null ? null : config.get();
+        if (frame.config != null && (appliedConfig == null || appliedConfig.getVersion() != frame.config.getVersion())) {
+            frame.config.applyTo(videoProcessor, appliedConfig);
+            appliedConfig = frame.config;
+        }
+        Mat mask = videoProcessor.process(frame.imageRegion(), frame.step);
+        frame.isIlluminationChange = illuminationMonitor != null && illuminationMonitor.check(frame.image, mask, frame.index);
+        frame.isRefined = false;
+        if (frame.isIlluminationChange) {
+            videoProcessor.adaptToIlluminationChange();
+            mask.copyTo(frame.foreground);
+        } else if (maskRefiner != null) {
+            maskFilter.filter(maskRefiner.suppressShadows(frame.imageRegion(), mask, videoProcessor), frame.foreground);
+            maskRefiner.findBlobs(frame.foreground, frame.region, frame.blobs);
+            frame.isRefined = true;
+        } else {
+            maskFilter.filter(mask, frame.foreground);
+        }
+    }
+
+    /**
+     * The detect stage.
+     * It runs the detector handler on the frames in the order in which they were decoded.
+     */
+    private void detect() {
+        try {
+            while (running) {
+                Frame frame = detectQueue.take();
+                if (frame != endOfStream) {
+                    long start = System.nanoTime();
+                    detector.handle(frame);
+                    frame.cost = Math.max(frame.cost, System.nanoTime() - start);
+                    if (decimator != null) {
+                        decimator.recordCost(frame.cost);
+                    }
+                    synchronized (detectLock) {
+                        undetectedFrames--;
+                        detectLock.notifyAll();
+                    }
+                }
+                renderQueue.put(frame);
+                if (frame == endOfStream)
+                    break;
+            }
+        } catch (InterruptedException e) {
+            // The pipeline has been stopped
+        }
+    }
+
+    /**
+     * The render stage.
+     * It runs the renderer handler on the frames and gives them back to the pool.
+     * After the end of stream marker it runs the onFinished action.
+     */
+    private void render() {
+        try {
+            while (running) {
+                Frame frame = renderQueue.take();
+                if (frame == endOfStream) {
+                    onFinished.run();
+                    break;
+                }
+                if (renderer != null) {
+                    renderer.handle(frame);
+                }
+                freeFrames.put(frame);
+            }
+        } catch (InterruptedException e) {
+            // The pipeline has been stopped
+        }
+    }
+}
@@ -1,11 +1,5 @@
 // Importing the necessary libraries
 
-import com.opencsv.CSVWriter; // Library for writing to CSV files
-import jxl.Cell; // JExcel library for handling Excel cells
-import jxl.Workbook; // JExcel library for handling Excel workbooks
-import jxl.write.Number; // JExcel library for handling numeric data in Excel
-import jxl.write.WritableSheet; // JExcel library for handling writable Excel sheets
-import jxl.write.WritableWorkbook; // JExcel library for handling writable Excel workbooks
 import jxl.write.WriteException; // JExcel library for handling exceptions while writing to Excel
 
 import org.opencv.core.*; // OpenCV library for handling core functionalities
@@ -20,11 +14,10 @@ import javax.swing.filechooser.FileNameExtensionFilter; // Swing library for fil
 import java.awt.*; // AWT library for creating GUI
 import java.awt.event.*; // AWT library for handling events
 import java.io.File; // Java IO library for handling files
-import java.io.FileWriter; // Java IO library for writing to files
 import java.io.IOException; // Java IO library for handling IO exceptions
 import java.text.NumberFormat; // Java Text library for formatting numbers
-import java.util.ArrayList; // Java Util library for handling ArrayLists
-import java.util.HashMap; // Java Util library for handling HashMaps
+import java.util.function.BooleanSupplier; // Java Function library for supplying boolean values
+import java.util.concurrent.atomic.AtomicReference; // Java Concurrent library for references swapped atomically
 
 import static org.opencv.imgproc.Imgproc.resize; // OpenCV library for resizing images
 
@@ -41,9 +34,12 @@ import static org.opencv.imgproc.Imgproc.resize; // OpenCV library for resizing
 public class GUI {
     // GUI components
     private JLabel imageView; // The label for displaying the video
+    private PreviewSurface imageSurface; // The surface painting the video in its label
     private JFrame frame; // The main frame of the application
     private JFrame frameBGS; // The frame for displaying the background subtraction view
     private JLabel BGSview; // The label for displaying the background subtraction view
+    private volatile PreviewSurface BGSsurface; // The surface painting the background subtraction view in its label
+    private static final double DISPLAY_FPS = 30; // The largest number of paints per second of the views
 
     // Buttons for controlling the application
     private JButton playPauseButton; // The button for playing and pausing the video
@@ -54,26 +50,22 @@ public class GUI {
     private JButton speedLineButton; // The button for selecting the speed line
 
     // Flags for controlling the application
-    private volatile boolean isPaused = true; // Whether the video is paused
-    private boolean crossingLine = false; // Whether a vehicle is crossing the counting line
-    private boolean crossingSpeedLine = false; // Whether a vehicle is crossing the speed line
+    private final PauseGate pauseGate = new PauseGate(true); // Whether the video is paused
 
     // Settings for the detection process
-    private int areaThreshold = 1700; // The area threshold for detecting vehicles
-    private double imageThreshold = 20; // The image threshold for the background subtraction
-    private int history = 1500; // The history for the background subtraction
-    private int vehicleSizeThreshold = 20000; // The vehicle size threshold for classifying the vehicles
+    // The thresholds, swapped atomically by the spinners and picked up by the pipeline at the start of every frame
+    private final AtomicReference<DetectorConfig> detectorConfig = new AtomicReference<>(new DetectorConfig(20, 1500, 1700, 20000));
+    private volatile BackgroundEngine engine = BackgroundEngine.MOG2; // The model of the background subtraction
+    private volatile MaskCleanup maskCleanup = MaskCleanup.BILATERAL; // The filter cleaning the foreground masks
 
     // The video capture for reading the video
     private VideoCapture capture;
     // The current image from the video
     private Mat currentImage = new Mat();
     // The video processor for processing the video
-    private VideoProcessor videoProcessor = new MixtureOfGaussianBackground(imageThreshold, history);
+    private volatile VideoProcessor videoProcessor = createVideoProcessor();
     // The image processor for processing the images
     private ImageProcessor imageProcessor = new ImageProcessor();
-    // The foreground image from the background subtraction
-    private Mat foregroundImage;
 
     // The points for the counting line
     private Point lineCount1; // The first point of the counting line
@@ -81,54 +73,27 @@ public class GUI {
     // The points for the speed line
     private Point lineSpeed1; // The first point of the speed line
     private volatile Point lineSpeed2; // The second point of the speed line
-    // The counter for the vehicles
-    private int counter = 0;
-    // The last time stamp for measuring the speed
-    private int lastTSM = 0;
-    // The speeds of the vehicles
-    private HashMap<Integer, Integer> speed = new HashMap<Integer, Integer>();
+    // The counter of the vehicles and of their speed
+    private volatile TrafficCounter trafficCounter;
 
     // The distance between the counting line and the speed line
     private double distanceCS = 6.0;
     // The frames per second of the video
     private double videoFPS;
-    // The maximum frames per second for displaying the video
-    private int maxFPS;
-    // The current frame of the video
-    private int whichFrame;
     // The field for setting the distance between the counting line and the speed line
     private JSpinner distanceBLfield;
 
-    // The file for saving the results in XLS format
-    private File fileToSaveXLS;
-    // The workbook for writing the XLS file
-    private WritableWorkbook workbook;
-    // The sheet for writing the XLS file
-    private WritableSheet sheet;
-    // The label for writing the XLS file
-    private jxl.write.Label label;
-    // The number for writing the XLS file
-    private Number number;
-
-    // The CSV writer for writing the CSV file
-    private CSVWriter CSVwriter;
-    // The list for storing the data for the CSV file
-    private ArrayList<String[]> ListCSV = new ArrayList<>();
-    // The file writer for writing the CSV file
-    private FileWriter filetoSaveCSV;
+    // The writer of the results
+    private ResultsWriter resultsWriter;
 
     // The radio buttons for selecting the format for saving the results
     private JRadioButton xlsButton; // The radio button for selecting the XLS format
     private JRadioButton csvButton; // The radio button for selecting the CSV format
     // The flags for the formats for saving the results
-    private static final String xlsWriteResults = "XLS";
-    private static final String csvWriteResults = "CSV";
+    private static final String xlsWriteResults = ResultsWriter.xlsWriteResults;
+    private static final String csvWriteResults = ResultsWriter.csvWriteResults;
     // The flag for the selected format for saving the results
     private String writeFlag = xlsWriteResults;
-    // Whether the XLS format is selected
-    private boolean isExcelToWrite = true;
-    // Whether the results have been written
-    private boolean isWritten = false;
 
     // The paths for the video and the results
     private volatile String videoPath; // The path of the video
@@ -142,21 +107,6 @@ public class GUI {
     private JFormattedTextField lorriesAmountField; // The field for displaying the number of lorries
     private JFormattedTextField lorriesSpeedField; // The field for displaying the speed of lorries
 
-    // The counters for the vehicles
-    private int cars = 0; // The counter for cars
-    private int vans = 0; // The counter for vans
-    private int lorries = 0; // The counter for lorries
-
-    // The sums of the speeds of the vehicles
-    private double sumSpeedCar = 0; // The sum of the speeds of cars
-    private double sumSpeedVan = 0; // The sum of the speeds of vans
-    private double sumSpeedLorry = 0; // The sum of the speeds of lorries
-
-    // The divisors for calculating the average speeds of the vehicles
-    private int divisorCar = 1; // The divisor for cars
-    private int divisorVan = 1; // The divisor for vans
-    private int divisorLorry = 1; // The divisor for lorries
-
     // The radio buttons for selecting whether to save the video
     private JRadioButton onButton; // The radio button for selecting to save the video
     private JRadioButton offButton; // The radio button for selecting not to save the video
@@ -176,10 +126,12 @@ public class GUI {
     // Whether the drawing of the lines has started
     private boolean startDraw;
     // The copied image for drawing the lines
-    private Mat copiedImage;
+    private Mat copiedImage = new Mat();
 
-    // Whether to break the loop for processing the video
-    private volatile boolean loopBreaker = false;
+    // The pipeline processing the video
+    private volatile FramePipeline pipeline;
+    // The lock on which the threads waiting for the paths and the lines are notified when they are selected
+    private final Object stateLock = new Object();
 
     // The button for displaying the background subtraction view
     private JButton BGSButton;
@@ -189,14 +141,14 @@ public class GUI {
     private volatile boolean isBGSview = false;
     // The image for the background subtraction view
     private Mat ImageBGS = new Mat();
+    // The size of the view of the background subtraction
+    private static final Size BGS_VIEW_SIZE = new Size(430, 240);
 
     // The field for setting the history
     private JSpinner videoHistoryField;
 
     // The field for displaying the current time
     private JFormattedTextField currentTimeField;
-    // The current time in seconds
-    private double timeInSec;
     // The current time in minutes and seconds
     private int minutes = 1;
     private int second = 0;
@@ -205,18 +157,30 @@ public class GUI {
     private JButton realTimeButton;
     // Whether the real time processing is on
     private volatile boolean isProcessInRealTime = false;
+    // The decimator which skips frames when the real time processing cannot keep up with the video
+    private volatile AdaptiveDecimator decimator;
+    // The largest number of frames from one processed frame to the next one in the real time processing
+    private static final int MAX_FRAME_STEP = 4;
+    // The button for restricting the processing to the band around the lines
+    private JButton regionButton;
+    // Whether only the band around the lines is processed
+    private volatile boolean isRegionOfInterest = false;
+    // The band around the lines processed by the current run
+    private volatile RegionOfInterest regionOfInterest;
+    // The box for selecting the model of the background subtraction
+    private JComboBox<BackgroundEngine> engineBox;
+    // The box for selecting the filter cleaning the foreground masks
+    private JComboBox<MaskCleanup> maskFilterBox;
     // The start time for the real time processing
     private long startTime;
     // The duration of one frame for the real time processing
     private long oneFrameDuration;
 
-    // The clone of the foreground image
-    private Mat foregroundClone;
-
     /**
      * This method initializes the GUI and starts the main loop.
      * It sets the system look and feel, initializes the GUI, and waits for the user to select a video and a save path.
      * Once the user has drawn the counting and speed lines, it starts the main loop.
+     * The waiting does not use the CPU, the waiting thread is woken up whenever a path or a line is selected.
      * The main loop reads frames from the video, processes them, and updates the GUI.
      * It also writes the results to a file.
      */
@@ -225,57 +189,50 @@ public class GUI {
         setSystemLookAndFeel();
         initGUI();
 
-        while (true) {
-            if (videoPath != null && savePath != null) {
-                countingLineButton.setEnabled(true);
-                speedLineButton.setEnabled(true);
-                distanceBLfield.setEnabled(true);
-
-                resetButton.setEnabled(true);
-                break;
-            }
-        }
+        awaitState(() -> videoPath != null && savePath != null);
+        countingLineButton.setEnabled(true);
+        speedLineButton.setEnabled(true);
+        distanceBLfield.setEnabled(true);
 
-        while (true) {
-            if (lineSpeed2 != null && lineCount2 != null) {
+        resetButton.setEnabled(true);
 
-                playPauseButton.setEnabled(true);
-                if (saveFlag.equals(onSaveVideo)) {
-                    videoWriter = new VideoWriter(savePath + "\\Video.avi", VideoWriter.fourcc('P', 'I', 'M', '1'), videoFPS, new Size(640, 360));
-                }
-                onButton.setEnabled(false);
-                offButton.setEnabled(false);
+        awaitState(() -> lineSpeed2 != null && lineCount2 != null);
+        playPauseButton.setEnabled(true);
+        onButton.setEnabled(false);
+        offButton.setEnabled(false);
 
+        startCounting();
 
-                String xlsSavePath = savePath + "\\Results.xls";
-                fileToSaveXLS = new File(xlsSavePath);
-                try {
-                    writeToExel(fileToSaveXLS);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                } catch (WriteException e) {
-                    e.printStackTrace();
-                }
+        xlsButton.setEnabled(false);
+        csvButton.setEnabled(false);
 
-                if (!isExcelToWrite) {
-                    String csvSavePath = savePath + "\\Results.csv";
-                    try {
-                        filetoSaveCSV = new FileWriter(csvSavePath);
-                        writeToCSV(filetoSaveCSV);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-                xlsButton.setEnabled(false);
-                csvButton.setEnabled(false);
+        Thread mainLoop = new Thread(new Loop());
+        mainLoop.start();
+    }
 
-                break;
+    /**
+     * This method waits until the given condition on the paths or the lines is met.
+     * The waiting thread sleeps until it is notified by stateChanged().
+     *
+     * @param condition the condition to be met.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    private void awaitState(BooleanSupplier condition) throws InterruptedException {
+        synchronized (stateLock) {
+            while (!condition.getAsBoolean()) {
+                stateLock.wait();
             }
         }
+    }
 
-
-        Thread mainLoop = new Thread(new Loop());
-        mainLoop.start();
+    /**
+     * This method wakes up the threads waiting for the paths or the lines.
+     * It is called whenever a path or a line is selected.
+     */
+    private void stateChanged() {
+        synchronized (stateLock) {
+            stateLock.notifyAll();
+        }
     }
 
     /**
@@ -301,8 +258,9 @@ public class GUI {
 
     /**
      * This class represents the main loop.
-     * It reads frames from the video, processes them, and updates the GUI.
-     * It also writes the results to a file.
+     * It runs the video through a FramePipeline, so the frames are decoded, processed, counted and displayed by separate stages.
+     * The counting of the vehicles and the measuring of their speed is done by the detect stage,
+     * while the GUI is updated and the video is saved by the render stage.
      */
     public class Loop implements Runnable {
 
@@ -310,250 +268,216 @@ public class GUI {
         public void run() {
 
             maxWaitingFPS();
-            videoProcessor = new MixtureOfGaussianBackground(imageThreshold, history);
+            VideoProcessor processor = createVideoProcessor();
+            videoProcessor = processor;
+            TrafficCounter counter = trafficCounter;
+            AdaptiveDecimator frameDecimator = new AdaptiveDecimator(videoFPS, MAX_FRAME_STEP);
+            frameDecimator.setEnabled(isProcessInRealTime);
+            decimator = frameDecimator;
+            RegionOfInterest region = new RegionOfInterest(RegionOfInterest.DEFAULT_PADDING, FramePipeline.PROCESSING_SIZE);
+            region.setLines(lineCount1, lineCount2, lineSpeed1, lineSpeed2);
+            region.setEnabled(isRegionOfInterest);
+            regionOfInterest = region;
+            // The model is kept per camera, which is the directory of the video, so every recording of the camera reuses it
+            File modelFile = new File(savePath, BatchScheduler.cameraName(new File(videoPath).getAbsoluteFile(), new File(videoPath).getName()) + ".model");
+            if (modelFile.isFile()) {
+                try {
+                    processor.loadModel(modelFile);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
             if (capture.isOpened()) {
-                while (true) {
-                    if (!isPaused) {
-                        capture.read(currentImage);
-                        if (!currentImage.empty()) {
-                            resize(currentImage, currentImage, new Size(640, 360));
-                            foregroundImage = currentImage.clone();
-                            foregroundImage = videoProcessor.process(foregroundImage);
-
-                            foregroundClone = foregroundImage.clone();
-                            Imgproc.bilateralFilter(foregroundClone, foregroundImage, 2, 1600, 400);
-
-                            if (isBGSview) {
-                                resize(foregroundImage, ImageBGS, new Size(430, 240));
-                                BGSview.setIcon(new ImageIcon(imageProcessor.toBufferedImage(ImageBGS)));
-                            }
-
-                            CountVehicles countVehicles = new CountVehicles(areaThreshold, vehicleSizeThreshold, lineCount1, lineCount2, lineSpeed1, lineSpeed2, crossingLine, crossingSpeedLine);
-                            countVehicles.findAndDrawContours(currentImage, foregroundImage);
-
-                            try {
-                                count(countVehicles);
-                                speedMeasure(countVehicles);
-                            } catch (WriteException e) {
-                                e.printStackTrace();
-                            }
-
-
-                            videoRealTime();
-
-                            saveVideo();
-
-                            if (isProcessInRealTime) {
-                                long time = System.currentTimeMillis() - startTime;
-                                if (time < oneFrameDuration) {
-                                    try {
-                                        Thread.sleep(oneFrameDuration - time);
-                                    } catch (InterruptedException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-                            }
-
-                            updateView(currentImage);
-                            startTime = System.currentTimeMillis();
-
-                            if (loopBreaker)
-                                break;
-
-                        } else {
-                            if (isToSave)
-                                videoWriter.release();
-
-                            if (!isWritten) {
-                                try {
-                                    workbook.write();
-                                    workbook.close();
-                                } catch (IOException | WriteException e) {
-                                    e.printStackTrace();
-                                }
-
-                                if (!isExcelToWrite) {
-                                    try {
-                                        CSVwriter.writeAll(ListCSV);
-                                        CSVwriter.close();
-                                        new File(savePath + "\\Results.xls").delete();
-                                    } catch (IOException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-                                isWritten = true;
-                            }
-
-                            playPauseButton.setEnabled(false);
-
-                            saveButton.setEnabled(true);
-                            loadButton.setEnabled(true);
-
-                            playPauseButton.setText("Play");
-
-                            minutes = 1;
-                            second = 0;
-                            whichFrame = 0;
-//                            System.out.println("The video has finished!");
-                            break;
-                        }
+                FramePipeline framePipeline = new FramePipeline(capture, processor, pauseGate,
+                        GUI.this::detectFrame, GUI.this::renderFrame, GUI.this::finishVideo);
+                framePipeline.setDecimator(frameDecimator);
+                framePipeline.setRegionOfInterest(region);
+                framePipeline.setMaskFilter(maskCleanup.create());
+                framePipeline.setConfig(detectorConfig);
+                IlluminationMonitor illuminationMonitor = new IlluminationMonitor();
+                framePipeline.setIlluminationMonitor(illuminationMonitor);
+                pipeline = framePipeline;
+                framePipeline.start();
+                framePipeline.awaitTermination();
+
+                // The learnt background is kept for the next run on the same camera, so it does not have to be learnt again
+                if (counter.getFrameCount() > 0) {
+                    try {
+                        processor.saveModel(modelFile);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    try {
+                        illuminationMonitor.writeIntervals(new File(savePath, "Illumination.csv"), videoFPS);
+                    } catch (IOException e) {
+                        e.printStackTrace();
                     }
                 }
+
+                // The video has finished or has been reset, so the native buffers of this run are released
+                framePipeline.release();
+                illuminationMonitor.release();
+                processor.release();
+                counter.release();
             }
         }
     }
 
-
-    private void saveVideo() {
-        if (isToSave)
-            videoWriter.write(currentImage);
+    /**
+     * This method is run by the detect stage of the pipeline for every frame, strictly in the order of the video.
+     * It finds the vehicles in the foreground mask of the frame, draws them on the frame,
+     * counts them and measures their speed.
+     *
+     * @param frame the frame to be processed.
+     */
+    private void detectFrame(Frame frame) {
+        trafficCounter.setLines(lineCount1, lineCount2, lineSpeed1, lineSpeed2);
+        regionOfInterest.setLines(lineCount1, lineCount2, lineSpeed1, lineSpeed2);
+        trafficCounter.processFrame(frame);
+        decimator.setBandOccupied(trafficCounter.isBandOccupied());
+        videoProcessor.setOccupiedRegions(trafficCounter.getVehicleRects(frame.region));
+
+        videoRealTime();
     }
 
     /**
-     * This method is responsible for counting the vehicles in the video.
-     * It increments the counter for each vehicle detected and classifies the vehicle type.
-     * The vehicle type can be a Car, Van, or Lorry.
-     * The method also updates the corresponding fields in the GUI and writes the results to an Excel sheet.
-     * It also checks if a vehicle is crossing the line and updates the 'crossingLine' variable accordingly.
+     * This method is run by the render stage of the pipeline for every frame.
+     * It displays the background subtraction view, saves the frame to the video file,
+     * waits for the real time processing if it is on and displays the frame in the GUI.
+     * The frames are only published to the preview surfaces, which paint them on the Event Dispatch Thread,
+     * so the pipeline does not wait for Swing.
      *
-     * @param countVehicles an instance of the CountVehicles class which is used to detect and classify vehicles.
-     * @throws WriteException if an error occurs while writing to the Excel sheet.
+     * @param frame the frame to be displayed.
      */
-    public synchronized void count(CountVehicles countVehicles) throws WriteException {
-        // Check if a new vehicle is detected
-        if (countVehicles.isVehicleToAdd()) {
-            // Increment the total vehicle counter and the last Time-Space Measurement (TSM) counter
-            counter++;
-            lastTSM++;
-            // Initialize the speed of the new vehicle to 0
-            speed.put(lastTSM, 0);
-            // Classify the type of the new vehicle
-            String vehicleType = countVehicles.classifier();
-            // Update the count of the vehicle type and the corresponding field in the GUI
-            switch (vehicleType) {
-                case "Car":
-                    cars++;
-                    carsAmountField.setValue(cars);
-                    break;
-                case "Van":
-                    vans++;
-                    vansAmountField.setValue(vans);
-                    break;
-                case "Lorry":
-                    lorries++;
-                    lorriesAmountField.setValue(lorries);
-                    break;
+    private void renderFrame(Frame frame) {
+        PreviewSurface surface = BGSsurface;
+        if (isBGSview && surface != null) {
+            resize(frame.foreground, ImageBGS, BGS_VIEW_SIZE);
+            surface.publish(ImageBGS);
+        }
+
+        frame.colourImage().copyTo(currentImage);
+        saveVideo();
+
+        if (isProcessInRealTime) {
+            // A frame which follows skipped frames is displayed for all of them
+            long time = System.currentTimeMillis() - startTime;
+            if (time < oneFrameDuration * frame.step) {
+                try {
+                    Thread.sleep(oneFrameDuration * frame.step - time);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
-            // Write the vehicle count and type to the Excel sheet
-            addNumberInteger(sheet, 0, counter, counter);
-            addLabel(sheet, 1, counter, vehicleType);
         }
-        // Check if a vehicle is crossing the line
-        crossingLine = countVehicles.isCrossingLine();
+
+        updateView(currentImage);
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * This method is run by the pipeline after the last frame of the video has been displayed.
+     * It closes the video writer, writes the results to the file and resets the GUI for the next video.
+     */
+    private void finishVideo() {
+        if (isToSave)
+            videoWriter.release();
+
+        writeResults();
+
+        playPauseButton.setEnabled(false);
+
+        saveButton.setEnabled(true);
+        loadButton.setEnabled(true);
+
+        playPauseButton.setText("Play");
+
+        minutes = 1;
+        second = 0;
     }
 
 
     /**
-     * This method measures the speed of vehicles in the video.
-     * It checks if the speed map is not empty and gets the first Time-Space Measurement (TSM).
-     * If a vehicle is ready for speed measurement, it increments the speed for each TSM in the map.
-     * It then calculates the current speed of the vehicle and gets the vehicle type from the Excel sheet.
-     * Depending on the vehicle type, it updates the total speed and average speed for that type of vehicle.
-     * It also writes the current speed and video time to the Excel sheet.
-     * If the vehicle is not ready for speed measurement, it increments the speed for each TSM in the map.
-     * If the speed exceeds the maximum FPS, it removes the TSM from the map and decrements the count for that type of vehicle.
-     * Finally, it checks if a vehicle is crossing the speed line and updates the 'crossingSpeedLine' variable accordingly.
-     *
-     * @param countVehicles an instance of the CountVehicles class which is used to detect and classify vehicles.
-     * @throws WriteException if an error occurs while writing to the Excel sheet.
+     * This method writes the results of the counting to the file in the selected format.
+     * The results are written only once, so the method can be called both when the video ends and when the GUI is reset.
      */
-    public synchronized void speedMeasure(CountVehicles countVehicles) throws WriteException {
-        // Check if the speed map is not empty
-        if (!speed.isEmpty()) {
-            // Get the first Time-Space Measurement (TSM)
-            int firstTSM = speed.entrySet().iterator().next().getKey();
-            // Check if a vehicle is ready for speed measurement
-            if (countVehicles.isToSpeedMeasure()) {
-                // Increment the speed for each TSM in the map
-                for (int i = firstTSM; i <= lastTSM; i++) {
-                    if (speed.containsKey(i)) {
-                        speed.put(i, (speed.get(i) + 1));
-                    }
-                }
+    private void writeResults() {
+        if (resultsWriter == null || trafficCounter == null)
+            return;
+        try {
+            resultsWriter.write(trafficCounter.getEvents());
+        } catch (IOException | WriteException e) {
+            e.printStackTrace();
+        }
+    }
 
-                // Calculate the current speed of the vehicle
-                double currentSpeed = computeSpeed(speed.get(firstTSM));
-                // Get the vehicle type from the Excel sheet
-                Cell cell = sheet.getWritableCell(1, firstTSM);
-                String carType = cell.getContents();
-                // Update the total speed and average speed for the vehicle type
-                switch (carType) {
-                    case "Car":
-                        sumSpeedCar = sumSpeedCar + currentSpeed;
-                        double avgspeed1 = sumSpeedCar / divisorCar;
-                        divisorCar++;
-                        carsSpeedField.setValue(avgspeed1);
-                        break;
-                    case "Van":
-                        sumSpeedVan = sumSpeedVan + currentSpeed;
-                        double avgspeed2 = sumSpeedVan / divisorVan;
-                        divisorVan++;
-                        vansSpeedField.setValue(avgspeed2);
-                        break;
-                    case "Lorry":
-                        sumSpeedLorry = sumSpeedLorry + currentSpeed;
-                        double avgspeed3 = sumSpeedLorry / divisorLorry;
-                        divisorLorry++;
-                        lorriesSpeedField.setValue(avgspeed3);
-                        break;
-                }
+    private void saveVideo() {
+        if (isToSave)
+            videoWriter.write(currentImage);
+    }
 
-                // Write the current speed and video time to the Excel sheet
-                addNumberDouble(sheet, 2, firstTSM, currentSpeed);
-                addNumberDouble(sheet, 3, firstTSM, timeInSec);
+    /**
+     * This method prepares the counting of a new run of the video.
+     * It creates the video writer if the video is to be saved, the writer of the results in the selected format
+     * and the traffic counter, which notifies the GUI about the counted vehicles and their speed.
+     */
+    private void startCounting() {
+        if (saveFlag.equals(onSaveVideo)) {
+            videoWriter = new VideoWriter(savePath + "\\Video.avi", VideoWriter.fourcc('P', 'I', 'M', '1'), videoFPS, new Size(640, 360));
+        }
 
-                // If the results are to be written to a CSV file, add the data to the CSV list
-                if (!isExcelToWrite) {
-                    ListCSV.add((firstTSM + "#" + carType + "#" + currentSpeed + "#" + timeInSec).split("#"));
-                }
+        resultsWriter = new ResultsWriter(new File(savePath), writeFlag);
 
-                // Remove the first TSM from the map
-                speed.remove(firstTSM);
+        trafficCounter = new TrafficCounter(videoFPS, distanceCS);
+        trafficCounter.setListener(fieldsUpdater);
+    }
 
-            } else {
-                // If a vehicle is not ready for speed measurement, increment the speed for each TSM in the map
-                for (int i = firstTSM; i <= lastTSM; i++) {
-                    if (speed.containsKey(i)) {
-                        int currentFPS = speed.get(i);
-                        speed.put(i, (currentFPS + 1));
-                        // If the speed exceeds the maximum FPS, remove the TSM from the map and decrement the count for that type of vehicle
-                        if (currentFPS > maxFPS) {
-                            speed.remove(i);
-
-                            Cell cell = sheet.getWritableCell(1, i);
-                            String carType = cell.getContents();
-                            switch (carType) {
-                                case "Car":
-                                    cars--;
-                                    carsAmountField.setValue(cars);
-                                    break;
-                                case "Van":
-                                    vans--;
-                                    vansAmountField.setValue(vans);
-                                    break;
-                                case "Lorry":
-                                    lorries--;
-                                    lorriesAmountField.setValue(lorries);
-                                    break;
-                            }
-
-                        }
-                    }
-                }
-            }
+    /**
+     * This is a TrafficListener implementation which displays the results of the counting in the GUI.
+     * It updates the amount field of the vehicle type when a vehicle is counted or discarded,
+     * and the speed field of the vehicle type when the speed of a vehicle is measured.
+     * The listener is called by the detect stage, so the fields are updated on the Event Dispatch Thread.
+     */
+    private TrafficListener fieldsUpdater = new TrafficListener() {
+        public void vehicleCounted(int number, String vehicleType, int amount) {
+            SwingUtilities.invokeLater(() -> amountField(vehicleType).setValue(amount));
+        }
+
+        public void speedMeasured(int number, String vehicleType, double speed, double averageSpeed) {
+            SwingUtilities.invokeLater(() -> speedField(vehicleType).setValue(averageSpeed));
+        }
+
+        public void vehicleDiscarded(int number, String vehicleType, int amount) {
+            SwingUtilities.invokeLater(() -> amountField(vehicleType).setValue(amount));
+        }
+    };
+
+    /**
+     * The amountField and speedField methods return the fields displaying the amount and the average speed of a vehicle type.
+     *
+     * @param vehicleType the type of the vehicle ("Car", "Van" or "Lorry").
+     * @return the field of the vehicle type.
+     */
+    private JFormattedTextField amountField(String vehicleType) {
+        switch (vehicleType) {
+            case "Car":
+                return carsAmountField;
+            case "Van":
+                return vansAmountField;
+            default:
+                return lorriesAmountField;
+        }
+    }
+
+    private JFormattedTextField speedField(String vehicleType) {
+        switch (vehicleType) {
+            case "Car":
+                return carsSpeedField;
+            case "Van":
+                return vansSpeedField;
+            default:
+                return lorriesSpeedField;
         }
-        // Check if a vehicle is crossing the speed line
-        crossingSpeedLine = countVehicles.isCrossingSpeedLine();
     }
 
     /**
@@ -597,6 +521,9 @@ public class GUI {
         setupBGSvisibility(frame);
         currentTime(frame);
         setupRealTime(frame);
+        setupRegionOfInterest(frame);
+        setupEngine(frame);
+        setupMaskFilter(frame);
 
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         return frame;
@@ -613,6 +540,7 @@ public class GUI {
     private void setupVideo(JFrame frame) {
         // Create a JLabel for the video display
         imageView = new JLabel();
+        imageSurface = new PreviewSurface(imageView, DISPLAY_FPS);
 
         // Create a GridBagConstraints object to specify the location and size of the video display in the GUI
         GridBagConstraints c = new GridBagConstraints();
@@ -629,8 +557,8 @@ public class GUI {
         Mat localImage = new Mat(new Size(640, 360), CvType.CV_8UC3, new Scalar(255, 255, 255));
         // Resize the image to the size of the video display
         resize(localImage, localImage, new Size(640, 360));
-        // Display the image in the JLabel
-        updateView(localImage);
+        // Display the image in the JLabel at once, so the size of the JLabel is known when the JFrame is packed
+        imageView.setIcon(new ImageIcon(imageProcessor.toBufferedImage(localImage)));
     }
 
     /**
@@ -652,8 +580,8 @@ public class GUI {
         playPauseButton.setFont(new Font("defaut", Font.BOLD, 15));
         playPauseButton.setBackground(Color.YELLOW);
         playPauseButton.addActionListener(event -> {
-            if (!isPaused) {
-                isPaused = true;
+            if (!pauseGate.isPaused()) {
+                pauseGate.pause();
                 playPauseButton.setText("Countinue");
 
                 loadButton.setEnabled(true);
@@ -661,6 +589,8 @@ public class GUI {
 
                 onButton.setEnabled(false);
                 offButton.setEnabled(false);
+                engineBox.setEnabled(false);
+                maskFilterBox.setEnabled(false);
 
                 countingLineButton.setEnabled(true);
                 distanceBLfield.setEnabled(true);
@@ -670,7 +600,7 @@ public class GUI {
                 csvButton.setEnabled(false);
 
             } else {
-                isPaused = false;
+                pauseGate.resume();
                 playPauseButton.setText("Pause");
 
                 maxWaitingFPS();
@@ -680,6 +610,8 @@ public class GUI {
 
                 onButton.setEnabled(false);
                 offButton.setEnabled(false);
+                engineBox.setEnabled(false);
+                maskFilterBox.setEnabled(false);
 
                 countingLineButton.setEnabled(false);
                 distanceBLfield.setEnabled(false);
@@ -735,6 +667,7 @@ public class GUI {
                 File file = fc.getSelectedFile();
 
                 videoPath = file.getPath();
+                stateChanged();
                 field.setText(videoPath);
                 capture = new VideoCapture(videoPath);
                 capture.read(currentImage);
@@ -796,6 +729,7 @@ public class GUI {
 
                 savePath = file.getPath();
                 field.setText(savePath);
+                stateChanged();
 
             }
         });
@@ -982,141 +916,39 @@ public class GUI {
 
     /**
      * This method updates the view in the GUI with the provided image.
-     * It converts the Mat image to a BufferedImage and sets it as the icon for the JLabel used for video display.
+     * It publishes the image to the preview surface of the video display, which paints it on the Event Dispatch Thread.
+     * It can be called from any thread.
      *
      * @param image the Mat image to be displayed in the GUI.
      */
     private void updateView(Mat image) {
-        imageView.setIcon(new ImageIcon(imageProcessor.toBufferedImage(image)));
+        imageSurface.publish(image);
     }
 
     /**
-     * This method calculates the maximum frames per second (FPS) that can be waited for a vehicle to cross the distance between the counting and speed lines.
+     * This method passes the distance between the counting and speed lines to the traffic counter,
+     * which calculates the maximum number of frames that can be waited for a vehicle to cross this distance.
      * It also calculates the duration of one frame in milliseconds.
-     * The method uses the distance between the lines (distanceCS), the video's FPS (videoFPS), and the speed of the vehicle to calculate these values.
      */
     public void maxWaitingFPS() {
-        // Calculate the time it takes for a vehicle to cross the distance between the lines
-        double time = (distanceCS / 3);
-        // Calculate the maximum number of frames that can be waited for a vehicle to cross the distance
-        double max = videoFPS * time;
-        // Convert the maximum number of frames to an integer
-        maxFPS = (int) max;
+        if (trafficCounter != null)
+            trafficCounter.setDistance(distanceCS);
 
         // Calculate the duration of one frame in milliseconds
         oneFrameDuration = 1000 / (long) videoFPS;
     }
 
     /**
-     * This method writes the vehicle data to a CSV file.
-     * It initializes a CSVWriter with the provided FileWriter and a tab character as the separator.
-     * It then adds the headers for the CSV file to the list of CSV data.
-     * The headers include "No.", "Vehicle type", "Speed [km/h]", and "Video time [sec]".
-     *
-     * @param fileWriter the FileWriter used to write the CSV file.
-     * @throws IOException if an I/O error occurs while writing to the CSV file.
-     */
-    public void writeToCSV(FileWriter fileWriter) throws IOException {
-        CSVwriter = new CSVWriter(fileWriter, '\t');
-        ListCSV.add("No.#Vehicle type#Speed [km/h]#Video time [sec]".split("#"));
-    }
-
-    /**
-     * This method writes the initial setup for an Excel file to store vehicle data.
-     * It creates a new workbook with the provided file and adds a sheet named "Counting" to the workbook.
-     * The method then adds labels to the sheet for "No.", "Vehicle type", "Speed [km/h]", and "Video time [sec]".
-     *
-     * @param file the File object representing the Excel file to be written.
-     * @throws IOException if an I/O error occurs while creating the workbook.
-     * @throws WriteException if an error occurs while writing to the Excel sheet.
-     */
-    public void writeToExel(File file) throws IOException, WriteException {
-
-        workbook = Workbook.createWorkbook(file);
-        sheet = workbook.createSheet("Counting", 0);
-        addLabel(sheet, 0, 0, "No.");
-        addLabel(sheet, 1, 0, "Vehicle type");
-        addLabel(sheet, 2, 0, "Speed [km/h]");
-        addLabel(sheet, 3, 0, "Video time [sec]");
-    }
-
-    /**
-     * This method adds a label to a cell in an Excel sheet.
-     * It creates a new Label object with the provided column, row, and text.
-     * The method then adds the label to the specified sheet.
-     *
-     * @param sheet the WritableSheet to which the label is added.
-     * @param column the column number of the cell where the label is added.
-     * @param row the row number of the cell where the label is added.
-     * @param text the text of the label to be added.
-     * @throws WriteException if an error occurs while writing to the Excel sheet.
-     */
-    private void addLabel(WritableSheet sheet, int column, int row, String text)
-            throws WriteException {
-        label = new jxl.write.Label(column, row, text);
-        sheet.addCell(label);
-    }
-
-    /**
-     * This method adds an integer value to a cell in an Excel sheet.
-     * It creates a new Number object with the provided column, row, and integer.
-     * The method then adds the number to the specified sheet.
-     *
-     * @param sheet the WritableSheet to which the number is added.
-     * @param column the column number of the cell where the number is added.
-     * @param row the row number of the cell where the number is added.
-     * @param integer the integer value to be added.
-     * @throws WriteException if an error occurs while writing to the Excel sheet.
-     */
-    private void addNumberInteger(WritableSheet sheet, int column, int row, Integer integer)
-            throws WriteException {
-
-        number = new Number(column, row, integer);
-        sheet.addCell(number);
-    }
-
-    /**
-     * This method adds a double value to a cell in an Excel sheet.
-     * It creates a new Number object with the provided column, row, and double value.
-     * The method then adds the number to the specified sheet.
-     *
-     * @param sheet the WritableSheet to which the number is added.
-     * @param column the column number of the cell where the number is added.
-     * @param row the row number of the cell where the number is added.
-     * @param d the double value to be added.
-     * @throws WriteException if an error occurs while writing to the Excel sheet.
-     */
-    private void addNumberDouble(WritableSheet sheet, int column, int row, Double d)
-            throws WriteException {
-
-        number = new Number(column, row, d);
-        sheet.addCell(number);
-    }
-    /**
-     * This method calculates the speed of a vehicle based on the number of frames it takes to cross a certain distance.
-     * It uses the distance between the counting and speed lines (distanceCS), the video's frames per second (videoFPS), and the speed per frame (speedPFS).
-     *
-     * @param speedPFS the number of frames it takes for a vehicle to cross the distance between the counting and speed lines.
-     * @return the speed of the vehicle in km/h.
-     */
-    public double computeSpeed(int speedPFS) {
-        double duration = speedPFS / videoFPS;
-        double v = (distanceCS / duration) * 3.6;
-        return v;
-    }
-
-    /**
-     * This method calculates the real-time duration of the video in seconds.
-     * It increments the frame counter (whichFrame) and calculates the time in seconds by dividing the frame counter by the video's frames per second (videoFPS).
-     * The method then calls the setTimeInMinutes() method to convert the time to minutes and seconds format.
+     * This method displays the real-time duration of the video in seconds.
+     * It gets the video time of the last processed frame from the traffic counter
+     * and calls the setTimeInMinutes() method on the Event Dispatch Thread to convert the time to minutes and seconds format.
      * Finally, it returns the time in seconds.
      *
      * @return the real-time duration of the video in seconds.
      */
     private double videoRealTime() {
-        whichFrame++;
-        timeInSec = whichFrame / videoFPS;
-        setTimeInMinutes();
+        double timeInSec = trafficCounter.getTimeInSec();
+        SwingUtilities.invokeLater(() -> setTimeInMinutes(timeInSec));
         return timeInSec;
     }
 
@@ -1126,8 +958,10 @@ public class GUI {
      * If the time in seconds is equal to or more than 60 but the seconds part is less than 60, it calculates the seconds part by subtracting the minutes part from the time in seconds.
      * It then sets the value of the currentTimeField to the minutes and seconds followed by " min " and " sec" respectively.
      * If the seconds part is equal to or more than 60, it resets the seconds part to 0 and increments the minutes part by 1.
+     *
+     * @param timeInSec the video time in seconds.
      */
-    private void setTimeInMinutes() {
+    private void setTimeInMinutes(double timeInSec) {
         if (timeInSec < 60) {
             currentTimeField.setValue((int) timeInSec + " sec");
         } else if (second < 60) {
@@ -1164,7 +998,7 @@ public class GUI {
      * The method also adds an ActionListener to the button to handle the reset functionality.
      * When the button is clicked, it opens a confirmation dialog asking the user if they are sure they want to reset the video.
      * If the user confirms, it resets various variables and components to their initial state.
-     * This includes the video capture, the video view, the play/pause button, the video processor, the reset button, the on/off buttons, the xls/csv buttons, the counting/speed line buttons, the distance field, the line points, the time variables, the vehicle fields and variables, the counter, the last TSM, the video writer, the workbook, and the CSV writer.
+     * This includes the video capture, the video view, the play/pause button, the video processor, the reset button, the on/off buttons, the xls/csv buttons, the counting/speed line buttons, the distance field, the line points, the time variables, the vehicle fields, the video writer and the writer of the results.
      * It also starts a new thread for resetting.
      * Finally, it adds the button to the JFrame using a GridBagConstraints object to specify its location and size.
      *
@@ -1179,7 +1013,8 @@ public class GUI {
                     frame, "Are you sure you want to reset the video?",
                     "Reset", JOptionPane.YES_NO_OPTION);
             if (n == JOptionPane.YES_OPTION) {
-                loopBreaker = true;
+                if (pipeline != null)
+                    pipeline.stop();
 
                 capture = new VideoCapture(videoPath);
                 capture.read(currentImage);
@@ -1189,15 +1024,17 @@ public class GUI {
 
                 currentTimeField.setValue("0 sec");
 
-                isPaused = true;
+                pauseGate.pause();
                 playPauseButton.setText("Play");
                 playPauseButton.setEnabled(false);
-                videoProcessor = new MixtureOfGaussianBackground(imageThreshold, history);
+                videoProcessor = createVideoProcessor();
 
                 resetButton.setEnabled(false);
 
                 onButton.setEnabled(true);
                 offButton.setEnabled(true);
+                engineBox.setEnabled(true);
+                maskFilterBox.setEnabled(true);
 
                 xlsButton.setEnabled(true);
                 csvButton.setEnabled(true);
@@ -1212,8 +1049,6 @@ public class GUI {
 
                 minutes = 1;
                 second = 0;
-                whichFrame = 0;
-                timeInSec = 0;
 
                 carsAmountField.setValue(Integer.valueOf(0));
                 carsSpeedField.setValue(Integer.valueOf(0));
@@ -1222,47 +1057,13 @@ public class GUI {
                 lorriesAmountField.setValue(Integer.valueOf(0));
                 lorriesSpeedField.setValue(Integer.valueOf(0));
 
-                cars = 0;
-                vans = 0;
-                lorries = 0;
-
-                sumSpeedCar = 0;
-                sumSpeedVan = 0;
-                sumSpeedLorry = 0;
-
-                divisorCar = 1;
-                divisorVan = 1;
-                divisorLorry = 1;
-
-                counter = 0;
-                lastTSM = 0;
-
                 if (isToSave)
                     videoWriter.release();
 
-                if (!isWritten) {
-                    try {
-                        workbook.write();
-                        workbook.close();
-                    } catch (IOException | WriteException e) {
-                        e.printStackTrace();
-                    }
-                    if (!isExcelToWrite) {
-                        try {
-                            CSVwriter.writeAll(ListCSV);
-                            CSVwriter.close();
-                            new File(savePath + "\\Results.xls").delete();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-
-                    }
-                    isWritten = true;
-                }
+                writeResults();
 
                 Thread reseting = new Thread(new Reseting());
                 reseting.start();
-                loopBreaker = false;
             }
 
         });
@@ -1288,58 +1089,34 @@ public class GUI {
 
         /**
          * The run method is called when the thread is started.
-         * It enters an infinite loop that checks if the counting and speed lines have been set.
-         * If both lines have been set, it enables the play/pause and reset buttons, and disables the on/off and xls/csv buttons.
-         * It also checks if the save video option is on, and if so, it creates a new VideoWriter for the saved video.
-         * The method then starts a new thread for the main loop of the application.
-         * It sets the save path for the results file and tries to write the initial setup for the Excel file.
-         * If the Excel option is not selected, it tries to write the initial setup for the CSV file.
-         * Finally, it sets the isWritten flag to false and breaks the infinite loop.
+         * It waits, without using the CPU, until the counting and speed lines have been set.
+         * Then it enables the play/pause and reset buttons, and disables the on/off and xls/csv buttons.
+         * It then prepares the counting of the new run, which creates the video writer if the save video option is on,
+         * the writer of the results and the traffic counter.
+         * Finally, it starts a new thread for the main loop of the application.
          */
 
         @Override
         public void run() {
 
-            while (true) {
-                if (lineSpeed2 != null && lineCount2 != null) {
-                    playPauseButton.setEnabled(true);
-                    resetButton.setEnabled(true);
-
-                    onButton.setEnabled(false);
-                    offButton.setEnabled(false);
-
-                    xlsButton.setEnabled(false);
-                    csvButton.setEnabled(false);
-
-                    if (saveFlag.equals(onSaveVideo)) {
-                        videoWriter = new VideoWriter(savePath + "\\Video.avi", VideoWriter.fourcc('P', 'I', 'M', '1'), videoFPS, new Size(640, 360));
-                    }
+            try {
+                awaitState(() -> lineSpeed2 != null && lineCount2 != null);
+            } catch (InterruptedException e) {
+                return;
+            }
+            playPauseButton.setEnabled(true);
+            resetButton.setEnabled(true);
 
-                    Thread mainLoop = new Thread(new Loop());
-                    mainLoop.start();
+            onButton.setEnabled(false);
+            offButton.setEnabled(false);
 
-                    String xlsSavePath = savePath + "\\Results.xls";
-                    fileToSaveXLS = new File(xlsSavePath);
-                    try {
-                        writeToExel(fileToSaveXLS);
-                    } catch (IOException | WriteException e) {
-                        e.printStackTrace();
-                    }
+            xlsButton.setEnabled(false);
+            csvButton.setEnabled(false);
 
-                    if (!isExcelToWrite) {
-                        String csvSavePath = savePath + "\\Results.csv";
-                        try {
-                            filetoSaveCSV = new FileWriter(csvSavePath);
-                            writeToCSV(filetoSaveCSV);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    isWritten = false;
+            startCounting();
 
-                    break;
-                }
-            }
+            Thread mainLoop = new Thread(new Loop());
+            mainLoop.start();
         }
     }
 
@@ -1409,7 +1186,7 @@ public class GUI {
      * The "XLS" button is set to selected and the "CSV" button is set to not selected by default.
      * The method also creates a ButtonGroup and adds the two JRadioButtons to it.
      * An ActionListener is added to the JRadioButtons to handle the selection change.
-     * When a button is selected, it sets the writeFlag to the action command of the selected button and sets the isExcelToWrite flag accordingly.
+     * When a button is selected, it sets the writeFlag to the action command of the selected button.
      * The method then creates a JPanel with a GridLayout and adds the JRadioButtons to it.
      * It also creates a JLabel for the "File results :" label and adds it to the JFrame.
      * Finally, it adds the JPanel to the JFrame using a GridBagConstraints object to specify its location and size.
@@ -1436,7 +1213,6 @@ public class GUI {
 
         ActionListener operationChangeListener = event -> {
             writeFlag = event.getActionCommand();
-            isExcelToWrite = (writeFlag.equals(xlsWriteResults)) ? true : false;
         };
 
         xlsButton.addActionListener(operationChangeListener);
@@ -1602,6 +1378,7 @@ public class GUI {
                 startDraw = true;
             } else {
                 lineCount2 = point;
+                stateChanged();
                 startDraw = false;
                 mouseListenertIsActive = false;
                 countingLineButton.setEnabled(true);
@@ -1611,7 +1388,7 @@ public class GUI {
             }
 
         } else if (event == 0 && startDraw) {
-            copiedImage = currentImage.clone();
+            currentImage.copyTo(copiedImage);
             Imgproc.line(copiedImage, lineCount1, point, new Scalar(0, 0, 255), 1);
             if (lineSpeed1 != null && lineSpeed2 != null)
                 Imgproc.line(copiedImage, lineSpeed1, lineSpeed2, new Scalar(0, 255, 0), 1);
@@ -1638,6 +1415,7 @@ public class GUI {
                 startDraw = true;
             } else {
                 lineSpeed2 = point;
+                stateChanged();
                 startDraw = false;
                 mouseListenertIsActive2 = false;
                 countingLineButton.setEnabled(true);
@@ -1647,7 +1425,7 @@ public class GUI {
             }
 
         } else if (event == 0 && startDraw) {
-            copiedImage = currentImage.clone();
+            currentImage.copyTo(copiedImage);
             Imgproc.line(copiedImage, lineSpeed1, point, new Scalar(0, 255, 0), 1);
             if (lineCount1 != null && lineCount2 != null)
                 Imgproc.line(copiedImage, lineCount1, lineCount2, new Scalar(0, 0, 255), 1);
@@ -1758,7 +1536,8 @@ public class GUI {
      * The JSpinner is initialized with a SpinnerNumberModel that has the initial value set to imageThreshold, the minimum value set to 0, the maximum value set to 10000, and the step size set to 5.
      * The JSpinner is set to align to the left.
      * A ChangeListener is added to the JSpinner to handle the image threshold selection change.
-     * When the value of the JSpinner changes, it sets the imageThreshold to the new value and updates the videoProcessor's image threshold.
+     * When the value of the JSpinner changes, it swaps in a new snapshot of the thresholds with the new image threshold,
+     * which the pipeline applies to the video processor at the start of the next frame.
      * The method then creates a GridBagConstraints object and sets its properties to specify the location and size of the JLabel and JSpinner in the GUI.
      * Finally, it adds the JLabel and JSpinner to the JFrame.
      *
@@ -1767,12 +1546,12 @@ public class GUI {
     private void setupImageThreshold(JFrame frame) {
         JLabel imgThresholdLabel = new JLabel("Video threshold:", JLabel.RIGHT);
 
-        imgThresholdField = new JSpinner(new SpinnerNumberModel(imageThreshold, 0, 10000, 5));
+        imgThresholdField = new JSpinner(new SpinnerNumberModel(detectorConfig.get().getImageThreshold(), 0, 10000, 5));
         imgThresholdField.setAlignmentX(Component.LEFT_ALIGNMENT);
 
         imgThresholdField.addChangeListener(e -> {
-            imageThreshold = (double) imgThresholdField.getValue();
-            videoProcessor.setImageThreshold(imageThreshold);
+            double imageThreshold = (double) imgThresholdField.getValue();
+            detectorConfig.updateAndGet(config -> config.withImageThreshold(imageThreshold));
         });
 
         GridBagConstraints c = new GridBagConstraints();
@@ -1795,7 +1574,8 @@ public class GUI {
      * The JSpinner is initialized with a SpinnerNumberModel that has the initial value set to history, the minimum value set to 0, the maximum value set to 100000, and the step size set to 50.
      * The JSpinner is set to align to the left.
      * A ChangeListener is added to the JSpinner to handle the video history selection change.
-     * When the value of the JSpinner changes, it sets the history to the new value and updates the videoProcessor's history.
+     * When the value of the JSpinner changes, it swaps in a new snapshot of the thresholds with the new history,
+     * which the pipeline applies to the video processor at the start of the next frame, keeping the learnt model.
      * The method then creates a GridBagConstraints object and sets its properties to specify the location and size of the JLabel and JSpinner in the GUI.
      * Finally, it adds the JLabel and JSpinner to the JFrame.
      *
@@ -1804,12 +1584,12 @@ public class GUI {
     private void setupVideoHistory(JFrame frame) {
         JLabel videoHistoryLabel = new JLabel("History:", JLabel.RIGHT);
 
-        videoHistoryField = new JSpinner(new SpinnerNumberModel(history, 0, 100000, 50));
+        videoHistoryField = new JSpinner(new SpinnerNumberModel(detectorConfig.get().getHistory(), 0, 100000, 50));
         videoHistoryField.setAlignmentX(Component.LEFT_ALIGNMENT);
 
         videoHistoryField.addChangeListener(e -> {
-            history = (int) videoHistoryField.getValue();
-            videoProcessor.setHistory(history);
+            int history = (int) videoHistoryField.getValue();
+            detectorConfig.updateAndGet(config -> config.withHistory(history));
         });
 
         GridBagConstraints c = new GridBagConstraints();
@@ -1833,7 +1613,7 @@ public class GUI {
      * The JSpinner is initialized with a SpinnerNumberModel that has the initial value set to areaThreshold, the minimum value set to 0, the maximum value set to 100000, and the step size set to 50.
      * The JSpinner is set to align to the left.
      * A ChangeListener is added to the JSpinner to handle the area threshold selection change.
-     * When the value of the JSpinner changes, it sets the areaThreshold to the new value.
+     * When the value of the JSpinner changes, it swaps in a new snapshot of the thresholds with the new area threshold.
      * The method then creates a GridBagConstraints object and sets its properties to specify the location and size of the JLabel and JSpinner in the GUI.
      * Finally, it adds the JLabel and JSpinner to the JFrame.
      *
@@ -1842,11 +1622,11 @@ public class GUI {
     private void setupAreaThreshold(JFrame frame) {
         JLabel areaThresholdLabel = new JLabel("Area threshold:", JLabel.RIGHT);
 
-        final JSpinner areaThresholdField = new JSpinner(new SpinnerNumberModel(areaThreshold, 0, 100000, 50));
+        final JSpinner areaThresholdField = new JSpinner(new SpinnerNumberModel(detectorConfig.get().getAreaThreshold(), 0, 100000, 50));
         areaThresholdField.setAlignmentX(Component.LEFT_ALIGNMENT);
 
         areaThresholdField.addChangeListener(e ->
-                areaThreshold = (int) areaThresholdField.getValue());
+                detectorConfig.updateAndGet(config -> config.withAreaThreshold((int) areaThresholdField.getValue())));
 
         GridBagConstraints c = new GridBagConstraints();
 
@@ -1869,7 +1649,7 @@ public class GUI {
      * The JSpinner is initialized with a SpinnerNumberModel that has the initial value set to vehicleSizeThreshold, the minimum value set to 0, the maximum value set to 100000, and the step size set to 100.
      * The JSpinner is set to align to the left.
      * A ChangeListener is added to the JSpinner to handle the vehicle size threshold selection change.
-     * When the value of the JSpinner changes, it sets the vehicleSizeThreshold to the new value.
+     * When the value of the JSpinner changes, it swaps in a new snapshot of the thresholds with the new vehicle size threshold.
      * The method then creates a GridBagConstraints object and sets its properties to specify the location and size of the JLabel and JSpinner in the GUI.
      * Finally, it adds the JLabel and JSpinner to the JFrame.
      *
@@ -1878,11 +1658,11 @@ public class GUI {
     private void setupVehicleSizeThreshold(JFrame frame) {
         JLabel vehicleSizeThresholdLabel = new JLabel("Vehicle size threshold:", JLabel.RIGHT);
 
-        final JSpinner vehicleSizeThresholdField = new JSpinner(new SpinnerNumberModel(vehicleSizeThreshold, 0, 100000, 100));
+        final JSpinner vehicleSizeThresholdField = new JSpinner(new SpinnerNumberModel(detectorConfig.get().getVehicleSizeThreshold(), 0, 100000, 100));
         vehicleSizeThresholdField.setAlignmentX(Component.LEFT_ALIGNMENT);
 
         vehicleSizeThresholdField.addChangeListener(e ->
-                vehicleSizeThreshold = (int) vehicleSizeThresholdField.getValue());
+                detectorConfig.updateAndGet(config -> config.withVehicleSizeThreshold((int) vehicleSizeThresholdField.getValue())));
 
         GridBagConstraints c = new GridBagConstraints();
 
@@ -1914,6 +1694,7 @@ public class GUI {
         frameBGS.add(BGSview);
         Mat localImage = new Mat(new Size(430, 240), CvType.CV_8UC3, new Scalar(255, 255, 255));
         BGSview.setIcon(new ImageIcon(imageProcessor.toBufferedImage(localImage)));
+        BGSsurface = new PreviewSurface(BGSview, DISPLAY_FPS);
         frameBGS.setVisible(true);
         frameBGS.pack();
 
@@ -1923,6 +1704,9 @@ public class GUI {
                 super.windowClosing(e);
                 BGSButton.setEnabled(true);
                 isBGSview = false;
+                PreviewSurface surface = BGSsurface;
+                BGSsurface = null;
+                surface.release();
             }
         });
 
@@ -2018,6 +1802,7 @@ public class GUI {
      * The button's preferred size is set to 300x35, its font is set to bold with size 15, and its background color is set to black.
      * The method also adds an ActionListener to the button to handle the real time processing.
      * When the button is clicked, it toggles the isProcessInRealTime flag and updates the button's text.
+     * In the real time processing, frames are skipped when the processing cannot keep up with the video.
      * The method then creates a GridBagConstraints object and sets its properties to specify the location and size of the button in the GUI.
      * Finally, it adds the button to the JFrame.
      *
@@ -2038,6 +1823,8 @@ public class GUI {
                 realTimeButton.setPreferredSize(new Dimension(300, 35));
                 realTimeButton.setFont(new Font("defaut", Font.BOLD, 15));
                 isProcessInRealTime = false;
+                if (decimator != null)
+                    decimator.setEnabled(false);
                 realTimeButton.setPreferredSize(new Dimension(300, 35));
                 realTimeButton.setFont(new Font("defaut", Font.BOLD, 15));
                 realTimeButton.setText("Ral time OFF");
@@ -2045,6 +1832,8 @@ public class GUI {
                 realTimeButton.setPreferredSize(new Dimension(300, 35));
                 realTimeButton.setFont(new Font("defaut", Font.BOLD, 15));
                 isProcessInRealTime = true;
+                if (decimator != null)
+                    decimator.setEnabled(true);
                 realTimeButton.setPreferredSize(new Dimension(300, 35));
                 realTimeButton.setFont(new Font("defaut", Font.BOLD, 15));
                 realTimeButton.setText("Real time ON");
@@ -2063,6 +1852,124 @@ public class GUI {
         frame.add(realTimeButton, c);
     }
 
+    /**
+     * This method sets up the button which restricts the processing to the band around the counting and speed lines.
+     * When the button is clicked, it toggles the isRegionOfInterest flag and updates the button's text.
+     * While the band is used, the background subtraction, the filtering and the search for the contours
+     * are done only in the band, and the model of the background is learnt again for the new size.
+     *
+     * @param frame the JFrame to which the button is added.
+     */
+    private void setupRegionOfInterest(JFrame frame) {
+        regionButton = new JButton("Region OFF");
+        regionButton.setPreferredSize(new Dimension(300, 35));
+        regionButton.setFont(new Font("defaut", Font.BOLD, 15));
+        regionButton.setBackground(Color.BLACK);
+
+        regionButton.addActionListener(event -> {
+            isRegionOfInterest = !isRegionOfInterest;
+            if (regionOfInterest != null)
+                regionOfInterest.setEnabled(isRegionOfInterest);
+            regionButton.setText(isRegionOfInterest ? "Region ON" : "Region OFF");
+        });
+        regionButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        GridBagConstraints c = new GridBagConstraints();
+
+        c.gridx = 0;
+        c.gridy = 13;
+        c.gridwidth = 2;
+
+        frame.add(regionButton, c);
+    }
+
+    /**
+     * This method creates the video processor of the selected engine with the current image threshold and history.
+     *
+     * @return the new video processor.
+     */
+    private VideoProcessor createVideoProcessor() {
+        DetectorConfig config = detectorConfig.get();
+        return engine.create(config.getImageThreshold(), config.getHistory());
+    }
+
+    /**
+     * This method sets up the selection of the model of the background subtraction in the GUI.
+     * It creates a JLabel for the "Background:" label and a JComboBox with all the engines of the BackgroundEngine registry.
+     * The description and the approximate cost of the selected engine are shown as the tooltip of the JComboBox.
+     * The selected engine is used from the next start of the video, so the JComboBox is disabled while the video is processed
+     * and enabled again when the video is reset.
+     *
+     * @param frame the JFrame to which the engine selection components are added.
+     */
+    private void setupEngine(JFrame frame) {
+        JLabel engineLabel = new JLabel("Background:", JLabel.RIGHT);
+
+        engineBox = new JComboBox<>(BackgroundEngine.values());
+        engineBox.setSelectedItem(engine);
+        engineBox.setToolTipText(engineTooltip(engine));
+
+        engineBox.addActionListener(event -> {
+            engine = (BackgroundEngine) engineBox.getSelectedItem();
+            engineBox.setToolTipText(engineTooltip(engine));
+        });
+
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(10, 0, 10, 0);
+        c.gridx = 0;
+        c.gridy = 14;
+        c.gridwidth = 1;
+        frame.add(engineLabel, c);
+
+        c.fill = GridBagConstraints.NONE;
+        c.gridx = 1;
+        frame.add(engineBox, c);
+    }
+
+    /**
+     * This method sets up the selection of the filter cleaning the foreground masks in the GUI.
+     * It creates a JLabel for the "Mask filter:" label and a JComboBox with all the filters of the MaskCleanup registry.
+     * The selected filter is used from the next start of the video, like the engine.
+     *
+     * @param frame the JFrame to which the filter selection components are added.
+     */
+    private void setupMaskFilter(JFrame frame) {
+        JLabel maskFilterLabel = new JLabel("Mask filter:", JLabel.RIGHT);
+
+        maskFilterBox = new JComboBox<>(MaskCleanup.values());
+        maskFilterBox.setSelectedItem(maskCleanup);
+        maskFilterBox.setToolTipText(maskCleanup.getDescription());
+
+        maskFilterBox.addActionListener(event -> {
+            maskCleanup = (MaskCleanup) maskFilterBox.getSelectedItem();
+            maskFilterBox.setToolTipText(maskCleanup.getDescription());
+        });
+
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(10, 0, 10, 0);
+        c.gridx = 0;
+        c.gridy = 15;
+        c.gridwidth = 1;
+        frame.add(maskFilterLabel, c);
+
+        c.fill = GridBagConstraints.NONE;
+        c.gridx = 1;
+        frame.add(maskFilterBox, c);
+    }
+
+    /**
+     * This method returns the tooltip describing an engine.
+     * The cost of the engine is not shown, as it depends on the machine and is measured with the EngineBenchmark.
+     *
+     * @param engine the engine to be described.
+     * @return the description of the engine.
+     */
+    private static String engineTooltip(BackgroundEngine engine) {
+        return engine.getDescription();
+    }
+
     /**
      * This method sets the look and feel of the UI to match the system's look and feel.
      * It calls the UIManager's setLookAndFeel method with the system's look and feel class name.
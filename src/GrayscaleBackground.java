@@ -0,0 +1,161 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.core.Size; // OpenCV library for handling sizes
+import org.opencv.imgcodecs.Imgcodecs; // OpenCV library for reading and writing images
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+import java.io.File; // Java IO library for handling files
+import java.io.IOException; // Java IO library for handling IO exceptions
+
+/**
+ * The GrayscaleBackground class is the base of the cheap background models, which keep a single grayscale
+ * background image instead of a mixture of distributions for every pixel.
+ * It converts the input images to grayscale and starts the model again whenever the size of the images changes,
+ * e.g. when the processing is restricted to the band around the lines.
+ * The classes which extend it only compare the grayscale image with their model and update the model.
+ */
+public abstract class GrayscaleBackground implements VideoProcessor {
+
+    // The grayscale input image
+    protected final Mat gray = new Mat();
+    // The foreground mask, 255 for the foreground and 0 for the background
+    protected final Mat foreground = new Mat();
+
+    // The difference of brightness above which a pixel belongs to the foreground
+    protected volatile double imageThreshold;
+    // The number of frames after which the model has mostly forgotten an old background
+    protected volatile int history;
+
+    // The size of the images the model has been started with, or null before the first image
+    private Size modelSize;
+
+    /**
+     * Constructor for the GrayscaleBackground class.
+     *
+     * @param imageThreshold the difference of brightness above which a pixel belongs to the foreground.
+     * @param history the number of frames after which the model has mostly forgotten an old background.
+     */
+    protected GrayscaleBackground(double imageThreshold, int history) {
+        this.imageThreshold = imageThreshold;
+        this.history = history;
+    }
+
+    @Override
+    public Mat process(Mat inputImage) {
+        return process(inputImage, 1);
+    }
+
+    /**
+     * This method converts the input image to grayscale, starts the model with it if it is the first image
+     * or its size has changed, and then compares it with the model and updates the model.
+     *
+     * @param inputImage The input image to be processed, either BGR or grayscale.
+     * @param step The number of frames from the previous processed image to this one.
+     * @return The foreground mask of the input image.
+     */
+    @Override
+    public Mat process(Mat inputImage, int step) {
+        if (inputImage.channels() > 1)
+            Imgproc.cvtColor(inputImage, gray, Imgproc.COLOR_BGR2GRAY);
+        else
+            inputImage.copyTo(gray);
+
+        if (modelSize == null || !modelSize.equals(gray.size())) {
+            modelSize = gray.size();
+            initialize(gray);
+        }
+        update(gray, Math.max(1, step));
+        return foreground;
+    }
+
+    /**
+     * This method returns the weight of the new image in the model after the given number of frames,
+     * so that a skipped frame is learnt as if it had been processed.
+     *
+     * @param step The number of frames from the previous processed image to this one.
+     * @return The learning rate for the step, 1/history for a single frame.
+     */
+    protected double learningRate(int step) {
+        return 1 - Math.pow(1 - 1.0 / Math.max(1, history), step);
+    }
+
+    /**
+     * This method starts the model with the given image, which becomes the whole background.
+     *
+     * @param gray The grayscale image.
+     */
+    protected abstract void initialize(Mat gray);
+
+    /**
+     * This method writes the foreground mask of the image into the foreground matrix and updates the model.
+     *
+     * @param gray The grayscale image.
+     * @param step The number of frames from the previous processed image to this one, at least 1.
+     */
+    protected abstract void update(Mat gray, int step);
+
+    /**
+     * This method writes the grayscale image of the background.
+     *
+     * @param backgroundImage The matrix into which the grayscale image of the background is written.
+     * @return true if the image has been written, false if no image has been processed yet.
+     */
+    @Override
+    public boolean getBackgroundImage(Mat backgroundImage) {
+        if (modelSize == null)
+            return false;
+        writeBackground(backgroundImage);
+        return true;
+    }
+
+    /**
+     * This method starts the model with the grayscale image of the background saved by saveModel.
+     * The model is kept as long as the processed images have the size of the saved image.
+     *
+     * @param file The file from which the image of the background is restored.
+     * @return true if the model has been restored, false if the file does not hold an image.
+     * @throws IOException if the file cannot be read.
+     */
+    @Override
+    public boolean loadModel(File file) throws IOException {
+        Mat seed = VideoProcessor.readModelImage(file, Imgcodecs.IMREAD_GRAYSCALE);
+        try {
+            if (seed.empty())
+                return false;
+            modelSize = seed.size();
+            initialize(seed);
+            return true;
+        } finally {
+            seed.release();
+        }
+    }
+
+    /**
+     * This method writes the grayscale image of the background of the model, which has been started.
+     *
+     * @param backgroundImage The matrix into which the grayscale image of the background is written.
+     */
+    protected abstract void writeBackground(Mat backgroundImage);
+
+    @Override
+    public void setImageThreshold(double imageThreshold) {
+        this.imageThreshold = imageThreshold;
+    }
+
+    @Override
+    public void setHistory(int history) {
+        this.history = history;
+    }
+
+    /**
+     * This method releases the grayscale image and the foreground mask.
+     * The classes which extend it release their models too.
+     */
+    @Override
+    public void release() {
+        modelSize = null;
+        gray.release();
+        foreground.release();
+    }
+}
@@ -0,0 +1,107 @@
+// Importing the necessary libraries
+
+import jxl.write.WriteException; // JExcel library for handling exceptions while writing to Excel
+
+import java.io.File; // Java IO library for handling files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.util.List; // Java Util library for handling lists
+
+/**
+ * The HeadlessApplication class is the command-line entry point of the application.
+ * It processes a video without the GUI, so it can be run on servers without a display.
+ * The settings are given as "--key=value" arguments or in a configuration file given by "--config=path".
+ */
+public class HeadlessApplication {
+    // Static initializer block to load the OpenCV library
+    static {
+        Application.loadNativeLibrary();
+    }
+
+    // The description of the command-line arguments
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -cp TrafficDetector.jar HeadlessApplication [--config=file] --key=value ...",
+            "  --video=path                 the video to be processed",
+            "  --batch=path,...             the videos or directories of videos processed in parallel",
+            "  --threads=n                  the number of videos processed at the same time (default: one per core)",
+            "  --segments=n                 the number of segments of the video processed in parallel (default 1)",
+            "  --maxFrameStep=n             skip up to n-1 frames when the processing falls behind the video (default 1)",
+            "  --roi=true|false             process only the band around the lines (default false)",
+            "  --roiPadding=pixels          the padding of the band around the lines (default 80)",
+            "  --output=directory           the directory for the results",
+            "  --countingLine=x1,y1,x2,y2   the counting line in the 640x360 frame",
+            "  --speedLine=x1,y1,x2,y2      the speed line in the 640x360 frame",
+            "  --distance=meters            the distance between the lines (default 6.0)",
+            "  --engine=name                the background model: MOG2, KNN, MEDIAN, AVERAGE, JAVA_AVERAGE or DIFFERENCE (default MOG2)",
+            "  --maskFilter=name            the cleaning of the masks: BILATERAL, OPEN_CLOSE, MEDIAN, COMPONENTS or NONE (default BILATERAL)",
+            "  --pyramidLevels=0|1|2        run the background model at 1/2 or 1/4 of the resolution (default 0)",
+            "  --tracking=LINES|TRACKS|KALMAN  follow the vehicles by the crossing flags, by their own tracks,",
+            "                               or by tracks predicted by a Kalman filter (default LINES)",
+            "  --detectionStep=n            process only every n-th frame, best with --tracking=KALMAN (default 1)",
+            "  --refineMask=true|false      remove the shadows and count the connected regions instead of the contours (default false)",
+            "  --grayscale=true|false       run the background subtraction on grayscale frames (default false)",
+            "  --illuminationCheck=true|false  skip the frames in which the light of the whole scene changes (default true)",
+            "  --model=file                 restore the background model from the file and save it after the video",
+            "                               (in the batch mode, the directory of the models, one per directory of videos)",
+            "  --imageThreshold=value       the image threshold (default 20)",
+            "  --history=frames             the history of the background subtraction (default 1500)",
+            "  --areaThreshold=pixels       the area threshold (default 1700)",
+            "  --vehicleSizeThreshold=px    the vehicle size threshold (default 20000)",
+            "  --format=XLS|CSV             the format of the results (default XLS)",
+            "  --saveVideo=true|false       whether to save the processed video (default false)");
+
+    /**
+     * The main method of the headless application.
+     * It reads the settings, processes the video (or the videos of the batch) and prints the totals of the counting.
+     *
+     * @param args the command-line arguments.
+     * @throws IOException if the video cannot be opened or the results cannot be written.
+     * @throws WriteException if an error occurs while writing to an Excel file.
+     */
+    public static void main(String[] args) throws IOException, WriteException {
+        DetectorSettings settings;
+        try {
+            settings = DetectorSettings.fromArguments(args);
+            settings.validate();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        if (settings.getBatch() != null) {
+            runBatch(settings);
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        TrafficCounter result = new HeadlessRunner(settings).run();
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+        System.out.printf("Cars: %d (%.1f km/h)%n", result.getCars(), result.getAverageSpeedCar());
+        System.out.printf("Vans: %d (%.1f km/h)%n", result.getVans(), result.getAverageSpeedVan());
+        System.out.printf("Lorries: %d (%.1f km/h)%n", result.getLorries(), result.getAverageSpeedLorry());
+        System.out.printf("Processed %d frames in %.1f sec (%.1f fps)%n",
+                result.getFrameCount(), seconds, result.getFrameCount() / Math.max(seconds, 0.001));
+    }
+
+    /**
+     * This method processes all the videos of the batch in parallel and prints the summary of every video.
+     *
+     * @param settings the settings shared by all the videos.
+     * @throws IOException if a video is not found or the summary cannot be written.
+     */
+    private static void runBatch(DetectorSettings settings) throws IOException {
+        List<File> videos = BatchScheduler.findVideos(settings.getBatch().split(","));
+        long startTime = System.currentTimeMillis();
+        List<VideoSummary> summaries = new BatchScheduler(settings, settings.getThreads()).run(videos);
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+        for (VideoSummary summary : summaries) {
+            System.out.println(String.join("\t", summary.toRow()));
+        }
+        VideoSummary total = summaries.get(summaries.size() - 1);
+        System.out.printf("Processed %d videos, %d frames in %.1f sec (%.1f fps)%n",
+                videos.size(), total.getFrames(), seconds, total.getFrames() / Math.max(seconds, 0.001));
+    }
+}
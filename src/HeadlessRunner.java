@@ -0,0 +1,174 @@
+// Importing the necessary libraries
+
+import jxl.write.WriteException; // JExcel library for handling exceptions while writing to Excel
+import org.opencv.videoio.VideoCapture; // OpenCV library for capturing video
+import org.opencv.videoio.VideoWriter; // OpenCV library for writing video
+import org.opencv.videoio.Videoio; // OpenCV library for handling video I/O operations
+
+import java.io.File; // Java IO library for handling files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.util.concurrent.atomic.AtomicReference; // Java Concurrent library for references swapped atomically
+
+/**
+ * The HeadlessRunner class processes a whole video without the GUI.
+ * It runs the same background subtraction and vehicle counting as the GUI,
+ * but it does not display anything and does not wait for the real time, so the video is processed as fast as possible.
+ * The results are written to the results directory in the selected format.
+ */
+public class HeadlessRunner {
+
+    // The settings of the processing
+    private DetectorSettings settings;
+    // Whether the stages of the processing run on their own threads
+    private boolean isPipelined = true;
+
+    // The number of frames of the video, or 0 if it is not known
+    private volatile int totalFrames;
+    // The traffic counter of the video being processed
+    private volatile TrafficCounter trafficCounter;
+
+    /**
+     * Constructor for the HeadlessRunner class.
+     *
+     * @param settings the settings of the processing.
+     */
+    public HeadlessRunner(DetectorSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * This method sets whether the stages of the processing run on their own threads.
+     * When many videos are processed at the same time, every video should run in one thread.
+     *
+     * @param isPipelined true to run the stages on their own threads, false to run them in the calling thread.
+     */
+    public void setPipelined(boolean isPipelined) {
+        this.isPipelined = isPipelined;
+    }
+
+    /**
+     * This method returns the number of the frames processed so far.
+     *
+     * @return the number of the processed frames.
+     */
+    public int getProcessedFrames() {
+        TrafficCounter counter = trafficCounter;
+        return counter == null ? 0 : counter.getFrameCount();
+    }
+
+    /**
+     * This method returns the number of the frames of the video.
+     *
+     * @return the number of the frames, or 0 if it is not known yet.
+     */
+    public int getTotalFrames() {
+        return totalFrames;
+    }
+
+    /**
+     * This method processes the whole video.
+     * It opens the video, creates the video processor, the writer of the results and the traffic counter,
+     * and runs the video through a FramePipeline without a paused state, either on its own threads or in the calling thread.
+     * If the video is split into segments, the segments are processed at the same time by a SegmentedRunner instead.
+     * When the video has finished, it writes the results and returns the traffic counter holding the totals.
+     *
+     * @return the traffic counter holding the results of the video.
+     * @throws IOException if the video cannot be opened or the results cannot be written.
+     * @throws WriteException if an error occurs while writing to the Excel sheet.
+     */
+    public TrafficCounter run() throws IOException, WriteException {
+        settings.validate();
+
+        VideoCapture capture = new VideoCapture(settings.getVideoPath());
+        if (!capture.isOpened())
+            throw new IOException("Cannot open the video: " + settings.getVideoPath());
+        double videoFPS = capture.get(Videoio.CAP_PROP_FPS);
+        totalFrames = (int) capture.get(Videoio.CAP_PROP_FRAME_COUNT);
+
+        File directory = new File(settings.getSavePath());
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create the results directory: " + directory);
+
+        ResultsWriter resultsWriter = new ResultsWriter(directory, settings.getWriteFlag());
+
+        if (settings.getSegments() > 1 && totalFrames > 0) {
+            // Every segment opens the video on its own
+            capture.release();
+            SegmentedRunner segmentedRunner = new SegmentedRunner(settings, videoFPS, totalFrames);
+            trafficCounter = segmentedRunner.run();
+            resultsWriter.write(trafficCounter.getEvents());
+            if (segmentedRunner.getIlluminationIntervals() != null)
+                IlluminationMonitor.writeIntervals(segmentedRunner.getIlluminationIntervals(), new File(directory, "Illumination.csv"), videoFPS);
+            return trafficCounter;
+        }
+
+        VideoProcessor videoProcessor = settings.createVideoProcessor();
+        settings.restoreModel(videoProcessor);
+        trafficCounter = new TrafficCounter(videoFPS, settings.getDistance());
+        trafficCounter.setThresholds(settings.getAreaThreshold(), settings.getVehicleSizeThreshold());
+        trafficCounter.setLines(settings.getLineCount1(), settings.getLineCount2(), settings.getLineSpeed1(), settings.getLineSpeed2());
+        // The contours are drawn only on the frames of the saved video
+        trafficCounter.setDrawing(settings.isToSave());
+        trafficCounter.setTracker(settings.createTracker());
+
+        VideoWriter videoWriter = null;
+        if (settings.isToSave()) {
+            videoWriter = new VideoWriter(new File(directory, "Video.avi").getPath(), VideoWriter.fourcc('P', 'I', 'M', '1'), videoFPS, FramePipeline.PROCESSING_SIZE);
+        }
+        VideoWriter writer = videoWriter;
+
+        int maxFrameStep = Math.max(settings.getMaxFrameStep(), settings.getDetectionStep());
+        AdaptiveDecimator decimator = maxFrameStep > 1 ? new AdaptiveDecimator(videoFPS, maxFrameStep) : null;
+        if (decimator != null)
+            decimator.setMinStep(settings.getDetectionStep());
+
+        FramePipeline pipeline = new FramePipeline(capture, videoProcessor, null,
+                frame -> {
+                    trafficCounter.processFrame(frame);
+                    if (decimator != null)
+                        decimator.setBandOccupied(trafficCounter.isBandOccupied());
+                    videoProcessor.setOccupiedRegions(trafficCounter.getVehicleRects(frame.region));
+                },
+                writer == null ? null : frame -> writer.write(frame.colourImage()),
+                () -> {
+                });
+        pipeline.setDecimator(decimator);
+        pipeline.setRegionOfInterest(settings.createRegionOfInterest());
+        pipeline.setMaskFilter(settings.getMaskFilter().create());
+        pipeline.setGrayscale(settings.isGrayscale());
+        pipeline.setMaskRefiner(settings.createMaskRefiner());
+        IlluminationMonitor illuminationMonitor = settings.createIlluminationMonitor();
+        pipeline.setIlluminationMonitor(illuminationMonitor);
+        // The thresholds of the configuration file can be tuned while the video is processed
+        AtomicReference<DetectorConfig> config = new AtomicReference<>(settings.createConfig());
+        pipeline.setConfig(config);
+        ConfigReloader configReloader = settings.getConfigPath() == null ? null : new ConfigReloader(settings, config);
+        if (configReloader != null)
+            configReloader.start();
+        if (isPipelined) {
+            pipeline.start();
+            pipeline.awaitTermination();
+        } else {
+            pipeline.runSequentially();
+        }
+
+        if (configReloader != null)
+            configReloader.stop();
+        if (writer != null)
+            writer.release();
+        capture.release();
+        pipeline.release();
+        trafficCounter.release();
+        resultsWriter.write(trafficCounter.getEvents());
+        if (illuminationMonitor != null) {
+            illuminationMonitor.writeIntervals(new File(directory, "Illumination.csv"), videoFPS);
+            illuminationMonitor.release();
+        }
+        try {
+            settings.saveModel(videoProcessor);
+        } finally {
+            videoProcessor.release();
+        }
+        return trafficCounter;
+    }
+}
@@ -0,0 +1,182 @@
+// Importing the necessary libraries
+
+import com.opencsv.CSVWriter; // Library for writing to CSV files
+import org.opencv.core.Core; // OpenCV library for handling core functionalities
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.core.MatOfFloat; // OpenCV library for handling matrices of floats
+import org.opencv.core.MatOfInt; // OpenCV library for handling matrices of integers
+import org.opencv.core.Size; // OpenCV library for handling sizes
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+import java.io.File; // Java IO library for handling files
+import java.io.FileWriter; // Java IO library for writing to files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+import java.util.Collections; // Java Util library for handling collections
+import java.util.List; // Java Util library for handling lists
+import java.util.Locale; // Java Util library for formatting numbers
+
+/**
+ * The IlluminationMonitor class flags the frames in which the light of the whole scene changes,
+ * e.g. when headlights sweep over the road or the auto-exposure of the camera kicks in.
+ * In such frames the background subtraction marks a large share of the frame as foreground,
+ * so the contours found in them are not vehicles and cost a lot of time.
+ *
+ * A frame is flagged when the histogram of the brightness of a thumbnail of the whole frame has moved away from its
+ * average while the share of its foreground pixels is very large or has jumped above its average.
+ * The share alone never flags a frame: the mask may cover only the band of the counting line,
+ * which a lorry or two cars side by side can fill without any change of the light.
+ * Consecutive flagged frames form an interval, and the intervals can be exported as metrics.
+ */
+public class IlluminationMonitor {
+
+    // The share of the foreground pixels above which a frame whose histogram has changed is flagged
+    private static final double FLASH_RATIO = 0.4;
+    // The rise of the share of the foreground pixels above its average which flags a frame whose histogram has changed
+    private static final double RATIO_JUMP = 0.1;
+    // The Bhattacharyya distance from the average histogram above which the histogram has changed
+    private static final double HISTOGRAM_DISTANCE = 0.25;
+    // The weight of the newest frame in the averages
+    private static final double SMOOTHING = 0.1;
+    // The size of the thumbnail whose histogram is calculated, and the number of bins of the histogram
+    private static final Size THUMBNAIL_SIZE = new Size(80, 45);
+    private static final int BINS = 32;
+
+    /**
+     * The Interval class holds a run of consecutive flagged frames.
+     */
+    public static class Interval {
+        // The index of the first and of the last flagged frame
+        public final int firstFrame;
+        public int lastFrame;
+        // The largest share of the foreground pixels in the interval
+        public double peakRatio;
+
+        Interval(int firstFrame, double ratio) {
+            this.firstFrame = firstFrame;
+            this.lastFrame = firstFrame;
+            this.peakRatio = ratio;
+        }
+    }
+
+    // The thumbnail of the frame in colour and in grayscale, and the histograms of the frame and their average
+    private final Mat thumbnail = new Mat();
+    private final Mat grayThumbnail = new Mat();
+    private final Mat histogram = new Mat();
+    private final Mat averageHistogram = new Mat();
+    private final List<Mat> images = new ArrayList<>(Collections.singletonList(grayThumbnail));
+    private final MatOfInt channels = new MatOfInt(0);
+    private final MatOfInt histogramSize = new MatOfInt(BINS);
+    private final MatOfFloat ranges = new MatOfFloat(0f, 256f);
+    // The empty mask of the histogram, which takes the whole thumbnail
+    private final Mat histogramMask = new Mat();
+
+    // The moving average of the share of the foreground pixels, or -1 before the first frame
+    private double averageRatio = -1;
+    // The flagged intervals, the last one may still be open
+    private final List<Interval> intervals = new ArrayList<>();
+    // The interval to which the last frame belongs, or null if the last frame has not been flagged
+    private Interval currentInterval;
+
+    /**
+     * This method checks a frame and records it if it is flagged.
+     * It must be called for the frames in the order of the video, by a single thread.
+     *
+     * @param image the frame in BGR or grayscale.
+     * @param mask the foreground mask of the background subtraction, before any filtering.
+     * @param frameIndex the index of the frame in the video.
+     * @return true if the light of the frame has changed and its contours should not be processed, false otherwise.
+     */
+    public boolean check(Mat image, Mat mask, int frameIndex) {
+        double ratio = Core.countNonZero(mask) / (double) Math.max(1, mask.total());
+
+        Imgproc.resize(image, thumbnail, THUMBNAIL_SIZE, 0, 0, Imgproc.INTER_AREA);
+        if (thumbnail.channels() > 1)
+            Imgproc.cvtColor(thumbnail, grayThumbnail, Imgproc.COLOR_BGR2GRAY);
+        else
+            thumbnail.copyTo(grayThumbnail);
+        Imgproc.calcHist(images, channels, histogramMask, histogram, histogramSize, ranges);
+        Core.normalize(histogram, histogram, 1, 0, Core.NORM_L1);
+
+        boolean isFlagged;
+        if (averageRatio < 0) {
+            averageRatio = ratio;
+            histogram.copyTo(averageHistogram);
+            isFlagged = false;
+        } else {
+            double distance = Imgproc.compareHist(averageHistogram, histogram, Imgproc.HISTCMP_BHATTACHARYYA);
+            isFlagged = distance > HISTOGRAM_DISTANCE && (ratio > FLASH_RATIO || ratio > averageRatio + RATIO_JUMP);
+            // The averages follow the scene, so a lasting change of the light is flagged only until the model has adapted to it
+            averageRatio += SMOOTHING * (ratio - averageRatio);
+            Core.addWeighted(averageHistogram, 1 - SMOOTHING, histogram, SMOOTHING, 0, averageHistogram);
+        }
+
+        if (!isFlagged) {
+            currentInterval = null;
+        } else if (currentInterval == null) {
+            currentInterval = new Interval(frameIndex, ratio);
+            intervals.add(currentInterval);
+        } else {
+            currentInterval.lastFrame = frameIndex;
+            currentInterval.peakRatio = Math.max(currentInterval.peakRatio, ratio);
+        }
+        return isFlagged;
+    }
+
+    /**
+     * This method returns the flagged intervals.
+     *
+     * @return the flagged intervals, in the order of the video.
+     */
+    public List<Interval> getIntervals() {
+        return intervals;
+    }
+
+    /**
+     * This method writes the flagged intervals to a CSV file, with the frames and the times of their start and end.
+     *
+     * @param file the file to which the intervals are written.
+     * @param videoFPS the frames per second of the video.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeIntervals(File file, double videoFPS) throws IOException {
+        writeIntervals(intervals, file, videoFPS);
+    }
+
+    /**
+     * This method writes the given flagged intervals to a CSV file, e.g. the intervals of all the segments of a video.
+     *
+     * @param intervals the flagged intervals, in the order of the video.
+     * @param file the file to which the intervals are written.
+     * @param videoFPS the frames per second of the video.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void writeIntervals(List<Interval> intervals, File file, double videoFPS) throws IOException {
+        try (CSVWriter writer = new CSVWriter(new FileWriter(file), '\t')) {
+            writer.writeNext(new String[]{"First frame", "Last frame", "Start [s]", "Duration [s]", "Peak foreground"});
+            for (Interval interval : intervals) {
+                writer.writeNext(new String[]{
+                        Integer.toString(interval.firstFrame),
+                        Integer.toString(interval.lastFrame),
+                        String.format(Locale.ROOT, "%.2f", interval.firstFrame / videoFPS),
+                        String.format(Locale.ROOT, "%.2f", (interval.lastFrame - interval.firstFrame + 1) / videoFPS),
+                        String.format(Locale.ROOT, "%.3f", interval.peakRatio)
+                });
+            }
+        }
+    }
+
+    /**
+     * This method releases the native memory of the thumbnails and the histograms.
+     */
+    public void release() {
+        thumbnail.release();
+        grayThumbnail.release();
+        histogram.release();
+        averageHistogram.release();
+        channels.release();
+        histogramSize.release();
+        ranges.release();
+        histogramMask.release();
+    }
+}
@@ -4,41 +4,83 @@
  * The org.opencv.core.Mat class is imported for handling matrices, which are used for image processing.
  * The java.awt.image.BufferedImage class is imported for creating and manipulating images that are loaded into memory.
  * The java.awt.image.DataBufferByte class is imported for handling the data buffer that contains the pixel values for a BufferedImage.
+ * The java.util.ArrayList and java.util.List classes are imported for keeping the cached images.
  */
 import org.opencv.core.Mat;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The ImageProcessor class is responsible for converting a matrix to a buffered image.
+ * The pixels of the matrix are read straight into the backing array of the buffered image, without any temporary buffer.
+ * Grayscale matrices, such as the foreground masks, are converted to grayscale images, so only one byte per pixel is copied.
  */
 public class ImageProcessor {
 
+    // The images returned by toCachedBufferedImage, one for every size and type
+    private final List<BufferedImage> cachedImages = new ArrayList<>();
+
     /**
-     * This method converts a matrix to a BufferedImage.
-     * It first sets the type of the BufferedImage to TYPE_BYTE_GRAY.
-     * If the matrix has more than one channel, it changes the type to TYPE_3BYTE_BGR.
-     * It then calculates the buffer size based on the number of channels, columns, and rows in the matrix.
-     * A new byte array is created with the calculated buffer size.
-     * The pixels from the matrix are then retrieved and stored in the byte array.
-     * A new BufferedImage is created with the number of columns and rows from the matrix and the determined type.
-     * The pixels from the byte array are then copied into the BufferedImage.
+     * This method converts a matrix to a new BufferedImage.
+     * The type of the BufferedImage is TYPE_BYTE_GRAY for a matrix with one channel and TYPE_3BYTE_BGR otherwise.
+     * The pixels from the matrix are read straight into the data buffer of the BufferedImage.
      *
      * @param matrix The matrix to be converted to a BufferedImage.
      * @return The BufferedImage created from the matrix.
      */
     public BufferedImage toBufferedImage(Mat matrix) {
-        int type = BufferedImage.TYPE_BYTE_GRAY;
-        if (matrix.channels() > 1) {
-            type = BufferedImage.TYPE_3BYTE_BGR;
+        BufferedImage image = new BufferedImage(matrix.cols(), matrix.rows(), imageType(matrix));
+        copyPixels(matrix, image);
+        return image;
+    }
+
+    /**
+     * This method converts a matrix to a BufferedImage which is kept by this processor and reused for the next matrices
+     * of the same size and type, so no memory is allocated once the image exists.
+     * The returned image is overwritten by the next call with a matrix of the same size and type,
+     * so it must be used (e.g. painted) before that call.
+     *
+     * @param matrix The matrix to be converted to a BufferedImage.
+     * @return The cached BufferedImage holding the pixels of the matrix.
+     */
+    public BufferedImage toCachedBufferedImage(Mat matrix) {
+        int type = imageType(matrix);
+        BufferedImage image = null;
+        for (BufferedImage cachedImage : cachedImages) {
+            if (cachedImage.getWidth() == matrix.cols() && cachedImage.getHeight() == matrix.rows() && cachedImage.getType() == type) {
+                image = cachedImage;
+                break;
+            }
         }
-        int bufferSize = matrix.channels() * matrix.cols() * matrix.rows();
-        byte[] buffer = new byte[bufferSize];
-        matrix.get(0, 0, buffer); // get all the pixels
-        BufferedImage image = new BufferedImage(matrix.cols(), matrix.rows(), type);
-        final byte[] targetPixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-        System.arraycopy(buffer, 0, targetPixels, 0, buffer.length);
+        if (image == null) {
+            image = new BufferedImage(matrix.cols(), matrix.rows(), type);
+            cachedImages.add(image);
+        }
+        copyPixels(matrix, image);
         return image;
     }
-}
\ No newline at end of file
+
+    /**
+     * This method returns the type of the BufferedImage for a matrix.
+     *
+     * @param matrix The matrix to be converted.
+     * @return TYPE_BYTE_GRAY for a matrix with one channel, TYPE_3BYTE_BGR otherwise.
+     */
+    private static int imageType(Mat matrix) {
+        return matrix.channels() > 1 ? BufferedImage.TYPE_3BYTE_BGR : BufferedImage.TYPE_BYTE_GRAY;
+    }
+
+    /**
+     * This method reads all the pixels of the matrix straight into the data buffer of the image.
+     *
+     * @param matrix The matrix whose pixels are read.
+     * @param image The image of the same size and type into which the pixels are read.
+     */
+    private static void copyPixels(Mat matrix, BufferedImage image) {
+        byte[] targetPixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        matrix.get(0, 0, targetPixels); // get all the pixels
+    }
+}
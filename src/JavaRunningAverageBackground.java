@@ -0,0 +1,284 @@
+// Importing the necessary libraries
+
+import org.opencv.core.CvType; // OpenCV library for handling types of matrices
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.imgcodecs.Imgcodecs; // OpenCV library for reading and writing images
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+import java.io.BufferedInputStream; // Java IO library for buffering input streams
+import java.io.BufferedOutputStream; // Java IO library for buffering output streams
+import java.io.DataInputStream; // Java IO library for reading primitive values
+import java.io.DataOutputStream; // Java IO library for writing primitive values
+import java.io.File; // Java IO library for handling files
+import java.io.FileInputStream; // Java IO library for reading files
+import java.io.FileOutputStream; // Java IO library for writing files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.util.zip.DeflaterOutputStream; // Java Util library for compressing streams
+import java.util.zip.InflaterInputStream; // Java Util library for decompressing streams
+
+/**
+ * The JavaRunningAverageBackground class keeps an exponentially weighted average of the frames as the background,
+ * like the RunningAverageBackground class, but the model is kept and updated in Java on primitive arrays.
+ * A colour frame is converted to grayscale by OpenCV into a reused buffer, and then crosses the native boundary only twice,
+ * once to read its brightness and once to write the foreground mask, instead of once for every OpenCV operation,
+ * and no memory is allocated once the arrays exist.
+ *
+ * The pixels are handled by simple counted loops over contiguous arrays, one element per iteration and without calls,
+ * which the JIT compiler can unroll; whether it also vectorises them depends on the JVM, so the throughput of this engine
+ * against MOG2 is measured with the EngineBenchmark on the target machine.
+ */
+public class JavaRunningAverageBackground implements VideoProcessor {
+
+    // The first bytes of a file holding the whole model, "TDRA" and the version of the format
+    private static final int MODEL_MAGIC = 0x54445241;
+    private static final int MODEL_VERSION = 1;
+
+    // The foreground mask, 255 for the foreground and 0 for the background
+    private final Mat foreground = new Mat();
+    // The grayscale image of a colour input image, reused between the frames
+    private final Mat grayImage = new Mat();
+
+    // The pixels of the input image
+    private byte[] pixels = new byte[0];
+    // The brightness of the input image
+    private float[] gray = new float[0];
+    // The average of the frames
+    private float[] background = new float[0];
+    // The foreground mask
+    private byte[] mask = new byte[0];
+    // The number of columns and rows of the model, or 0 before the first image
+    private int cols;
+    private int rows;
+
+    // The difference of brightness above which a pixel belongs to the foreground
+    private volatile double imageThreshold;
+    // The number of frames after which the average has mostly forgotten an old background
+    private volatile int history;
+
+    /**
+     * Constructor for the JavaRunningAverageBackground class.
+     *
+     * @param imageThreshold the difference of brightness above which a pixel belongs to the foreground.
+     * @param history the number of frames after which the average has mostly forgotten an old background.
+     */
+    public JavaRunningAverageBackground(double imageThreshold, int history) {
+        this.imageThreshold = imageThreshold;
+        this.history = history;
+    }
+
+    @Override
+    public Mat process(Mat inputImage) {
+        return process(inputImage, 1);
+    }
+
+    /**
+     * This method reads the pixels of the input image, compares their brightness with the average
+     * and adds them to the average with the weight 1/history for every frame, including the skipped frames.
+     * The model starts again whenever the size of the images changes.
+     *
+     * A colour image is converted to grayscale by OpenCV first, so only its brightness is read into Java.
+     *
+     * @param inputImage The input image to be processed, either BGR or grayscale, with 8 bits per channel.
+     * @param step The number of frames from the previous processed image to this one.
+     * @return The foreground mask of the input image.
+     */
+    @Override
+    public Mat process(Mat inputImage, int step) {
+        Mat image = inputImage;
+        if (inputImage.channels() > 1) {
+            Imgproc.cvtColor(inputImage, grayImage, Imgproc.COLOR_BGR2GRAY);
+            image = grayImage;
+        }
+        int length = image.cols() * image.rows();
+        boolean isNewModel = image.cols() != cols || image.rows() != rows;
+        if (isNewModel) {
+            cols = image.cols();
+            rows = image.rows();
+            gray = new float[length];
+            background = new float[length];
+            mask = new byte[length];
+            foreground.create(rows, cols, CvType.CV_8UC1);
+        }
+        if (pixels.length != length)
+            pixels = new byte[length];
+
+        image.get(0, 0, pixels);
+        toGray(pixels, gray, length);
+        if (isNewModel)
+            System.arraycopy(gray, 0, background, 0, length);
+
+        float threshold = (float) imageThreshold;
+        float rate = (float) (1 - Math.pow(1 - 1.0 / Math.max(1, history), Math.max(1, step)));
+        subtract(gray, background, mask, threshold, length);
+        accumulate(gray, background, rate, length);
+
+        foreground.put(0, 0, mask);
+        return foreground;
+    }
+
+    /**
+     * This method converts the pixels of a grayscale image to their brightness.
+     *
+     * @param pixels the pixels of the image.
+     * @param gray the array for the brightness.
+     * @param length the number of pixels.
+     */
+    private static void toGray(byte[] pixels, float[] gray, int length) {
+        for (int i = 0; i < length; i++) {
+            gray[i] = pixels[i] & 0xFF;
+        }
+    }
+
+    /**
+     * This method writes the foreground mask, 255 (-1 as a byte) where the brightness differs from the average
+     * by more than the threshold and 0 elsewhere.
+     *
+     * @param gray the brightness of the image.
+     * @param background the average of the frames.
+     * @param mask the array for the foreground mask.
+     * @param threshold the difference of brightness above which a pixel belongs to the foreground.
+     * @param length the number of pixels.
+     */
+    private static void subtract(float[] gray, float[] background, byte[] mask, float threshold, int length) {
+        for (int i = 0; i < length; i++) {
+            mask[i] = Math.abs(gray[i] - background[i]) > threshold ? (byte) -1 : 0;
+        }
+    }
+
+    /**
+     * This method adds the brightness of the image to the average with the given weight.
+     *
+     * @param gray the brightness of the image.
+     * @param background the average of the frames.
+     * @param rate the weight of the image.
+     * @param length the number of pixels.
+     */
+    private static void accumulate(float[] gray, float[] background, float rate, int length) {
+        for (int i = 0; i < length; i++) {
+            background[i] += rate * (gray[i] - background[i]);
+        }
+    }
+
+    /**
+     * This method writes the grayscale image of the average of the frames.
+     *
+     * @param backgroundImage The matrix into which the grayscale image of the background is written.
+     * @return true if the image has been written, false if no image has been processed yet.
+     */
+    @Override
+    public boolean getBackgroundImage(Mat backgroundImage) {
+        if (cols == 0)
+            return false;
+        byte[] image = new byte[background.length];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = (byte) Math.round(background[i]);
+        }
+        backgroundImage.create(rows, cols, CvType.CV_8UC1);
+        backgroundImage.put(0, 0, image);
+        return true;
+    }
+
+    /**
+     * This method saves the whole model: the size and the average of every pixel in floating point,
+     * compressed, so the restored model is exactly the saved one.
+     *
+     * @param file The file to which the model is saved.
+     * @throws IOException if no image has been processed yet or the file cannot be written.
+     */
+    @Override
+    public void saveModel(File file) throws IOException {
+        if (cols == 0)
+            throw new IOException("There is no model of the background to be saved");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(MODEL_MAGIC);
+            out.writeInt(MODEL_VERSION);
+            out.writeInt(cols);
+            out.writeInt(rows);
+            for (int i = 0; i < cols * rows; i++) {
+                out.writeFloat(background[i]);
+            }
+        }
+    }
+
+    /**
+     * This method restores the model saved by saveModel.
+     * A file holding an image of the background, saved by another engine, is used as the starting average instead.
+     *
+     * @param file The file from which the model is restored.
+     * @return true if the model has been restored, false if the file holds neither a model nor an image.
+     * @throws IOException if the file cannot be read.
+     */
+    @Override
+    public boolean loadModel(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(file))))) {
+            if (in.readInt() == MODEL_MAGIC && in.readInt() == MODEL_VERSION) {
+                int modelCols = in.readInt();
+                int modelRows = in.readInt();
+                float[] model = new float[modelCols * modelRows];
+                for (int i = 0; i < model.length; i++) {
+                    model[i] = in.readFloat();
+                }
+                start(modelCols, modelRows, model);
+                return true;
+            }
+        } catch (IOException e) {
+            // The file is not a compressed model, it may be an image
+        }
+
+        Mat seed = VideoProcessor.readModelImage(file, Imgcodecs.IMREAD_GRAYSCALE);
+        try {
+            if (seed.empty())
+                return false;
+            byte[] image = new byte[seed.cols() * seed.rows()];
+            seed.get(0, 0, image);
+            float[] model = new float[image.length];
+            toGray(image, model, image.length);
+            start(seed.cols(), seed.rows(), model);
+            return true;
+        } finally {
+            seed.release();
+        }
+    }
+
+    /**
+     * This method starts the model with the given average of the frames.
+     *
+     * @param modelCols the number of columns of the model.
+     * @param modelRows the number of rows of the model.
+     * @param model the average of every pixel.
+     */
+    private void start(int modelCols, int modelRows, float[] model) {
+        cols = modelCols;
+        rows = modelRows;
+        background = model;
+        gray = new float[model.length];
+        mask = new byte[model.length];
+        pixels = new byte[0];
+        foreground.create(rows, cols, CvType.CV_8UC1);
+    }
+
+    @Override
+    public void setImageThreshold(double imageThreshold) {
+        this.imageThreshold = imageThreshold;
+    }
+
+    @Override
+    public void setHistory(int history) {
+        this.history = history;
+    }
+
+    /**
+     * This method releases the foreground mask and drops the arrays of the model.
+     */
+    @Override
+    public void release() {
+        foreground.release();
+        grayImage.release();
+        pixels = new byte[0];
+        gray = new float[0];
+        background = new float[0];
+        mask = new byte[0];
+        cols = 0;
+        rows = 0;
+    }
+}
@@ -0,0 +1,138 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.imgcodecs.Imgcodecs; // OpenCV library for reading and writing images
+import org.opencv.video.BackgroundSubtractorKNN; // OpenCV library for the K-nearest neighbours background subtraction
+import org.opencv.video.Video; // OpenCV library for video analysis
+
+import java.io.File; // Java IO library for handling files
+import java.io.IOException; // Java IO library for handling IO exceptions
+
+/**
+ * The KNearestNeighboursBackground class keeps a set of recent samples of every pixel as the background.
+ * A pixel belongs to the background when enough of its samples are close to it.
+ * It copes with waving trees and flickering light better than the mixture of Gaussians, but it costs more.
+ */
+public class KNearestNeighboursBackground implements VideoProcessor {
+
+    // The ratio between the squared distance of KNN and the squared Mahalanobis distance of MOG2 for their default thresholds
+    private static final double DIST2_PER_VAR_THRESHOLD = 400.0 / 16.0;
+
+    // The learning rate with which the saved background is learnt again after the model has been initialised with it.
+    // KNN writes its short, medium and long term samples of a pixel in turn, every 1, 2 and 4 frames at this rate
+    // (from log(0.7), log(0.4) and log(0.1) divided by log(1 - rate)), while the rate 1 initialises the whole model again
+    private static final double SEED_RATE = 0.5;
+    // The number of frames after which every long term sample has been written at least once at SEED_RATE, per sample
+    private static final int SEED_FRAMES_PER_SAMPLE = 4;
+
+    // The K-nearest neighbours background subtractor of OpenCV
+    private final BackgroundSubtractorKNN knn;
+    // The foreground of the video after the background has been subtracted
+    private final Mat foreground = new Mat();
+    // The number of frames after which the model has mostly forgotten an old background
+    private volatile int history;
+
+    /**
+     * Constructor for the KNearestNeighboursBackground class.
+     * The image threshold has the same meaning as for the mixture of Gaussians and is scaled to the distance of KNN.
+     *
+     * @param imageThreshold the image threshold of the mixture of Gaussians.
+     * @param history the number of last frames that affect the background model.
+     */
+    public KNearestNeighboursBackground(double imageThreshold, int history) {
+        this.history = history;
+        knn = Video.createBackgroundSubtractorKNN(history, imageThreshold * DIST2_PER_VAR_THRESHOLD, true);
+        knn.setShadowValue(0);
+    }
+
+    @Override
+    public Mat process(Mat inputImage) {
+        return process(inputImage, 1);
+    }
+
+    /**
+     * This method subtracts the background from the input image and learns it with the rate 1/history for every frame,
+     * including the skipped frames.
+     *
+     * @param inputImage The input image to be processed.
+     * @param step The number of frames from the previous processed image to this one.
+     * @return The foreground of the video after the background has been subtracted.
+     */
+    @Override
+    public Mat process(Mat inputImage, int step) {
+        knn.apply(inputImage, foreground, 1 - Math.pow(1 - 1.0 / Math.max(1, history), Math.max(1, step)));
+        return foreground;
+    }
+
+    /**
+     * This method returns true, because the shadows are detected by the algorithm and set to the value of the background.
+     *
+     * @return true.
+     */
+    @Override
+    public boolean isShadowSuppressed() {
+        return true;
+    }
+
+    @Override
+    public void setImageThreshold(double imageThreshold) {
+        knn.setDist2Threshold(imageThreshold * DIST2_PER_VAR_THRESHOLD);
+    }
+
+    @Override
+    public void setHistory(int history) {
+        this.history = history;
+        knn.setHistory(history);
+    }
+
+    /**
+     * This method writes the image of the background built from the samples of every pixel.
+     *
+     * @param backgroundImage The matrix into which the BGR image of the background is written.
+     * @return true if the image has been written, false if no image has been processed yet.
+     */
+    @Override
+    public boolean getBackgroundImage(Mat backgroundImage) {
+        if (foreground.empty())
+            return false;
+        knn.getBackgroundImage(backgroundImage);
+        return true;
+    }
+
+    /**
+     * This method seeds the model with the image of the background saved by saveModel.
+     * The image is read with its own channels, so a model saved in grayscale seeds the processing of grayscale frames.
+     * The model is initialised with the image by a single frame with the learning rate 1, which OpenCV treats as a restart
+     * and which leaves only one sample of every pixel filled. The same image is then learnt again with the rate SEED_RATE,
+     * until all the samples of every pixel hold the saved background, so the masks are stable from the first frame.
+     *
+     * @param file The file from which the image of the background is restored.
+     * @return true if the model has been seeded, false if the file does not hold an image.
+     * @throws IOException if the file cannot be read.
+     */
+    @Override
+    public boolean loadModel(File file) throws IOException {
+        Mat seed = VideoProcessor.readModelImage(file, Imgcodecs.IMREAD_UNCHANGED);
+        try {
+            if (seed.empty())
+                return false;
+            knn.apply(seed, foreground, 1);
+            int frames = SEED_FRAMES_PER_SAMPLE * (knn.getNSamples() + 1);
+            for (int i = 0; i < frames; i++) {
+                knn.apply(seed, foreground, SEED_RATE);
+            }
+            return true;
+        } finally {
+            seed.release();
+        }
+    }
+
+    /**
+     * This method releases the foreground matrix.
+     * The model of the background is released by OpenCV when the subtractor is collected.
+     */
+    @Override
+    public void release() {
+        foreground.release();
+    }
+}
@@ -0,0 +1,40 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+
+/**
+ * The KalmanTrack class is a track whose centroid and velocity are estimated by a constant-velocity Kalman filter.
+ * The horizontal and the vertical motion are filtered separately, each with the covariance of its position and its velocity,
+ * so the filter takes a few arithmetic operations per frame and no native memory.
+ */
+public class KalmanTrack extends Track {
+
+    // The covariances of the horizontal position and velocity: var(x), cov(x, vx), var(vx)
+    double varianceX;
+    double covarianceX;
+    double varianceVelocityX;
+    // The covariances of the vertical position and velocity: var(y), cov(y, vy), var(vy)
+    double varianceY;
+    double covarianceY;
+    double varianceVelocityY;
+
+    /**
+     * Constructor for the KalmanTrack class.
+     * The position starts with the uncertainty of a measurement, and the velocity, which is unknown, with a large uncertainty.
+     *
+     * @param id the ID of the track.
+     * @param bounds the bounding rectangle of the vehicle.
+     * @param area the area of the vehicle.
+     * @param frame the index of the frame in which the vehicle has been found.
+     * @param time the timestamp of the frame in milliseconds.
+     * @param positionVariance the variance of a measured position.
+     * @param velocityVariance the variance of the unknown velocity.
+     */
+    public KalmanTrack(int id, Rect bounds, double area, int frame, double time, double positionVariance, double velocityVariance) {
+        super(id, bounds, area, frame, time);
+        varianceX = positionVariance;
+        varianceY = positionVariance;
+        varianceVelocityX = velocityVariance;
+        varianceVelocityY = velocityVariance;
+    }
+}
@@ -0,0 +1,105 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+import org.opencv.core.Size; // OpenCV library for handling sizes
+
+/**
+ * The KalmanVehicleTracker class follows the vehicles with a constant-velocity Kalman filter per track.
+ * The filter smooths the measured centroids and estimates the velocity of every vehicle, so the tracks are predicted reliably
+ * over the frames which are not processed, and the detection can run on every second or third frame only.
+ * The moments at which a vehicle crosses the lines are interpolated between the filtered centroids,
+ * which are less noisy than the measured ones, so the measured speed is more precise.
+ */
+public class KalmanVehicleTracker extends VehicleTracker {
+
+    // The variance of a measured centroid, in square pixels
+    private static final double MEASUREMENT_VARIANCE = 4;
+    // The variance of the velocity of a new track, in square pixels per square frame
+    private static final double INITIAL_VELOCITY_VARIANCE = 100;
+    // The variance of the acceleration of a vehicle, in square pixels per frame to the fourth power
+    private static final double ACCELERATION_VARIANCE = 0.05;
+
+    /**
+     * Constructor for the KalmanVehicleTracker class.
+     *
+     * @param frameSize the size of the frames in which the vehicles are detected.
+     */
+    public KalmanVehicleTracker(Size frameSize) {
+        super(frameSize);
+    }
+
+    @Override
+    Track createTrack(int id, Rect rect, double area, int frame, double time) {
+        return new KalmanTrack(id, rect, area, frame, time, MEASUREMENT_VARIANCE, INITIAL_VELOCITY_VARIANCE);
+    }
+
+    /**
+     * This method predicts the state of the filter of a track to the frame of the detection matched to it,
+     * and corrects it with the centroid of the detection.
+     *
+     * @param track the track.
+     * @param rect the bounding rectangle of the detection.
+     * @param area the area of the detection.
+     * @param frame the index of the frame.
+     * @param time the timestamp of the frame in milliseconds.
+     */
+    @Override
+    void correct(Track track, Rect rect, double area, int frame, double time) {
+        KalmanTrack kalman = (KalmanTrack) track;
+        double frames = Math.max(1, frame - track.lastFrame);
+        double x = rect.x + rect.width / 2.0;
+        double y = rect.y + rect.height / 2.0;
+
+        // The horizontal filter
+        double[] state = {track.centroidX, track.velocityX, kalman.varianceX, kalman.covarianceX, kalman.varianceVelocityX};
+        filter(state, x, frames);
+        double filteredX = state[0];
+        track.velocityX = state[1];
+        kalman.varianceX = state[2];
+        kalman.covarianceX = state[3];
+        kalman.varianceVelocityX = state[4];
+
+        // The vertical filter
+        state[0] = track.centroidY;
+        state[1] = track.velocityY;
+        state[2] = kalman.varianceY;
+        state[3] = kalman.covarianceY;
+        state[4] = kalman.varianceVelocityY;
+        filter(state, y, frames);
+        double filteredY = state[0];
+        track.velocityY = state[1];
+        kalman.varianceY = state[2];
+        kalman.covarianceY = state[3];
+        kalman.varianceVelocityY = state[4];
+
+        track.record(rect, area, filteredX, filteredY, frame, time);
+    }
+
+    /**
+     * This method runs one step of the Kalman filter of one axis: the prediction over the given number of frames
+     * with a random acceleration, and the correction with the measured position.
+     *
+     * @param state the position, the velocity, var(position), cov(position, velocity) and var(velocity), updated in place.
+     * @param measurement the measured position.
+     * @param frames the number of frames since the last correction.
+     */
+    private static void filter(double[] state, double measurement, double frames) {
+        double frames2 = frames * frames;
+        // Prediction: x += v * t, P = F P F' + Q
+        double position = state[0] + state[1] * frames;
+        double velocity = state[1];
+        double variance = state[2] + 2 * frames * state[3] + frames2 * state[4] + ACCELERATION_VARIANCE * frames2 * frames2 / 4;
+        double covariance = state[3] + frames * state[4] + ACCELERATION_VARIANCE * frames2 * frames / 2;
+        double velocityVariance = state[4] + ACCELERATION_VARIANCE * frames2;
+
+        // Correction with the measured position
+        double innovation = measurement - position;
+        double gainPosition = variance / (variance + MEASUREMENT_VARIANCE);
+        double gainVelocity = covariance / (variance + MEASUREMENT_VARIANCE);
+        state[0] = position + gainPosition * innovation;
+        state[1] = velocity + gainVelocity * innovation;
+        state[2] = (1 - gainPosition) * variance;
+        state[3] = (1 - gainPosition) * covariance;
+        state[4] = velocityVariance - gainVelocity * covariance;
+    }
+}
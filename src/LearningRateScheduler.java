@@ -0,0 +1,121 @@
+/**
+ * The LearningRateScheduler class chooses the learning rate of the background model for every frame.
+ * During the warm-up, the rate starts high and decays as 1/n, so the first frames are averaged into the background
+ * instead of being learnt at the slow steady rate, until it reaches the base rate.
+ * When the share of the foreground pixels jumps suddenly, e.g. because of clouds or headlights, the whole frame has changed
+ * rather than a vehicle having entered it, so the rate is raised for a short time and decays back to the base rate.
+ * While the rate is raised enough for a passing vehicle to be learnt, during a spike or the first frames of the warm-up,
+ * the background model should not learn the regions occupied by vehicles.
+ */
+public class LearningRateScheduler {
+
+    // The rate of the first frames after a spike, decaying linearly to the base rate
+    private static final double SPIKE_RATE = 0.05;
+    // The number of frames in which the rate decays from the spike to the base rate
+    private static final int SPIKE_FRAMES = 25;
+    // The rise of the share of the foreground pixels above its average which starts a spike
+    private static final double SPIKE_JUMP = 0.25;
+    // The weight of the newest share of the foreground pixels in its moving average
+    private static final double RATIO_SMOOTHING = 0.05;
+    // The number of frames of the warm-up during which the occupied regions are frozen; after them the warm-up rate is 1/100,
+    // so a vehicle passing in a few frames leaves only a faint trace, and the rest of the warm-up does not pay for the freezing
+    private static final int FREEZE_WARM_UP_FRAMES = 100;
+
+    // The learning rate in the steady state
+    private final double baseRate;
+
+    // The number of frames learnt since the model has started
+    private int frames = 0;
+    // The number of frames left of the current spike
+    private int spikeFrames = 0;
+    // The moving average of the share of the foreground pixels, or -1 before the first frame
+    private double averageRatio = -1;
+
+    /**
+     * Constructor for the LearningRateScheduler class.
+     *
+     * @param baseRate the learning rate in the steady state.
+     */
+    public LearningRateScheduler(double baseRate) {
+        this.baseRate = baseRate;
+    }
+
+    /**
+     * This method returns the learning rate for the next frame, which follows the previous frame after the given number of frames.
+     * The rate is corrected so that the model learns as much as it would have learnt from all the frames.
+     *
+     * @param step the number of frames from the previous processed frame to the next one.
+     * @return the learning rate for the next frame.
+     */
+    public double getRate(int step) {
+        double rate = getRate();
+        return step <= 1 ? rate : 1 - Math.pow(1 - rate, step);
+    }
+
+    /**
+     * This method returns the learning rate of a single frame: the largest of the warm-up rate, the spike rate and the base rate.
+     *
+     * @return the learning rate of a single frame.
+     */
+    private double getRate() {
+        double warmUpRate = 1.0 / (frames + 1);
+        double spikeRate = baseRate + (SPIKE_RATE - baseRate) * spikeFrames / SPIKE_FRAMES;
+        return Math.max(baseRate, Math.max(warmUpRate, spikeFrames > 0 ? spikeRate : 0));
+    }
+
+    /**
+     * This method checks whether the regions occupied by vehicles must not be learnt in the next frame:
+     * during a spike and during the first FREEZE_WARM_UP_FRAMES frames of the warm-up.
+     * The rest of the warm-up, whose rate is already low, is learnt normally, as freezing costs a second pass of the model.
+     *
+     * @return true if the occupied regions must be frozen, false otherwise.
+     */
+    public boolean isFreezing() {
+        return spikeFrames > 0 || frames < FREEZE_WARM_UP_FRAMES;
+    }
+
+    /**
+     * This method records a learnt frame and the share of its foreground pixels, and starts a spike if the share has jumped.
+     *
+     * @param foregroundRatio the share of the foreground pixels of the frame, from 0 to 1.
+     * @param step the number of frames from the previous processed frame to this one.
+     */
+    public void update(double foregroundRatio, int step) {
+        frames += step;
+        spikeFrames = Math.max(0, spikeFrames - step);
+        if (averageRatio < 0) {
+            averageRatio = foregroundRatio;
+            return;
+        }
+        // A jump during the warm-up is the model still learning the background
+        if (foregroundRatio - averageRatio > SPIKE_JUMP && getRate() <= baseRate)
+            spikeFrames = SPIKE_FRAMES;
+        averageRatio += RATIO_SMOOTHING * (foregroundRatio - averageRatio);
+    }
+
+    /**
+     * This method starts a spike of the rate, when a change of the whole frame has been detected outside of the scheduler.
+     * A spike which is already running is started again, so the rate stays raised while the change lasts.
+     */
+    public void startSpike() {
+        spikeFrames = SPIKE_FRAMES;
+    }
+
+    /**
+     * This method starts the warm-up again, when the model of the background is learnt again from the frames.
+     */
+    public void restart() {
+        frames = 0;
+        spikeFrames = 0;
+        averageRatio = -1;
+    }
+
+    /**
+     * This method skips the warm-up, when the model of the background has been restored.
+     */
+    public void skipWarmUp() {
+        frames = (int) Math.ceil(1 / baseRate);
+        spikeFrames = 0;
+        averageRatio = -1;
+    }
+}
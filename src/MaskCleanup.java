@@ -0,0 +1,55 @@
+// Importing the necessary libraries
+
+import java.util.function.Supplier; // Java Util library for functions without arguments
+
+/**
+ * The MaskCleanup enum is the registry of the filters which clean the foreground masks and can be selected by the settings.
+ * The bilateral filter is the default. The cost of the filters and the agreement of their counts are measured
+ * with the EngineBenchmark on a sample video, which records them in its "Benchmark.csv" file.
+ */
+public enum MaskCleanup {
+
+    BILATERAL("bilateral filter", BilateralMaskFilter::new),
+    OPEN_CLOSE("morphological opening and closing", MorphologyMaskFilter::new),
+    MEDIAN("median blur", MedianMaskFilter::new),
+    COMPONENTS("removal of the small connected regions", () -> new ComponentAreaMaskFilter(ComponentAreaMaskFilter.DEFAULT_MIN_AREA)),
+    NONE("no cleaning", NoMaskFilter::new);
+
+    // The short description of the filter
+    private final String description;
+    // The constructor of the filter
+    private final Supplier<MaskFilter> factory;
+
+    MaskCleanup(String description, Supplier<MaskFilter> factory) {
+        this.description = description;
+        this.factory = factory;
+    }
+
+    /**
+     * This method creates a new filter, which must be used by a single thread.
+     *
+     * @return the new filter.
+     */
+    public MaskFilter create() {
+        return factory.get();
+    }
+
+    /**
+     * This method returns the filter with the given name, ignoring the case.
+     *
+     * @param name the name of the filter.
+     * @return the filter.
+     * @throws IllegalArgumentException if there is no filter with the name.
+     */
+    public static MaskCleanup fromName(String name) {
+        for (MaskCleanup cleanup : values()) {
+            if (cleanup.name().equalsIgnoreCase(name.trim()))
+                return cleanup;
+        }
+        throw new IllegalArgumentException("Invalid mask filter: " + name);
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Importing the Mat class from the org.opencv.core package.
+ * The Mat class represents an n-dimensional dense numerical single-channel or multi-channel array.
+ * It is used for the foreground masks.
+ */
+import org.opencv.core.Mat;
+
+/**
+ * The MaskFilter interface is responsible for cleaning the foreground mask of the background subtraction
+ * before the contours of the vehicles are searched in it.
+ * A filter is used by a single thread and may keep its buffers from one frame to the next.
+ */
+public interface MaskFilter {
+    /**
+     * This method cleans the foreground mask and writes the result into the destination,
+     * which is allocated by the filter only if its size or type does not fit.
+     *
+     * @param mask The foreground mask of the background subtraction.
+     * @param destination The matrix into which the cleaned mask is written.
+     */
+    void filter(Mat mask, Mat destination);
+
+    /**
+     * This method releases the native memory held by the filter.
+     * By default the filter holds no native memory.
+     */
+    default void release() {
+    }
+}
@@ -0,0 +1,159 @@
+// Importing the necessary libraries
+
+import org.opencv.core.CvType; // OpenCV library for handling types of matrices
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+import java.util.List; // Java Util library for handling lists
+
+/**
+ * The MaskRefiner class refines the foreground mask of a frame before the vehicles are detected.
+ * First, the shadows are removed from the mask: a foreground pixel is a shadow if it is darker than the background
+ * by a limited factor while its chromaticity (the shares of blue, green and red in its brightness) stays that of the background.
+ * This step is skipped for the video processors which already remove the shadows, such as MOG2 and KNN.
+ * Then, the connected regions of the mask are labelled, and the regions smaller than a minimum area are dropped,
+ * so the detection receives a short list of blobs with their areas and bounding rectangles instead of searching the contours.
+ * One instance is used by the subtract stage of a pipeline, so its buffers are allocated once and reused for every frame.
+ */
+public class MaskRefiner {
+
+    // The range of the ratio of the brightness of a pixel to the brightness of the background in which the pixel may be a shadow
+    private static final float SHADOW_MIN_RATIO = 0.4f;
+    private static final float SHADOW_MAX_RATIO = 0.9f;
+    // The largest sum of the differences of the shares of blue, green and red between a shadow and the background
+    private static final float SHADOW_CHROMATICITY = 0.06f;
+
+    // The smallest area of a blob, in pixels
+    private final int minArea;
+
+    // The mask without the shadows, the background and the grayscale image of the frame when the background is grayscale
+    private final Mat shadowless = new Mat();
+    private final Mat background = new Mat();
+    private final Mat grayImage = new Mat();
+    // The labels and the statistics of the connected regions
+    private final Mat labels = new Mat();
+    private final Mat stats = new Mat();
+    private final Mat centroids = new Mat();
+    // The buffers for reading the pixels and the statistics
+    private byte[] maskData = new byte[0];
+    private byte[] imageData = new byte[0];
+    private byte[] backgroundData = new byte[0];
+    private int[] statsData = new int[0];
+    private double[] centroidsData = new double[0];
+
+    /**
+     * Constructor for the MaskRefiner class.
+     *
+     * @param minArea the smallest area of a blob, in pixels.
+     */
+    public MaskRefiner(int minArea) {
+        this.minArea = minArea;
+    }
+
+    /**
+     * This method removes the shadows from the foreground mask of a frame.
+     * The mask is not changed, the refined mask is written to a buffer of the refiner.
+     * If the video processor removes the shadows by itself, or keeps no image of the background, the mask is returned as it is.
+     *
+     * @param image the processed image of the frame, in colour or grayscale.
+     * @param mask the foreground mask of the image.
+     * @param videoProcessor the video processor which has produced the mask.
+     * @return the mask without the shadows, valid until the next call.
+     */
+    public Mat suppressShadows(Mat image, Mat mask, VideoProcessor videoProcessor) {
+        if (videoProcessor.isShadowSuppressed() || !videoProcessor.getBackgroundImage(background) || !background.size().equals(mask.size()))
+            return mask;
+        Mat frameImage = image;
+        if (image.channels() != background.channels()) {
+            // A grayscale background is compared with the brightness of the frame only
+            Imgproc.cvtColor(image, grayImage, Imgproc.COLOR_BGR2GRAY);
+            frameImage = grayImage;
+        }
+
+        int channels = background.channels();
+        int length = mask.cols() * mask.rows();
+        if (maskData.length != length)
+            maskData = new byte[length];
+        if (imageData.length != length * channels) {
+            imageData = new byte[length * channels];
+            backgroundData = new byte[length * channels];
+        }
+        mask.get(0, 0, maskData);
+        frameImage.get(0, 0, imageData);
+        background.get(0, 0, backgroundData);
+
+        for (int i = 0, j = 0; i < length; i++, j += channels) {
+            if (maskData[i] == 0)
+                continue;
+            int brightness = 0;
+            int backgroundBrightness = 0;
+            for (int c = 0; c < channels; c++) {
+                brightness += imageData[j + c] & 0xFF;
+                backgroundBrightness += backgroundData[j + c] & 0xFF;
+            }
+            if (backgroundBrightness == 0)
+                continue;
+            float ratio = brightness / (float) backgroundBrightness;
+            if (ratio < SHADOW_MIN_RATIO || ratio > SHADOW_MAX_RATIO)
+                continue;
+            if (channels > 1) {
+                float difference = 0;
+                for (int c = 0; c < channels; c++) {
+                    difference += Math.abs((imageData[j + c] & 0xFF) / (float) brightness - (backgroundData[j + c] & 0xFF) / (float) backgroundBrightness);
+                }
+                if (difference > SHADOW_CHROMATICITY)
+                    continue;
+            }
+            maskData[i] = 0;
+        }
+
+        shadowless.create(mask.size(), CvType.CV_8UC1);
+        shadowless.put(0, 0, maskData);
+        return shadowless;
+    }
+
+    /**
+     * This method finds the connected regions of the foreground mask which are not smaller than the minimum area.
+     *
+     * @param mask the foreground mask.
+     * @param region the region of the frame covered by the mask, or null if it covers the whole frame.
+     * @param blobs the list to which the blobs are added, in the coordinates of the whole frame; it is cleared first.
+     */
+    public void findBlobs(Mat mask, Rect region, List<Blob> blobs) {
+        blobs.clear();
+        int count = Imgproc.connectedComponentsWithStats(mask, labels, stats, centroids, 8, CvType.CV_32S);
+        if (statsData.length < stats.rows() * stats.cols())
+            statsData = new int[stats.rows() * stats.cols()];
+        if (centroidsData.length < centroids.rows() * centroids.cols())
+            centroidsData = new double[centroids.rows() * centroids.cols()];
+        stats.get(0, 0, statsData);
+        centroids.get(0, 0, centroidsData);
+
+        int offsetX = region == null ? 0 : region.x;
+        int offsetY = region == null ? 0 : region.y;
+        int columns = stats.cols();
+        // The label 0 is the background
+        for (int label = 1; label < count; label++) {
+            int row = label * columns;
+            int area = statsData[row + Imgproc.CC_STAT_AREA];
+            if (area < minArea)
+                continue;
+            Rect bounds = new Rect(statsData[row + Imgproc.CC_STAT_LEFT] + offsetX, statsData[row + Imgproc.CC_STAT_TOP] + offsetY,
+                    statsData[row + Imgproc.CC_STAT_WIDTH], statsData[row + Imgproc.CC_STAT_HEIGHT]);
+            blobs.add(new Blob(bounds, area, centroidsData[label * 2] + offsetX, centroidsData[label * 2 + 1] + offsetY));
+        }
+    }
+
+    /**
+     * This method releases the native memory of the buffers.
+     */
+    public void release() {
+        shadowless.release();
+        background.release();
+        grayImage.release();
+        labels.release();
+        stats.release();
+        centroids.release();
+    }
+}
@@ -0,0 +1,19 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+/**
+ * The MedianMaskFilter class removes the isolated foreground pixels and fills the small holes of the mask with a median blur,
+ * which keeps a binary mask binary.
+ */
+public class MedianMaskFilter implements MaskFilter {
+
+    // The size of the square neighbourhood of the median
+    private static final int APERTURE = 5;
+
+    @Override
+    public void filter(Mat mask, Mat destination) {
+        Imgproc.medianBlur(mask, destination, APERTURE);
+    }
+}
@@ -5,6 +5,14 @@
  */
 import org.opencv.core.Mat;
 
+/**
+ * Importing the Core, Rect and Size classes from the org.opencv.core package.
+ * They are used for measuring the foreground and for replacing the regions occupied by vehicles with the background.
+ */
+import org.opencv.core.Core;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+
 /**
  * Importing the BackgroundSubtractorMOG2 class from the org.opencv.video package.
  * The BackgroundSubtractorMOG2 class is a Gaussian Mixture-based Background/Foreground Segmentation Algorithm.
@@ -12,6 +20,22 @@ import org.opencv.core.Mat;
  */
 import org.opencv.video.BackgroundSubtractorMOG2;
 
+/**
+ * Importing the Imgcodecs class from the org.opencv.imgcodecs package and the File and IOException classes from the java.io package.
+ * They are used for restoring the model of the background from a file.
+ */
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Importing the Collections and List classes from the java.util package.
+ * They are used for holding the regions occupied by vehicles.
+ */
+import java.util.Collections;
+import java.util.List;
+
 /**
  * The MixtureOfGaussianBackground class is responsible for creating a mixture of Gaussian background model.
  */
@@ -40,6 +64,40 @@ public class MixtureOfGaussianBackground implements VideoProcessor {
      */
     private double learningRate = 0.001;
 
+    /**
+     * The scheduler of the learning rate, which raises the rate during the warm-up and after sudden changes of the whole frame
+     * and decays it to the learning rate above.
+     */
+    private final LearningRateScheduler scheduler = new LearningRateScheduler(learningRate);
+
+    /**
+     * The regions of the processed image occupied by vehicles in a recent frame, or predicted for the next frame by the tracker,
+     * which are not learnt while the scheduler is freezing them.
+     * They are set by the thread counting the vehicles and read by the thread subtracting the background.
+     */
+    private volatile List<Rect> occupiedRegions = Collections.emptyList();
+
+    /**
+     * The matrices used while the occupied regions are not learnt: the image of the background,
+     * the image which is learnt instead of the input image and the foreground of that image, which is not used.
+     */
+    private final Mat backgroundImage = new Mat();
+    private final Mat learntImage = new Mat();
+    private final Mat learntForeground = new Mat();
+
+    /**
+     * The bounds of the processed image and the part of an occupied region inside them, reused for every frame.
+     */
+    private final Rect bounds = new Rect();
+    private final Rect clipped = new Rect();
+
+    /**
+     * The size and the type of the last processed image, the model is learnt again from the frames when they change,
+     * e.g. when a model saved in colour is used for frames processed in grayscale.
+     */
+    private Size modelSize;
+    private int modelType;
+
     public MixtureOfGaussianBackground(double imageThreshold, int history) {
 
         mog = org.opencv.video.Video.createBackgroundSubtractorMOG2(history, imageThreshold, true);
@@ -48,7 +106,7 @@ public class MixtureOfGaussianBackground implements VideoProcessor {
 
     /**
      * This method processes the input image by applying the background subtraction algorithm.
-     * The algorithm is applied to the input image with the current learning rate, and the result is stored in the foreground matrix.
+     * The algorithm is applied to the input image with the learning rate of the scheduler, and the result is stored in the foreground matrix.
      * The foreground matrix, which contains the foreground of the video after the background has been subtracted, is then returned.
      *
      * @param inputImage The input image to be processed.
@@ -56,12 +114,108 @@ public class MixtureOfGaussianBackground implements VideoProcessor {
      */
 
     public Mat process(Mat inputImage) {
+        return process(inputImage, 1);
+    }
+
+    /**
+     * This method processes an input image which follows the previous processed image after the given number of frames.
+     * The learning rate is raised so that the background model learns as much as it would have learnt from all the frames:
+     * after "step" frames the old model keeps a weight of (1 - learningRate) to the power of step.
+     *
+     * During a spike and the first frames of the warm-up, the raised rate would quickly learn the vehicles into the background,
+     * so the foreground is found without learning, and the model then learns an image in which the occupied regions
+     * have been replaced with the current background. This costs a second pass of the model, so it is done only while
+     * the scheduler is freezing and vehicles are present.
+     *
+     * @param inputImage The input image to be processed.
+     * @param step The number of frames from the previous processed image to this one.
+     * @return The foreground of the video after the background has been subtracted.
+     */
+
+    public Mat process(Mat inputImage, int step) {
+        step = Math.max(1, step);
+        if (modelSize != null && (!modelSize.equals(inputImage.size()) || modelType != inputImage.type()))
+            scheduler.restart();
+        modelSize = inputImage.size();
+        modelType = inputImage.type();
 
-        mog.apply(inputImage, foreground, learningRate);
+        double rate = scheduler.getRate(step);
+        List<Rect> regions = occupiedRegions;
+        if (scheduler.isFreezing() && !regions.isEmpty() && !foreground.empty()) {
+            mog.apply(inputImage, foreground, 0);
+            mog.getBackgroundImage(backgroundImage);
+            inputImage.copyTo(learntImage);
+            bounds.width = inputImage.cols();
+            bounds.height = inputImage.rows();
+            for (Rect region : regions) {
+                if (intersect(region, bounds, clipped)) {
+                    Mat backgroundRegion = backgroundImage.submat(clipped);
+                    Mat learntRegion = learntImage.submat(clipped);
+                    backgroundRegion.copyTo(learntRegion);
+                    backgroundRegion.release();
+                    learntRegion.release();
+                }
+            }
+            mog.apply(learntImage, learntForeground, rate);
+        } else {
+            mog.apply(inputImage, foreground, rate);
+        }
 
+        scheduler.update(Core.countNonZero(foreground) / (double) foreground.total(), step);
         return foreground;
     }
 
+    /**
+     * This method finds the intersection of two rectangles.
+     *
+     * @param a The first rectangle.
+     * @param b The second rectangle.
+     * @param intersection The rectangle which is set to the intersection.
+     * @return true if the rectangles overlap, false otherwise, in which case the intersection is not set.
+     */
+    private static boolean intersect(Rect a, Rect b, Rect intersection) {
+        int x = Math.max(a.x, b.x);
+        int y = Math.max(a.y, b.y);
+        int right = Math.min(a.x + a.width, b.x + b.width);
+        int bottom = Math.min(a.y + a.height, b.y + b.height);
+        if (right <= x || bottom <= y)
+            return false;
+        intersection.x = x;
+        intersection.y = y;
+        intersection.width = right - x;
+        intersection.height = bottom - y;
+        return true;
+    }
+
+    /**
+     * This method sets the regions of the processed image occupied by vehicles, which are not learnt while the scheduler is freezing them.
+     *
+     * @param regions The bounding rectangles of the vehicles, in the coordinates of the processed image.
+     */
+
+    public void setOccupiedRegions(List<Rect> regions) {
+        occupiedRegions = regions;
+    }
+
+    /**
+     * This method raises the learning rate when the light of the whole scene has changed,
+     * so the background is learnt again in the new light instead of marking the whole frame as foreground.
+     */
+    @Override
+    public void adaptToIlluminationChange() {
+        scheduler.startSpike();
+    }
+
+    /**
+     * This method returns true, because the shadows are detected by the algorithm and set to the value of the background.
+     *
+     * @return true.
+     */
+    @Override
+    public boolean isShadowSuppressed() {
+        return true;
+    }
+
     /**
      * This method sets the threshold value for the background subtraction algorithm.
      * The threshold value is used to determine whether a pixel belongs to the background or the foreground.
@@ -89,4 +243,56 @@ public class MixtureOfGaussianBackground implements VideoProcessor {
     public void setHistory(int history) {
         mog.setHistory(history);
     }
+
+    /**
+     * This method writes the mean of the most probable Gaussians of every pixel, which is the image of the background.
+     *
+     * @param backgroundImage The matrix into which the BGR image of the background is written.
+     * @return true if the image has been written, false if no image has been processed yet.
+     */
+
+    public boolean getBackgroundImage(Mat backgroundImage) {
+        if (foreground.empty())
+            return false;
+        mog.getBackgroundImage(backgroundImage);
+        return true;
+    }
+
+    /**
+     * This method seeds the model with the image of the background saved by saveModel.
+     * The image is read with its own channels, so a model saved in grayscale seeds the processing of grayscale frames.
+     * The image is learnt with the learning rate 1, so every pixel starts with a single Gaussian at the saved background,
+     * instead of learning the background from the first frames of the video.
+     *
+     * @param file The file from which the image of the background is restored.
+     * @return true if the model has been seeded, false if the file does not hold an image.
+     * @throws IOException if the file cannot be read.
+     */
+
+    public boolean loadModel(File file) throws IOException {
+        Mat seed = VideoProcessor.readModelImage(file, Imgcodecs.IMREAD_UNCHANGED);
+        try {
+            if (seed.empty())
+                return false;
+            mog.apply(seed, foreground, 1);
+            modelSize = seed.size();
+            modelType = seed.type();
+            scheduler.skipWarmUp();
+            return true;
+        } finally {
+            seed.release();
+        }
+    }
+
+    /**
+     * This method releases the foreground matrix.
+     * The model of the background is released by OpenCV when the subtractor is collected.
+     */
+
+    public void release() {
+        foreground.release();
+        backgroundImage.release();
+        learntImage.release();
+        learntForeground.release();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.core.Size; // OpenCV library for handling sizes
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+/**
+ * The MorphologyMaskFilter class cleans the foreground mask with a morphological opening, which removes the specks of noise,
+ * followed by a closing, which fills the gaps inside the vehicles.
+ * The structuring elements are created once and kept for all the frames.
+ */
+public class MorphologyMaskFilter implements MaskFilter {
+
+    // The structuring element of the opening
+    private final Mat openKernel = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(3, 3));
+    // The structuring element of the closing
+    private final Mat closeKernel = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(7, 7));
+
+    @Override
+    public void filter(Mat mask, Mat destination) {
+        Imgproc.morphologyEx(mask, destination, Imgproc.MORPH_OPEN, openKernel);
+        Imgproc.morphologyEx(destination, destination, Imgproc.MORPH_CLOSE, closeKernel);
+    }
+
+    @Override
+    public void release() {
+        openKernel.release();
+        closeKernel.release();
+    }
+}
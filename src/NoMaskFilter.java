@@ -0,0 +1,14 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+
+/**
+ * The NoMaskFilter class copies the foreground mask as it is, for background models whose masks are already clean.
+ */
+public class NoMaskFilter implements MaskFilter {
+
+    @Override
+    public void filter(Mat mask, Mat destination) {
+        mask.copyTo(destination);
+    }
+}
@@ -0,0 +1,77 @@
+// Importing the necessary libraries
+
+import java.util.concurrent.locks.Condition; // Java Concurrent library for waiting on a lock
+import java.util.concurrent.locks.ReentrantLock; // Java Concurrent library for handling locks
+
+/**
+ * The PauseGate class holds the paused state of the video.
+ * A thread which must not run while the video is paused waits in the gate until the video is resumed,
+ * without using the CPU while it is waiting.
+ */
+public class PauseGate {
+
+    // The lock guarding the paused state
+    private final ReentrantLock lock = new ReentrantLock();
+    // The condition signalled when the video is resumed
+    private final Condition resumed = lock.newCondition();
+
+    // Whether the video is paused
+    private volatile boolean isPaused;
+
+    /**
+     * Constructor for the PauseGate class.
+     *
+     * @param isPaused whether the video is paused at the start.
+     */
+    public PauseGate(boolean isPaused) {
+        this.isPaused = isPaused;
+    }
+
+    /**
+     * This method pauses the video.
+     */
+    public void pause() {
+        isPaused = true;
+    }
+
+    /**
+     * This method resumes the video and wakes up all the threads waiting in the gate.
+     */
+    public void resume() {
+        lock.lock();
+        try {
+            isPaused = false;
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * This method returns whether the video is paused.
+     *
+     * @return true if the video is paused, false otherwise.
+     */
+    public boolean isPaused() {
+        return isPaused;
+    }
+
+    /**
+     * This method waits until the video is not paused.
+     * It returns at once if the video is not paused.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public void awaitResumed() throws InterruptedException {
+        if (!isPaused)
+            return;
+        lock.lockInterruptibly();
+        try {
+            while (isPaused) {
+                resumed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * The PendingVehicles class holds the counted vehicles which are waiting for their speed to be measured, in the order of the counting.
+ * It is a ring buffer of primitive arrays: every vehicle keeps its number, its type and the frame in which it was counted,
+ * so the frames it has waited are the difference to the current frame instead of a counter incremented in every frame.
+ * Adding a vehicle and removing the oldest one take constant time, and the buffer grows only when it is full.
+ */
+public class PendingVehicles {
+
+    // The initial capacity of the buffer
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The numbers, the types and the counting frames of the vehicles, from the index of the oldest vehicle on, wrapping around
+    private int[] numbers = new int[INITIAL_CAPACITY];
+    private String[] types = new String[INITIAL_CAPACITY];
+    private int[] startFrames = new int[INITIAL_CAPACITY];
+    // The index of the oldest vehicle and the number of the vehicles
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * This method adds a counted vehicle after all the other vehicles.
+     *
+     * @param number the number of the vehicle.
+     * @param type the type of the vehicle ("Car", "Van" or "Lorry").
+     * @param startFrame the frame in which the vehicle was counted.
+     */
+    public void add(int number, String type, int startFrame) {
+        if (size == numbers.length)
+            grow();
+        int index = (head + size) % numbers.length;
+        numbers[index] = number;
+        types[index] = type;
+        startFrames[index] = startFrame;
+        size++;
+    }
+
+    /**
+     * This method removes the oldest vehicle.
+     *
+     * @throws IllegalStateException if there is no vehicle.
+     */
+    public void removeFirst() {
+        if (size == 0)
+            throw new IllegalStateException("There is no pending vehicle");
+        types[head] = null;
+        head = (head + 1) % numbers.length;
+        size--;
+    }
+
+    /**
+     * The firstNumber, firstType and firstStartFrame methods return the number, the type and the counting frame
+     * of the oldest vehicle, which must exist.
+     */
+    public int firstNumber() {
+        return numbers[head];
+    }
+
+    public String firstType() {
+        return types[head];
+    }
+
+    public int firstStartFrame() {
+        return startFrames[head];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method doubles the capacity of the buffer and moves the vehicles to the start of the new arrays.
+     */
+    private void grow() {
+        int capacity = numbers.length * 2;
+        int[] newNumbers = new int[capacity];
+        String[] newTypes = new String[capacity];
+        int[] newStartFrames = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % numbers.length;
+            newNumbers[i] = numbers[index];
+            newTypes[i] = types[index];
+            newStartFrames[i] = startFrames[index];
+        }
+        numbers = newNumbers;
+        types = newTypes;
+        startFrames = newStartFrames;
+        head = 0;
+    }
+}
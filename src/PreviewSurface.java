@@ -0,0 +1,109 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+
+import javax.swing.*; // Swing library for creating GUI
+import java.awt.image.BufferedImage; // Java AWT library for handling images in memory
+import java.util.concurrent.Executors; // Java Concurrent library for creating executors
+import java.util.concurrent.ScheduledExecutorService; // Java Concurrent library for running delayed tasks
+import java.util.concurrent.TimeUnit; // Java Concurrent library for handling time units
+import java.util.concurrent.atomic.AtomicBoolean; // Java Concurrent library for flags shared between threads
+
+/**
+ * The PreviewSurface class displays frames in a JLabel without blocking the thread which produces them.
+ * Any thread can publish a frame, which is only copied into the latest frame of the surface.
+ * The latest frame is converted and painted on the Event Dispatch Thread at most at the given display rate,
+ * into a single BufferedImage which is reused as long as the size of the frames does not change,
+ * so the frames published between two paints are dropped and the processing does not wait for Swing.
+ */
+public class PreviewSurface {
+
+    // The thread which delays the paints to keep the display rate, shared by all the surfaces
+    private static final ScheduledExecutorService THROTTLE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Preview-throttle");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The label in which the frames are displayed
+    private final JLabel label;
+    // The shortest time between two paints in nanoseconds
+    private final long paintInterval;
+
+    // The latest published frame, guarded by itself
+    private final Mat latest = new Mat();
+    // Whether a paint of the latest frame has been scheduled and not run yet
+    private final AtomicBoolean isPaintScheduled = new AtomicBoolean(false);
+    // The time of the last paint in nanoseconds
+    private volatile long lastPaint = 0;
+
+    // The converter of the frames, which keeps the displayed image, used only on the Event Dispatch Thread
+    private final ImageProcessor imageProcessor = new ImageProcessor();
+    // The image displayed in the label, used only on the Event Dispatch Thread
+    private BufferedImage image;
+
+    /**
+     * Constructor for the PreviewSurface class.
+     *
+     * @param label the label in which the frames are displayed.
+     * @param maxFPS the largest number of paints per second.
+     */
+    public PreviewSurface(JLabel label, double maxFPS) {
+        this.label = label;
+        this.paintInterval = (long) (1e9 / maxFPS);
+    }
+
+    /**
+     * This method publishes a frame to be displayed.
+     * It can be called from any thread, and it returns as soon as the frame has been copied.
+     * If a paint is already scheduled, the frame replaces the frame waiting for it.
+     *
+     * @param frame the frame to be displayed, either grayscale or BGR.
+     */
+    public void publish(Mat frame) {
+        synchronized (latest) {
+            frame.copyTo(latest);
+        }
+        if (isPaintScheduled.compareAndSet(false, true)) {
+            long delay = lastPaint + paintInterval - System.nanoTime();
+            if (delay <= 0) {
+                SwingUtilities.invokeLater(this::paint);
+            } else {
+                THROTTLE.schedule(() -> SwingUtilities.invokeLater(this::paint), delay, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * This method paints the latest frame on the Event Dispatch Thread.
+     * The pixels are copied straight into the buffer of the cached image of the ImageProcessor,
+     * which is created again only if the size or the number of channels of the frames has changed.
+     */
+    private void paint() {
+        BufferedImage converted;
+        synchronized (latest) {
+            isPaintScheduled.set(false);
+            if (latest.empty())
+                return;
+            converted = imageProcessor.toCachedBufferedImage(latest);
+        }
+        lastPaint = System.nanoTime();
+
+        if (converted != image) {
+            image = converted;
+            label.setIcon(new ImageIcon(image));
+        } else {
+            label.repaint();
+        }
+    }
+
+    /**
+     * This method releases the native memory of the latest frame.
+     * It is called when the surface is no longer displayed.
+     */
+    public void release() {
+        synchronized (latest) {
+            latest.release();
+        }
+    }
+}
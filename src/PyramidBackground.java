@@ -0,0 +1,258 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Core; // OpenCV library for handling core functionalities
+import org.opencv.core.CvType; // OpenCV library for handling types of matrices
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+import org.opencv.core.Scalar; // OpenCV library for handling scalar values
+import org.opencv.core.Size; // OpenCV library for handling sizes
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+import java.io.File; // Java IO library for handling files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+import java.util.List; // Java Util library for handling lists
+
+/**
+ * The PyramidBackground class runs another video processor on a downsampled level of the image pyramid,
+ * so the model of the background has 4 or 16 times fewer pixels to learn.
+ * The foreground mask of the small image only finds the candidate regions: every connected region of the small mask
+ * is dilated and scaled back to the full resolution, and only inside these regions are the full resolution pixels
+ * compared with the scaled image of the background, using the image threshold as the difference of brightness. This keeps the edges and the areas of the contours
+ * close to the full resolution, which matters for the area threshold and the vehicle size threshold.
+ * If the wrapped processor does not keep an image of the background, the small mask is scaled up instead.
+ */
+public class PyramidBackground implements VideoProcessor {
+
+    // The number of small pixels by which the candidate regions are dilated
+    private static final int DILATION = 1;
+
+    // The video processor running on the downsampled image
+    private final VideoProcessor processor;
+    // The number of pyramid levels, 1 for half of the width and the height, 2 for a quarter
+    private final int levels;
+
+    // The downsampled input image
+    private final Mat small = new Mat();
+    // The dilated foreground mask of the downsampled image
+    private final Mat candidates = new Mat();
+    // The labels and the statistics of the connected regions of the candidates
+    private final Mat labels = new Mat();
+    private final Mat stats = new Mat();
+    private final Mat centroids = new Mat();
+    private int[] statsData = new int[0];
+    // The structuring element of the dilation
+    private final Mat kernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(2 * DILATION + 1, 2 * DILATION + 1));
+    // The image of the background at the downsampled size
+    private final Mat smallBackground = new Mat();
+    // The full resolution pieces of a candidate region: the image, the background, their difference and the scaled candidates
+    private final Mat regionGray = new Mat();
+    private final Mat regionBackground = new Mat();
+    private final Mat regionDifference = new Mat();
+    private final Mat regionCandidates = new Mat();
+    // The foreground mask at the full resolution
+    private final Mat foreground = new Mat();
+
+    // The difference of brightness above which a full resolution pixel inside a candidate region belongs to the foreground,
+    // which is the image threshold, so it follows the threshold tuned while the video is processed
+    private volatile double refineThreshold;
+
+    /**
+     * Constructor for the PyramidBackground class.
+     *
+     * @param processor the video processor running on the downsampled image.
+     * @param levels the number of pyramid levels, 1 for 2x or 2 for 4x downsampling.
+     * @param imageThreshold the image threshold, used as the difference of brightness when the foreground is refined.
+     */
+    public PyramidBackground(VideoProcessor processor, int levels, double imageThreshold) {
+        this.processor = processor;
+        this.levels = Math.max(1, levels);
+        this.refineThreshold = imageThreshold;
+    }
+
+    @Override
+    public Mat process(Mat inputImage) {
+        return process(inputImage, 1);
+    }
+
+    /**
+     * This method downsamples the input image, subtracts its background with the wrapped processor
+     * and refines the foreground at the full resolution inside the candidate regions.
+     *
+     * @param inputImage The input image to be processed.
+     * @param step The number of frames from the previous processed image to this one.
+     * @return The foreground mask at the size of the input image.
+     */
+    @Override
+    public Mat process(Mat inputImage, int step) {
+        Imgproc.pyrDown(inputImage, small);
+        for (int i = 1; i < levels; i++) {
+            Imgproc.pyrDown(small, small);
+        }
+        Mat smallForeground = processor.process(small, step);
+
+        foreground.create(inputImage.rows(), inputImage.cols(), CvType.CV_8UC1);
+        foreground.setTo(Scalar.all(0));
+
+        Imgproc.dilate(smallForeground, candidates, kernel);
+        int count = Imgproc.connectedComponentsWithStats(candidates, labels, stats, centroids, 8, CvType.CV_32S);
+        if (count <= 1)
+            return foreground;
+
+        boolean hasBackground = processor.getBackgroundImage(smallBackground);
+        int scale = 1 << levels;
+        if (statsData.length < stats.rows() * stats.cols())
+            statsData = new int[stats.rows() * stats.cols()];
+        stats.get(0, 0, statsData);
+        int columns = stats.cols();
+        // The label 0 is the background
+        for (int label = 1; label < count; label++) {
+            int x = statsData[label * columns + Imgproc.CC_STAT_LEFT];
+            int y = statsData[label * columns + Imgproc.CC_STAT_TOP];
+            int width = statsData[label * columns + Imgproc.CC_STAT_WIDTH];
+            int height = statsData[label * columns + Imgproc.CC_STAT_HEIGHT];
+            Rect smallRect = new Rect(x, y, width, height);
+            Rect rect = new Rect(x * scale, y * scale,
+                    Math.min(width * scale, inputImage.cols() - x * scale),
+                    Math.min(height * scale, inputImage.rows() - y * scale));
+            if (rect.width <= 0 || rect.height <= 0)
+                continue;
+            refine(inputImage, smallForeground, smallRect, rect, hasBackground);
+        }
+        return foreground;
+    }
+
+    /**
+     * This method writes the foreground of a candidate region at the full resolution.
+     * The pixels which differ from the scaled background are kept where the scaled candidates are set,
+     * or, without an image of the background, the scaled mask of the small image is used.
+     *
+     * @param inputImage The full resolution input image.
+     * @param smallForeground The foreground mask of the downsampled image.
+     * @param smallRect The candidate region in the downsampled image.
+     * @param rect The candidate region in the full resolution image.
+     * @param hasBackground Whether the image of the background has been written to smallBackground.
+     */
+    private void refine(Mat inputImage, Mat smallForeground, Rect smallRect, Rect rect, boolean hasBackground) {
+        // The submatrices are headers of the whole matrices, released after every region
+        Mat target = foreground.submat(rect);
+        Size size = rect.size();
+        if (!hasBackground) {
+            Mat smallRegion = smallForeground.submat(smallRect);
+            Imgproc.resize(smallRegion, target, size, 0, 0, Imgproc.INTER_NEAREST);
+            smallRegion.release();
+            target.release();
+            return;
+        }
+
+        Mat input = inputImage.submat(rect);
+        if (input.channels() > 1)
+            Imgproc.cvtColor(input, regionGray, Imgproc.COLOR_BGR2GRAY);
+        else
+            input.copyTo(regionGray);
+        input.release();
+        Mat backgroundRegion = smallBackground.submat(smallRect);
+        Imgproc.resize(backgroundRegion, regionBackground, size, 0, 0, Imgproc.INTER_LINEAR);
+        backgroundRegion.release();
+        if (regionBackground.channels() > 1)
+            Imgproc.cvtColor(regionBackground, regionBackground, Imgproc.COLOR_BGR2GRAY);
+
+        Core.absdiff(regionGray, regionBackground, regionDifference);
+        Imgproc.threshold(regionDifference, regionDifference, refineThreshold, 255, Imgproc.THRESH_BINARY);
+        Mat candidatesRegion = candidates.submat(smallRect);
+        Imgproc.resize(candidatesRegion, regionCandidates, size, 0, 0, Imgproc.INTER_NEAREST);
+        candidatesRegion.release();
+        // The regions may overlap, so the foreground found for a previous region is kept
+        Core.bitwise_and(regionDifference, regionCandidates, regionDifference);
+        Core.bitwise_or(target, regionDifference, target);
+        target.release();
+    }
+
+    /**
+     * This method writes the image of the background of the wrapped processor, scaled up to the full resolution.
+     *
+     * @param backgroundImage The matrix into which the image of the background is written.
+     * @return true if the image has been written, false if the wrapped processor does not keep one.
+     */
+    @Override
+    public boolean getBackgroundImage(Mat backgroundImage) {
+        if (foreground.empty() || !processor.getBackgroundImage(smallBackground))
+            return false;
+        Imgproc.resize(smallBackground, backgroundImage, foreground.size(), 0, 0, Imgproc.INTER_LINEAR);
+        return true;
+    }
+
+    /**
+     * This method sets the occupied regions of the wrapped processor, scaled down to the downsampled image.
+     *
+     * @param regions The bounding rectangles of the vehicles, in the coordinates of the full resolution image.
+     */
+    @Override
+    public void setOccupiedRegions(List<Rect> regions) {
+        int scale = 1 << levels;
+        List<Rect> scaled = new ArrayList<>(regions.size());
+        for (Rect region : regions) {
+            int x = region.x / scale;
+            int y = region.y / scale;
+            scaled.add(new Rect(x, y, (region.x + region.width + scale - 1) / scale - x, (region.y + region.height + scale - 1) / scale - y));
+        }
+        processor.setOccupiedRegions(scaled);
+    }
+
+    /**
+     * This method lets the wrapped processor adapt to a change of the light of the whole scene.
+     */
+    @Override
+    public void adaptToIlluminationChange() {
+        processor.adaptToIlluminationChange();
+    }
+
+    /**
+     * The saveModel and loadModel methods save and restore the model of the wrapped processor at the downsampled size.
+     */
+    @Override
+    public void saveModel(File file) throws IOException {
+        processor.saveModel(file);
+    }
+
+    @Override
+    public boolean loadModel(File file) throws IOException {
+        return processor.loadModel(file);
+    }
+
+    /**
+     * This method sets the image threshold of the wrapped processor and the difference of brightness used for the refinement.
+     *
+     * @param imageThreshold The threshold value to be set.
+     */
+    @Override
+    public void setImageThreshold(double imageThreshold) {
+        processor.setImageThreshold(imageThreshold);
+        refineThreshold = imageThreshold;
+    }
+
+    @Override
+    public void setHistory(int history) {
+        processor.setHistory(history);
+    }
+
+    /**
+     * This method releases the matrices of the pyramid and the wrapped processor.
+     */
+    @Override
+    public void release() {
+        processor.release();
+        small.release();
+        candidates.release();
+        labels.release();
+        stats.release();
+        centroids.release();
+        kernel.release();
+        smallBackground.release();
+        regionGray.release();
+        regionBackground.release();
+        regionDifference.release();
+        regionCandidates.release();
+        foreground.release();
+    }
+}
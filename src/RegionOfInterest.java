@@ -0,0 +1,95 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Point; // OpenCV library for handling points in 2D space
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+import org.opencv.core.Size; // OpenCV library for handling sizes
+
+/**
+ * The RegionOfInterest class holds the band of the frame around the counting line and the speed line.
+ * Only the vehicles whose bounding boxes cross one of the lines are counted, so the background subtraction,
+ * the filtering and the search for the contours can be restricted to this band.
+ * The band is the bounding rectangle of the two lines, padded on every side so that whole vehicles fit into it,
+ * and clipped to the frame.
+ */
+public class RegionOfInterest {
+
+    // The default padding around the lines in pixels
+    public static final int DEFAULT_PADDING = 80;
+
+    // The padding around the lines in pixels
+    private final int padding;
+    // The size of the frame
+    private final Size frameSize;
+
+    // Whether the band is used
+    private volatile boolean isEnabled = true;
+    // The band, or null if the lines have not been set yet
+    private volatile Rect rect;
+
+    // The lines from which the band has been calculated
+    private Point lineCount1;
+    private Point lineCount2;
+    private Point lineSpeed1;
+    private Point lineSpeed2;
+
+    /**
+     * Constructor for the RegionOfInterest class.
+     *
+     * @param padding the padding around the lines in pixels.
+     * @param frameSize the size of the frame.
+     */
+    public RegionOfInterest(int padding, Size frameSize) {
+        this.padding = padding;
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * This method sets the counting line and the speed line and calculates the band around them.
+     * The band is calculated again only if the lines have changed.
+     *
+     * @param lineCount1 the first point of the counting line.
+     * @param lineCount2 the second point of the counting line.
+     * @param lineSpeed1 the first point of the speed line.
+     * @param lineSpeed2 the second point of the speed line.
+     */
+    public synchronized void setLines(Point lineCount1, Point lineCount2, Point lineSpeed1, Point lineSpeed2) {
+        if (lineCount1 == null || lineCount2 == null || lineSpeed1 == null || lineSpeed2 == null)
+            return;
+        if (lineCount1.equals(this.lineCount1) && lineCount2.equals(this.lineCount2)
+                && lineSpeed1.equals(this.lineSpeed1) && lineSpeed2.equals(this.lineSpeed2))
+            return;
+        this.lineCount1 = lineCount1;
+        this.lineCount2 = lineCount2;
+        this.lineSpeed1 = lineSpeed1;
+        this.lineSpeed2 = lineSpeed2;
+
+        double minX = Math.min(Math.min(lineCount1.x, lineCount2.x), Math.min(lineSpeed1.x, lineSpeed2.x));
+        double maxX = Math.max(Math.max(lineCount1.x, lineCount2.x), Math.max(lineSpeed1.x, lineSpeed2.x));
+        double minY = Math.min(Math.min(lineCount1.y, lineCount2.y), Math.min(lineSpeed1.y, lineSpeed2.y));
+        double maxY = Math.max(Math.max(lineCount1.y, lineCount2.y), Math.max(lineSpeed1.y, lineSpeed2.y));
+
+        int x = (int) Math.max(0, Math.floor(minX) - padding);
+        int y = (int) Math.max(0, Math.floor(minY) - padding);
+        int right = (int) Math.min(frameSize.width, Math.ceil(maxX) + padding + 1);
+        int bottom = (int) Math.min(frameSize.height, Math.ceil(maxY) + padding + 1);
+        rect = new Rect(x, y, right - x, bottom - y);
+    }
+
+    /**
+     * This method sets whether the band is used.
+     *
+     * @param isEnabled true to process only the band, false to process the whole frame.
+     */
+    public void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    /**
+     * This method returns the band which should be processed.
+     *
+     * @return the band, or null if the whole frame should be processed.
+     */
+    public Rect getRect() {
+        return isEnabled ? rect : null;
+    }
+}
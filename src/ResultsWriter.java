@@ -0,0 +1,160 @@
+// Importing the necessary libraries
+
+import com.opencsv.CSVWriter; // Library for writing to CSV files
+import jxl.Workbook; // JExcel library for handling Excel workbooks
+import jxl.write.Number; // JExcel library for handling numeric data in Excel
+import jxl.write.WritableSheet; // JExcel library for handling writable Excel sheets
+import jxl.write.WritableWorkbook; // JExcel library for handling writable Excel workbooks
+import jxl.write.WriteException; // JExcel library for handling exceptions while writing to Excel
+
+import java.io.File; // Java IO library for handling files
+import java.io.FileWriter; // Java IO library for writing to files
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+
+/**
+ * The ResultsWriter class is responsible for writing the results of the vehicle counting to a file.
+ * The results are collected by the TrafficCounter in a VehicleEventStore, and they are written from the store
+ * to the selected file ("Results.xls" or "Results.csv") in the results directory when the video has been processed,
+ * so the counting does not depend on the spreadsheet.
+ */
+public class ResultsWriter {
+
+    // The flags for the formats for saving the results
+    public static final String xlsWriteResults = "XLS";
+    public static final String csvWriteResults = "CSV";
+
+    // The directory in which the results are saved
+    private File directory;
+    // Whether the XLS format is selected
+    private boolean isExcelToWrite;
+    // Whether the results have been written
+    private boolean isWritten = false;
+
+    // The sheet for writing the XLS file
+    private WritableSheet sheet;
+
+    /**
+     * Constructor for the ResultsWriter class.
+     *
+     * @param directory the directory in which the results are saved.
+     * @param writeFlag the format of the results, either "XLS" or "CSV".
+     */
+    public ResultsWriter(File directory, String writeFlag) {
+        this.directory = directory;
+        this.isExcelToWrite = !writeFlag.equalsIgnoreCase(csvWriteResults);
+    }
+
+    /**
+     * This method writes the results to the selected file.
+     * The results are written only once, so the method can be called many times.
+     *
+     * @param events the results of the counting.
+     * @throws IOException if an I/O error occurs while writing the file.
+     * @throws WriteException if an error occurs while writing to the Excel sheet.
+     */
+    public void write(VehicleEventStore events) throws IOException, WriteException {
+        if (isWritten)
+            return;
+        isWritten = true;
+
+        if (isExcelToWrite)
+            writeToExel(new File(directory, "Results.xls"), events);
+        else
+            writeToCSV(new FileWriter(new File(directory, "Results.csv")), events);
+    }
+
+    /**
+     * This method writes the vehicle data to a CSV file, with a tab character as the separator.
+     * The headers are "No.", "Vehicle type", "Speed [km/h]", and "Video time [sec]",
+     * and there is one row for every measured vehicle, in the order of the speed measurements.
+     *
+     * @param fileWriter the FileWriter used to write the CSV file.
+     * @param events the results of the counting.
+     * @throws IOException if an I/O error occurs while writing the file.
+     */
+    private void writeToCSV(FileWriter fileWriter, VehicleEventStore events) throws IOException {
+        ArrayList<String[]> ListCSV = new ArrayList<>();
+        ListCSV.add("No.#Vehicle type#Speed [km/h]#Video time [sec]".split("#"));
+        for (int i = 0; i < events.getMeasuredCount(); i++) {
+            int row = events.getMeasuredRow(i);
+            ListCSV.add((events.getNumber(row) + "#" + events.getType(row).getLabel() + "#" + events.getSpeed(row) + "#" + events.getSpeedTime(row)).split("#"));
+        }
+
+        CSVWriter CSVwriter = new CSVWriter(fileWriter, '\t');
+        try {
+            CSVwriter.writeAll(ListCSV);
+        } finally {
+            CSVwriter.close();
+        }
+    }
+
+    /**
+     * This method writes the vehicle data to an Excel file.
+     * It creates a new workbook with the provided file and adds a sheet named "Counting" to the workbook,
+     * with the labels "No.", "Vehicle type", "Speed [km/h]", and "Video time [sec]".
+     * Every counted vehicle is written to the row of its number, and the speed and the video time only if the speed has been measured.
+     *
+     * @param file the File object representing the Excel file to be written.
+     * @param events the results of the counting.
+     * @throws IOException if an I/O error occurs while writing the workbook.
+     * @throws WriteException if an error occurs while writing to the Excel sheet.
+     */
+    private void writeToExel(File file, VehicleEventStore events) throws IOException, WriteException {
+        WritableWorkbook workbook = Workbook.createWorkbook(file);
+        sheet = workbook.createSheet("Counting", 0);
+        addLabel(0, 0, "No.");
+        addLabel(1, 0, "Vehicle type");
+        addLabel(2, 0, "Speed [km/h]");
+        addLabel(3, 0, "Video time [sec]");
+
+        for (int row = 0; row < events.size(); row++) {
+            int number = events.getNumber(row);
+            addNumberInteger(0, number, number);
+            addLabel(1, number, events.getType(row).getLabel());
+            if (events.isMeasured(row)) {
+                addNumberDouble(2, number, events.getSpeed(row));
+                addNumberDouble(3, number, events.getSpeedTime(row));
+            }
+        }
+
+        workbook.write();
+        workbook.close();
+    }
+
+    /**
+     * This method adds a label to a cell in the Excel sheet.
+     *
+     * @param column the column number of the cell where the label is added.
+     * @param row the row number of the cell where the label is added.
+     * @param text the text of the label to be added.
+     * @throws WriteException if an error occurs while writing to the Excel sheet.
+     */
+    private void addLabel(int column, int row, String text) throws WriteException {
+        sheet.addCell(new jxl.write.Label(column, row, text));
+    }
+
+    /**
+     * This method adds an integer value to a cell in the Excel sheet.
+     *
+     * @param column the column number of the cell where the number is added.
+     * @param row the row number of the cell where the number is added.
+     * @param integer the integer value to be added.
+     * @throws WriteException if an error occurs while writing to the Excel sheet.
+     */
+    private void addNumberInteger(int column, int row, Integer integer) throws WriteException {
+        sheet.addCell(new Number(column, row, integer));
+    }
+
+    /**
+     * This method adds a double value to a cell in the Excel sheet.
+     *
+     * @param column the column number of the cell where the number is added.
+     * @param row the row number of the cell where the number is added.
+     * @param d the double value to be added.
+     * @throws WriteException if an error occurs while writing to the Excel sheet.
+     */
+    private void addNumberDouble(int column, int row, Double d) throws WriteException {
+        sheet.addCell(new Number(column, row, d));
+    }
+}
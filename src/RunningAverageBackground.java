@@ -0,0 +1,58 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Core; // OpenCV library for handling core functionalities
+import org.opencv.core.CvType; // OpenCV library for handling types of matrices
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.imgproc.Imgproc; // OpenCV library for image processing
+
+/**
+ * The RunningAverageBackground class keeps an exponentially weighted average of the frames as the background.
+ * A pixel belongs to the foreground when its brightness differs from the average by more than the image threshold.
+ * Every frame is added to the average with the weight 1/history, so it suits static cameras with steady light,
+ * such as highway cameras, at a fraction of the cost of the mixture of Gaussians.
+ */
+public class RunningAverageBackground extends GrayscaleBackground {
+
+    // The average of the frames, in floating point
+    private final Mat background = new Mat();
+    // The average of the frames, rounded to bytes for the comparison
+    private final Mat background8U = new Mat();
+    // The absolute difference between the frame and the average
+    private final Mat difference = new Mat();
+
+    /**
+     * Constructor for the RunningAverageBackground class.
+     *
+     * @param imageThreshold the difference of brightness above which a pixel belongs to the foreground.
+     * @param history the number of frames after which the average has mostly forgotten an old background.
+     */
+    public RunningAverageBackground(double imageThreshold, int history) {
+        super(imageThreshold, history);
+    }
+
+    @Override
+    protected void initialize(Mat gray) {
+        gray.convertTo(background, CvType.CV_32F);
+    }
+
+    @Override
+    protected void update(Mat gray, int step) {
+        background.convertTo(background8U, CvType.CV_8U);
+        Core.absdiff(gray, background8U, difference);
+        Imgproc.threshold(difference, foreground, imageThreshold, 255, Imgproc.THRESH_BINARY);
+        Imgproc.accumulateWeighted(gray, background, learningRate(step));
+    }
+
+    @Override
+    protected void writeBackground(Mat backgroundImage) {
+        background.convertTo(backgroundImage, CvType.CV_8U);
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        background.release();
+        background8U.release();
+        difference.release();
+    }
+}
@@ -0,0 +1,376 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Core; // OpenCV library for handling core functionalities
+import org.opencv.videoio.VideoCapture; // OpenCV library for capturing video
+import org.opencv.videoio.Videoio; // OpenCV library for handling video I/O operations
+
+import java.io.IOException; // Java IO library for handling IO exceptions
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+import java.util.Comparator; // Java Util library for sorting
+import java.util.HashMap; // Java Util library for handling HashMaps
+import java.util.HashSet; // Java Util library for handling HashSets
+import java.util.List; // Java Util library for handling lists
+import java.util.Map; // Java Util library for handling maps
+import java.util.Set; // Java Util library for handling sets
+import java.util.concurrent.ExecutionException; // Java Concurrent library for handling exceptions of tasks
+import java.util.concurrent.ForkJoinPool; // Java Concurrent library for work-stealing thread pools
+import java.util.concurrent.ForkJoinTask; // Java Concurrent library for tasks of a ForkJoinPool
+
+/**
+ * The SegmentedRunner class processes one long video as several time segments at the same time.
+ * Every segment opens its own video capture, seeks to its first frame and runs its own background model and traffic counter,
+ * so a long recording uses as many cores as there are segments.
+ *
+ * Before its first frame, every segment (except the first one) runs the preceding "history" frames as a warm-up:
+ * they train the background model and set the crossing flags and the waiting vehicles of the counter,
+ * but the vehicles counted during the warm-up belong to the previous segment.
+ * After its last frame, every segment (except the last one) keeps running until the vehicles it has counted
+ * have either reached the speed line or been discarded.
+ *
+ * The vehicles of all the segments are then stitched together into one timeline, ordered by the frame of the counting.
+ * A vehicle which straddles the boundary between two segments may be counted by both of them, a few frames apart.
+ * Shortly after the boundary, the previous segment, which has processed the same frames with a longer history, decides:
+ * a vehicle counted there by the next segment is kept only if it is matched to a vehicle counted by the previous segment
+ * after its end. Every such vehicle of the previous segment is matched at most once, and the vehicles counted by the
+ * previous segment before its end are never matched, as they are already in the timeline.
+ *
+ * The frames flagged by the illumination check are collected in the same way: every segment keeps the intervals
+ * within its own frames, and the intervals are merged in the order of the video.
+ */
+public class SegmentedRunner {
+
+    // The number of frames by which the counting of the same vehicle may differ between two segments
+    private static final int BOUNDARY_TOLERANCE = 2;
+
+    // The settings of the processing
+    private final DetectorSettings settings;
+    // The frames per second of the video
+    private final double videoFPS;
+    // The number of frames of the video
+    private final int totalFrames;
+    // The number of frames after a boundary in which the vehicles counted by the next segment are checked for duplicates
+    private final int boundaryWindow;
+    // The intervals of the frames of the whole video flagged by the illumination check, or null if the check is disabled
+    private List<IlluminationMonitor.Interval> illuminationIntervals;
+
+    /**
+     * The Segment class holds the range of frames of a segment and the vehicles counted in it.
+     */
+    static class Segment {
+        // The first frame of the segment
+        final int start;
+        // The frame after the last frame of the segment
+        final int end;
+        // All the vehicles counted while the segment was processed, including the warm-up and the frames after the end
+        final List<VehicleEvent> events = new ArrayList<>();
+        // The frame after the last processed frame
+        int lastFrame;
+        // The vehicles counted after the end which have been matched to the vehicles of the next segment
+        private final Set<VehicleEvent> matched = new HashSet<>();
+        // The intervals of the frames flagged by the illumination check, clipped to the frames of the segment
+        final List<IlluminationMonitor.Interval> intervals = new ArrayList<>();
+
+        Segment(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * This method matches a vehicle counted by the next segment to the nearest vehicle counted by this segment
+         * after its end, which has not been matched yet.
+         *
+         * @param frame the frame in which the next segment has counted the vehicle.
+         * @return true if a vehicle has been matched, false otherwise.
+         */
+        boolean matchOverlapCount(int frame) {
+            VehicleEvent nearest = null;
+            for (VehicleEvent event : events) {
+                if (event.countFrame < end || matched.contains(event))
+                    continue;
+                int distance = Math.abs(event.countFrame - frame);
+                if (distance <= BOUNDARY_TOLERANCE && (nearest == null || distance < Math.abs(nearest.countFrame - frame)))
+                    nearest = event;
+            }
+            if (nearest == null)
+                return false;
+            matched.add(nearest);
+            return true;
+        }
+    }
+
+    /**
+     * Constructor for the SegmentedRunner class.
+     *
+     * @param settings the settings of the processing.
+     * @param videoFPS the frames per second of the video.
+     * @param totalFrames the number of frames of the video.
+     */
+    public SegmentedRunner(DetectorSettings settings, double videoFPS, int totalFrames) {
+        this.settings = settings;
+        this.videoFPS = videoFPS;
+        this.totalFrames = totalFrames;
+        this.boundaryWindow = Math.max(1, (int) Math.round(videoFPS));
+    }
+
+    /**
+     * This method processes all the segments at the same time, stitches their vehicles together
+     * and records them in the results in the order of the video.
+     *
+     * @return the traffic counter holding the totals and the results of the whole video.
+     * @throws IOException if the video cannot be opened.
+     */
+    public TrafficCounter run() throws IOException {
+        int count = Math.max(1, Math.min(settings.getSegments(), totalFrames));
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int start = (int) ((long) totalFrames * i / count);
+            // The last segment runs until the end of the video, even if the number of frames was not exact
+            int end = i == count - 1 ? Integer.MAX_VALUE : (int) ((long) totalFrames * (i + 1) / count);
+            segments.add(new Segment(start, end));
+        }
+
+        // Share the cores between the segments instead of letting every segment use all of them
+        Core.setNumThreads(Math.max(1, Runtime.getRuntime().availableProcessors() / count));
+
+        ForkJoinPool pool = new ForkJoinPool(count);
+        List<ForkJoinTask<Segment>> tasks = new ArrayList<>();
+        for (Segment segment : segments) {
+            tasks.add(pool.submit(() -> process(segment)));
+        }
+        try {
+            for (ForkJoinTask<Segment> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            throw new IOException("The processing of the segments has been interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        if (settings.isIlluminationCheck())
+            illuminationIntervals = mergeIntervals(segments);
+        return replay(stitch(segments), segments.get(count - 1).lastFrame);
+    }
+
+    /**
+     * This method returns the intervals of the frames of the whole video flagged by the illumination check.
+     *
+     * @return the flagged intervals in the order of the video, or null if the check is disabled or the video has not been processed.
+     */
+    public List<IlluminationMonitor.Interval> getIlluminationIntervals() {
+        return illuminationIntervals;
+    }
+
+    /**
+     * This method processes a single segment in the current thread.
+     * It seeks to the first frame of the warm-up and runs the frames through a FramePipeline,
+     * recording every counted vehicle with the frames of its counting and of its speed measurement.
+     *
+     * @param segment the segment to be processed.
+     * @return the processed segment.
+     * @throws IOException if the video cannot be opened.
+     */
+    private Segment process(Segment segment) throws IOException {
+        VideoCapture capture = new VideoCapture(settings.getVideoPath());
+        if (!capture.isOpened())
+            throw new IOException("Cannot open the video: " + settings.getVideoPath());
+
+        int firstFrame = Math.max(0, segment.start - settings.getHistory());
+        if (firstFrame > 0) {
+            capture.set(Videoio.CAP_PROP_POS_FRAMES, firstFrame);
+        }
+
+        VideoProcessor videoProcessor = settings.createVideoProcessor();
+        // The saved model is the background at the start of the video, and the model at the end is saved by the last segment
+        if (segment.start == 0)
+            settings.restoreModel(videoProcessor);
+        TrafficCounter counter = new TrafficCounter(videoFPS, settings.getDistance());
+        counter.setThresholds(settings.getAreaThreshold(), settings.getVehicleSizeThreshold());
+        counter.setLines(settings.getLineCount1(), settings.getLineCount2(), settings.getLineSpeed1(), settings.getLineSpeed2());
+        // The frames of the segments are neither displayed nor saved
+        counter.setDrawing(false);
+        counter.setTracker(settings.createTracker());
+        counter.setFrame(firstFrame);
+
+        // Record the vehicles, the frame of the counter is the frame being processed
+        Map<Integer, VehicleEvent> waiting = new HashMap<>();
+        counter.setListener(new TrafficListener() {
+            @Override
+            public void vehicleCounted(int number, String vehicleType, int amount) {
+                VehicleEvent event = new VehicleEvent(number, vehicleType, counter.getFrameCount());
+                segment.events.add(event);
+                waiting.put(number, event);
+            }
+
+            @Override
+            public void speedMeasured(int number, String vehicleType, double speed, double averageSpeed) {
+                VehicleEvent event = waiting.remove(number);
+                event.speedFrame = counter.getFrameCount();
+                event.speed = speed;
+            }
+
+            @Override
+            public void vehicleDiscarded(int number, String vehicleType, int amount) {
+                waiting.remove(number).discardFrame = counter.getFrameCount();
+            }
+        });
+
+        FramePipeline pipeline = new FramePipeline(capture, videoProcessor, null,
+                frame -> {
+                    counter.processFrame(frame);
+                    videoProcessor.setOccupiedRegions(counter.getVehicleRects(frame.region));
+                },
+                null,
+                () -> {
+                });
+        pipeline.setRegionOfInterest(settings.createRegionOfInterest());
+        pipeline.setMaskFilter(settings.getMaskFilter().create());
+        pipeline.setGrayscale(settings.isGrayscale());
+        pipeline.setMaskRefiner(settings.createMaskRefiner());
+        IlluminationMonitor illuminationMonitor = settings.createIlluminationMonitor();
+        pipeline.setIlluminationMonitor(illuminationMonitor);
+        if (segment.end != Integer.MAX_VALUE) {
+            // Run after the end until the counted vehicles are measured, and over the window checked for duplicates
+            int tail = Math.max(counter.getMaxFPS() + 2, boundaryWindow + BOUNDARY_TOLERANCE);
+            pipeline.setFrameLimit(Math.min(totalFrames, segment.end + tail) - firstFrame);
+        }
+        pipeline.runSequentially();
+        capture.release();
+        if (illuminationMonitor != null) {
+            clipIntervals(segment, illuminationMonitor.getIntervals(), firstFrame);
+            illuminationMonitor.release();
+        }
+        if (segment.end == Integer.MAX_VALUE)
+            settings.saveModel(videoProcessor);
+        pipeline.release();
+        videoProcessor.release();
+        counter.release();
+
+        segment.lastFrame = counter.getFrameCount();
+        return segment;
+    }
+
+    /**
+     * This method keeps the flagged intervals of a segment which fall within its own frames.
+     * The warm-up and the frames after the end belong to the neighbouring segments, which flag them on their own.
+     * The frames of the monitor are counted from the first frame of the warm-up, as the frames of the counter.
+     *
+     * @param segment the segment.
+     * @param intervals the intervals flagged by the monitor of the segment.
+     * @param firstFrame the first frame of the warm-up.
+     */
+    private static void clipIntervals(Segment segment, List<IlluminationMonitor.Interval> intervals, int firstFrame) {
+        for (IlluminationMonitor.Interval interval : intervals) {
+            int first = Math.max(segment.start, firstFrame + interval.firstFrame);
+            int last = (int) Math.min(segment.end - 1L, (long) firstFrame + interval.lastFrame);
+            if (first > last)
+                continue;
+            IlluminationMonitor.Interval clipped = new IlluminationMonitor.Interval(first, interval.peakRatio);
+            clipped.lastFrame = last;
+            segment.intervals.add(clipped);
+        }
+    }
+
+    /**
+     * This method merges the flagged intervals of all the segments in the order of the video.
+     * An interval which reaches the end of a segment is joined with the interval at the start of the next segment.
+     *
+     * @param segments the processed segments, in the order of the video.
+     * @return the flagged intervals of the whole video.
+     */
+    static List<IlluminationMonitor.Interval> mergeIntervals(List<Segment> segments) {
+        List<IlluminationMonitor.Interval> merged = new ArrayList<>();
+        for (Segment segment : segments) {
+            for (IlluminationMonitor.Interval interval : segment.intervals) {
+                IlluminationMonitor.Interval last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && interval.firstFrame <= last.lastFrame + 1) {
+                    last.lastFrame = Math.max(last.lastFrame, interval.lastFrame);
+                    last.peakRatio = Math.max(last.peakRatio, interval.peakRatio);
+                } else {
+                    merged.add(interval);
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * This method stitches the vehicles of all the segments together into one timeline.
+     * Every segment keeps the vehicles counted between its first and its last frame.
+     * The vehicles counted by a segment shortly after its first frame, or up to BOUNDARY_TOLERANCE frames before it,
+     * are kept only if they are matched one to one to the vehicles counted by the previous segment after its end,
+     * so a vehicle counted by both segments on either side of the boundary is kept exactly once.
+     *
+     * @param segments the processed segments, in the order of the video.
+     * @return the vehicles of the whole video, ordered by the frame of the counting.
+     */
+    List<VehicleEvent> stitch(List<Segment> segments) {
+        List<VehicleEvent> timeline = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            Segment previous = i > 0 ? segments.get(i - 1) : null;
+            int first = previous == null ? segment.start : segment.start - BOUNDARY_TOLERANCE;
+            for (VehicleEvent event : segment.events) {
+                if (event.countFrame < first || event.countFrame >= segment.end)
+                    continue;
+                if (previous != null && event.countFrame < segment.start + boundaryWindow && !previous.matchOverlapCount(event.countFrame))
+                    continue;
+                timeline.add(event);
+            }
+        }
+        // A vehicle matched just before the boundary may follow the last vehicles of the previous segment
+        timeline.sort(Comparator.comparingInt(event -> event.countFrame));
+        return timeline;
+    }
+
+    /**
+     * This method replays the stitched vehicles into a new traffic counter, which records them in the results.
+     * The vehicles are numbered again in the order of the counting, and the countings, the speed measurements
+     * and the discards are replayed in the order of their frames, as if the video had been processed in one piece.
+     *
+     * @param timeline the stitched vehicles, ordered by the frame of the counting.
+     * @param lastFrame the frame after the last frame of the video.
+     * @return the traffic counter holding the totals and the results of the whole video.
+     */
+    TrafficCounter replay(List<VehicleEvent> timeline, int lastFrame) {
+        TrafficCounter result = new TrafficCounter(videoFPS, settings.getDistance());
+
+        Map<VehicleEvent, Integer> numbers = new HashMap<>();
+        List<VehicleEvent> outcomes = new ArrayList<>();
+        for (VehicleEvent event : timeline) {
+            numbers.put(event, numbers.size() + 1);
+            if (event.speedFrame >= 0 || event.discardFrame >= 0)
+                outcomes.add(event);
+        }
+        outcomes.sort(Comparator.comparingInt(event -> event.speedFrame >= 0 ? event.speedFrame : event.discardFrame));
+
+        int next = 0;
+        for (VehicleEvent outcome : outcomes) {
+            int frame = outcome.speedFrame >= 0 ? outcome.speedFrame : outcome.discardFrame;
+            // In the same frame, the vehicles are counted before the speed is measured
+            while (next < timeline.size() && timeline.get(next).countFrame <= frame) {
+                VehicleEvent event = timeline.get(next++);
+                result.setFrame(event.countFrame);
+                result.addVehicle(numbers.get(event), event.vehicleType);
+            }
+            if (outcome.speedFrame >= 0)
+                result.addSpeed(numbers.get(outcome), outcome.vehicleType, outcome.speed, frame / videoFPS);
+            else
+                result.discardVehicle(numbers.get(outcome), outcome.vehicleType);
+        }
+        while (next < timeline.size()) {
+            VehicleEvent event = timeline.get(next++);
+            result.setFrame(event.countFrame);
+            result.addVehicle(numbers.get(event), event.vehicleType);
+        }
+
+        result.setFrame(lastFrame);
+        return result;
+    }
+}
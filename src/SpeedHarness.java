@@ -0,0 +1,190 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Point; // OpenCV library for handling points in 2D space
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+import java.util.List; // Java Util library for handling lists
+import java.util.Random; // Java Util library for generating random numbers
+
+/**
+ * The SpeedHarness class measures the precision of the speed measurement against a synthetic ground truth.
+ * Vehicles of known speeds drive one after another across the counting line and the speed line of a synthetic road,
+ * starting at random moments between the frames, and their blobs are fed to the TrafficCounter as if they had been
+ * found by the MaskRefiner. The measured speeds of every tracking mode, with every step between the processed frames,
+ * are compared with the true speeds, and the errors are printed.
+ *
+ * It takes "--vehicles=n" for the number of vehicles (default 200), "--seed=n" for the random generator (default 1),
+ * "--fps=n" for the frame rate of the synthetic video (default 25) and "--steps=1,2,3" for the steps (default 1,2,3).
+ */
+public class SpeedHarness {
+    // Static initializer block to load the OpenCV library
+    static {
+        Application.loadNativeLibrary();
+    }
+
+    // The distance between the lines in meters, and in pixels of the synthetic road
+    private static final double DISTANCE = 6.0;
+    private static final double DISTANCE_PIXELS = 50;
+    // The lines of the synthetic road, slightly slanted like the lines drawn on a real road
+    private static final Point COUNTING_LINE_1 = new Point(100, 250);
+    private static final Point COUNTING_LINE_2 = new Point(540, 252);
+    private static final Point SPEED_LINE_1 = new Point(100, 200);
+    private static final Point SPEED_LINE_2 = new Point(540, 202);
+    // The size of the blob of a vehicle and the vertical range in which it is visible
+    private static final int VEHICLE_WIDTH = 80;
+    private static final int VEHICLE_HEIGHT = 40;
+    private static final double START_Y = 340;
+    private static final double END_Y = 20;
+    // The range of the true speeds in km/h
+    private static final double MIN_SPEED = 40;
+    private static final double MAX_SPEED = 130;
+
+    /**
+     * The main method of the harness.
+     *
+     * @param args the command-line arguments.
+     */
+    public static void main(String[] args) {
+        int vehicles = 200;
+        long seed = 1;
+        double videoFPS = 25;
+        List<Integer> steps = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--vehicles="))
+                vehicles = Integer.parseInt(arg.substring("--vehicles=".length()));
+            else if (arg.startsWith("--seed="))
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            else if (arg.startsWith("--fps="))
+                videoFPS = Double.parseDouble(arg.substring("--fps=".length()));
+            else if (arg.startsWith("--steps=")) {
+                for (String step : arg.substring("--steps=".length()).split(",")) {
+                    steps.add(Integer.parseInt(step.trim()));
+                }
+            } else
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+        if (steps.isEmpty()) {
+            steps.add(1);
+            steps.add(2);
+            steps.add(3);
+        }
+
+        // The true speeds and the moments, in frames, at which the vehicles enter the road
+        Random random = new Random(seed);
+        double[] speeds = new double[vehicles];
+        double[] starts = new double[vehicles];
+        double start = 0;
+        for (int i = 0; i < vehicles; i++) {
+            speeds[i] = MIN_SPEED + random.nextDouble() * (MAX_SPEED - MIN_SPEED);
+            starts[i] = start + random.nextDouble();
+            // The next vehicle enters when this one has left the road
+            start = Math.ceil(starts[i] + (START_Y - END_Y) / pixelsPerFrame(speeds[i], videoFPS)) + 5;
+        }
+
+        System.out.printf("%-8s %5s %9s %9s %12s %12s %10s%n", "Mode", "step", "counted", "measured", "mean error", "max error", "bias");
+        for (TrackingMode mode : TrackingMode.values()) {
+            for (int step : steps) {
+                run(mode, step, videoFPS, speeds, starts, (int) start);
+            }
+        }
+    }
+
+    /**
+     * This method drives the synthetic vehicles through a TrafficCounter with the given tracking mode and prints the errors.
+     *
+     * @param mode the tracking mode.
+     * @param step the number of frames from one processed frame to the next one.
+     * @param videoFPS the frame rate of the synthetic video.
+     * @param speeds the true speeds of the vehicles in km/h.
+     * @param starts the moments at which the vehicles enter the road, in frames.
+     * @param frames the number of frames of the synthetic video.
+     */
+    private static void run(TrackingMode mode, int step, double videoFPS, double[] speeds, double[] starts, int frames) {
+        double[] measured = new double[speeds.length + 1];
+        int[] counts = new int[1];
+        TrafficCounter counter = new TrafficCounter(videoFPS, DISTANCE);
+        counter.setThresholds(1000, 20000);
+        counter.setLines(COUNTING_LINE_1, COUNTING_LINE_2, SPEED_LINE_1, SPEED_LINE_2);
+        counter.setDrawing(false);
+        counter.setTracker(mode.create(FramePipeline.PROCESSING_SIZE));
+        counter.setListener(new TrafficListener() {
+            @Override
+            public void vehicleCounted(int number, String vehicleType, int amount) {
+                counts[0]++;
+            }
+
+            @Override
+            public void speedMeasured(int number, String vehicleType, double speed, double averageSpeed) {
+                if (number < measured.length)
+                    measured[number] = speed;
+            }
+
+            @Override
+            public void vehicleDiscarded(int number, String vehicleType, int amount) {
+            }
+        });
+
+        Frame frame = new Frame();
+        frame.isRefined = true;
+        int vehicle = 0;
+        for (int index = 0; index < frames; index += step) {
+            frame.index = index;
+            frame.step = step;
+            frame.timestamp = index * 1000 / videoFPS;
+            frame.blobs.clear();
+            while (vehicle < speeds.length && centroidY(vehicle, index, speeds, starts, videoFPS) < END_Y)
+                vehicle++;
+            if (vehicle < speeds.length && index >= starts[vehicle]) {
+                double y = centroidY(vehicle, index, speeds, starts, videoFPS);
+                Rect bounds = new Rect(320 - VEHICLE_WIDTH / 2, (int) Math.round(y - VEHICLE_HEIGHT / 2.0), VEHICLE_WIDTH, VEHICLE_HEIGHT);
+                frame.blobs.add(new Blob(bounds, VEHICLE_WIDTH * VEHICLE_HEIGHT, 320, y));
+            }
+            counter.processFrame(frame);
+        }
+        frame.release();
+        counter.release();
+
+        // The vehicles are counted in the order in which they drive, so the number of a vehicle is its index plus 1
+        int count = 0;
+        double sumError = 0;
+        double sumSignedError = 0;
+        double maxError = 0;
+        for (int i = 0; i < speeds.length; i++) {
+            if (measured[i + 1] <= 0)
+                continue;
+            double error = measured[i + 1] - speeds[i];
+            count++;
+            sumError += Math.abs(error);
+            sumSignedError += error;
+            maxError = Math.max(maxError, Math.abs(error));
+        }
+        System.out.printf("%-8s %5d %9d %9d %9.2f km/h %7.2f km/h %10.2f%n", mode.name(), step, counts[0], count,
+                count > 0 ? sumError / count : 0, maxError, count > 0 ? sumSignedError / count : 0);
+    }
+
+    /**
+     * This method returns the true vertical position of the centroid of a vehicle in a frame.
+     *
+     * @param vehicle the index of the vehicle.
+     * @param index the index of the frame.
+     * @param speeds the true speeds of the vehicles in km/h.
+     * @param starts the moments at which the vehicles enter the road, in frames.
+     * @param videoFPS the frame rate of the synthetic video.
+     * @return the vertical position of the centroid, decreasing as the vehicle drives.
+     */
+    private static double centroidY(int vehicle, int index, double[] speeds, double[] starts, double videoFPS) {
+        return START_Y - (index - starts[vehicle]) * pixelsPerFrame(speeds[vehicle], videoFPS);
+    }
+
+    /**
+     * This method converts a speed in km/h to a distance in pixels per frame on the synthetic road.
+     *
+     * @param speed the speed in km/h.
+     * @param videoFPS the frame rate of the synthetic video.
+     * @return the distance in pixels per frame.
+     */
+    private static double pixelsPerFrame(double speed, double videoFPS) {
+        return speed / 3.6 * DISTANCE_PIXELS / DISTANCE / videoFPS;
+    }
+}
@@ -0,0 +1,83 @@
+// Importing the necessary libraries
+
+import java.util.Arrays; // Java Util library for handling arrays
+import java.util.List; // Java Util library for handling lists
+import java.util.Locale; // Java Util library for formatting numbers
+
+/**
+ * The StitchHarness class checks the stitching of the segments of the SegmentedRunner on synthetic boundaries.
+ * Every case puts the vehicles counted by two neighbouring segments around their boundary, as the segments would
+ * count a vehicle straddling it a few frames apart, and checks that the stitched and replayed results hold every
+ * vehicle exactly once: no vehicle counted twice and no vehicle lost.
+ * No video is opened, so the harness runs without the OpenCV library; it exits with 1 if a case fails.
+ */
+public class StitchHarness {
+
+    // The frame rate of the synthetic video, which sets the window after the boundary checked for duplicates
+    private static final double VIDEO_FPS = 25;
+    // The boundary between the two segments
+    private static final int BOUNDARY = 1000;
+
+    /**
+     * The main method of the harness.
+     *
+     * @param args the command-line arguments, which are not used.
+     */
+    public static void main(String[] args) {
+        int failures = 0;
+        // The frames in which the previous and the next segment count vehicles, and the number of the real vehicles
+        failures += check("counted before and after the boundary", new int[]{999}, new int[]{1001}, 1);
+        failures += check("counted after the boundary by both", new int[]{1001}, new int[]{1001}, 1);
+        failures += check("counted after and before the boundary", new int[]{1001}, new int[]{999}, 1);
+        failures += check("two vehicles straddling the boundary", new int[]{999, 1001}, new int[]{1000, 1002}, 2);
+        failures += check("vehicles away from the boundary", new int[]{500, 999, 1010}, new int[]{1001, 1010, 1500}, 4);
+        failures += check("no vehicle near the boundary", new int[]{500}, new int[]{1500}, 2);
+
+        System.out.println(failures == 0 ? "All the cases passed" : failures + " cases failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    /**
+     * This method stitches and replays one case and prints whether every vehicle has been kept exactly once.
+     * Every vehicle is measured 10 frames after its counting, so the measurements are checked as well.
+     *
+     * @param name the name of the case.
+     * @param previousFrames the frames in which the previous segment counts the vehicles, including those after its end.
+     * @param nextFrames the frames in which the next segment counts the vehicles, including those of its warm-up.
+     * @param expected the number of the real vehicles.
+     * @return 0 if the case has passed, 1 otherwise.
+     */
+    private static int check(String name, int[] previousFrames, int[] nextFrames, int expected) {
+        SegmentedRunner runner = new SegmentedRunner(new DetectorSettings(), VIDEO_FPS, 2 * BOUNDARY);
+        SegmentedRunner.Segment previous = new SegmentedRunner.Segment(0, BOUNDARY);
+        SegmentedRunner.Segment next = new SegmentedRunner.Segment(BOUNDARY, Integer.MAX_VALUE);
+        addEvents(previous, previousFrames);
+        addEvents(next, nextFrames);
+
+        List<VehicleEvent> timeline = runner.stitch(Arrays.asList(previous, next));
+        TrafficCounter counter = runner.replay(timeline, 2 * BOUNDARY);
+        int counted = counter.getEvents().size();
+        int measured = counter.getMeasuredCars();
+
+        boolean isPassed = counted == expected && measured == expected;
+        System.out.printf(Locale.ROOT, "%-40s counted %d, measured %d, expected %d: %s%n",
+                name, counted, measured, expected, isPassed ? "passed" : "FAILED");
+        return isPassed ? 0 : 1;
+    }
+
+    /**
+     * This method adds the vehicles counted by a segment, as cars measured 10 frames after their counting.
+     *
+     * @param segment the segment.
+     * @param frames the frames in which the segment counts the vehicles.
+     */
+    private static void addEvents(SegmentedRunner.Segment segment, int[] frames) {
+        for (int frame : frames) {
+            VehicleEvent event = new VehicleEvent(segment.events.size() + 1, "Car", frame);
+            event.speedFrame = frame + 10;
+            event.speed = 50;
+            segment.events.add(event);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+
+/**
+ * The Track class holds one vehicle followed by the VehicleTracker across the frames.
+ * Every track has a stable ID, its last position and velocity, and its own counting state:
+ * whether and when it has crossed the counting line, its type, and whether its speed has been measured.
+ * The positions are in the coordinates of the whole frame, the frames are counted in frames of the video.
+ */
+public class Track {
+
+    // The ID of the track, unique within the tracker
+    public final int id;
+
+    // The bounding rectangle, the area and the centroid of the vehicle in the last frame in which it was found
+    public Rect bounds;
+    public double area;
+    public double centroidX;
+    public double centroidY;
+    // The centroid of the vehicle in the frame in which it was found before
+    public double previousCentroidX;
+    public double previousCentroidY;
+
+    // The velocity of the centroid, in pixels per frame of the video
+    public double velocityX;
+    public double velocityY;
+
+    // The index of the last frame in which the vehicle was found, and of the frame in which it was found before
+    public int lastFrame;
+    public int previousFrame;
+    // The timestamps of these two frames in milliseconds
+    public double lastTime;
+    public double previousTime;
+    // The number of frames since the vehicle was last found, 0 if it has been found in the current frame
+    public int missedFrames;
+    // The number of frames in which the vehicle has been found
+    public int hits = 1;
+
+    // The number of the counted vehicle, or 0 if the track has not crossed the counting line yet
+    public int number;
+    // The type of the counted vehicle ("Car", "Van" or "Lorry")
+    public String vehicleType;
+    // The index of the frame in which the track has reached the counting line, and the moment at which its centroid
+    // has crossed the line, interpolated between two frames, in milliseconds, or NaN while the centroid has not crossed it yet
+    public int countFrame;
+    public double countTime = Double.NaN;
+    // Whether the speed of the vehicle has been measured
+    public boolean isMeasured;
+    // Whether the vehicle has been discarded because it has not reached the speed line in time
+    public boolean isDiscarded;
+
+    // The predicted centroid of the vehicle in the current frame, and whether the track has been matched in it, used by the tracker
+    double predictedX;
+    double predictedY;
+    boolean isMatched;
+    // The last detection of the current frame for which the track has been scored, so it is scored once per detection
+    int scoredDetection;
+
+    /**
+     * Constructor for the Track class.
+     *
+     * @param id the ID of the track.
+     * @param bounds the bounding rectangle of the vehicle.
+     * @param area the area of the vehicle.
+     * @param frame the index of the frame in which the vehicle has been found.
+     * @param time the timestamp of the frame in milliseconds.
+     */
+    public Track(int id, Rect bounds, double area, int frame, double time) {
+        this.id = id;
+        this.bounds = bounds;
+        this.area = area;
+        this.centroidX = bounds.x + bounds.width / 2.0;
+        this.centroidY = bounds.y + bounds.height / 2.0;
+        this.previousCentroidX = centroidX;
+        this.previousCentroidY = centroidY;
+        this.lastFrame = frame;
+        this.previousFrame = frame;
+        this.lastTime = time;
+        this.previousTime = time;
+    }
+
+    /**
+     * This method records the vehicle found again in a frame, keeping its previous position and frame.
+     *
+     * @param rect the bounding rectangle of the vehicle.
+     * @param area the area of the vehicle.
+     * @param x the horizontal coordinate of the centroid, measured or estimated.
+     * @param y the vertical coordinate of the centroid, measured or estimated.
+     * @param frame the index of the frame.
+     * @param time the timestamp of the frame in milliseconds.
+     */
+    void record(Rect rect, double area, double x, double y, int frame, double time) {
+        previousCentroidX = centroidX;
+        previousCentroidY = centroidY;
+        previousFrame = lastFrame;
+        previousTime = lastTime;
+        centroidX = x;
+        centroidY = y;
+        bounds = rect;
+        this.area = area;
+        lastFrame = frame;
+        lastTime = time;
+        missedFrames = 0;
+        hits++;
+    }
+
+    /**
+     * This method checks whether the vehicle has crossed the counting line.
+     *
+     * @return true if the vehicle has been counted, false otherwise.
+     */
+    public boolean isCounted() {
+        return number > 0;
+    }
+
+    /**
+     * This method checks whether the vehicle has been counted and is still waiting for its speed to be measured.
+     *
+     * @return true if the vehicle is between the lines, false otherwise.
+     */
+    public boolean isWaitingForSpeed() {
+        return number > 0 && !isMeasured && !isDiscarded;
+    }
+}
@@ -0,0 +1,57 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Size; // OpenCV library for handling sizes
+
+import java.util.function.Function; // Java Util library for functions with one argument
+
+/**
+ * The TrackingMode enum is the registry of the ways in which the vehicles are followed between the counting line and the speed line.
+ * LINES is the original mode, in which the crossings of the lines are kept as flags and the speeds are assigned in the order of the counting.
+ * The other modes follow every vehicle with its own track, so vehicles crossing the lines at the same time are counted
+ * and measured separately.
+ */
+public enum TrackingMode {
+
+    LINES("crossing flags of the lines", null),
+    TRACKS("tracks matched by overlap and centroid distance", VehicleTracker::new),
+    KALMAN("tracks predicted by a constant-velocity Kalman filter", KalmanVehicleTracker::new);
+
+    // The short description of the mode
+    private final String description;
+    // The constructor of the tracker for the size of the frames, or null if the vehicles are not tracked
+    private final Function<Size, VehicleTracker> factory;
+
+    TrackingMode(String description, Function<Size, VehicleTracker> factory) {
+        this.description = description;
+        this.factory = factory;
+    }
+
+    /**
+     * This method creates a new tracker of the mode.
+     *
+     * @param frameSize the size of the frames in which the vehicles are detected.
+     * @return the new tracker, or null if the vehicles are not tracked in this mode.
+     */
+    public VehicleTracker create(Size frameSize) {
+        return factory == null ? null : factory.apply(frameSize);
+    }
+
+    /**
+     * This method returns the mode with the given name, ignoring the case.
+     *
+     * @param name the name of the mode.
+     * @return the mode.
+     * @throws IllegalArgumentException if there is no mode with the name.
+     */
+    public static TrackingMode fromName(String name) {
+        for (TrackingMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name.trim()))
+                return mode;
+        }
+        throw new IllegalArgumentException("Invalid tracking mode: " + name);
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,685 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Mat; // OpenCV library for handling matrices
+import org.opencv.core.Point; // OpenCV library for handling points in 2D space
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+import java.util.Collections; // Java Util library for handling collections
+import java.util.List; // Java Util library for handling lists
+
+/**
+ * The TrafficCounter class is responsible for counting and classifying the vehicles of one video and measuring their speed.
+ * It keeps the state of the counting between the frames, records the results in a VehicleEventStore,
+ * which is written to a file by a ResultsWriter after the video has been processed, and notifies a TrafficListener about every counted vehicle and every measured speed.
+ * It does not depend on Swing, so it is used both by the GUI and by the headless runner.
+ */
+public class TrafficCounter {
+
+    // The results of the counting, one row for every counted vehicle
+    private final VehicleEventStore events = new VehicleEventStore();
+    // The listener notified about the counted vehicles, may be null
+    private TrafficListener listener;
+
+    // Settings for the detection process
+    private int areaThreshold; // The area threshold for detecting vehicles
+    private int vehicleSizeThreshold; // The vehicle size threshold for classifying the vehicles
+
+    // The points for the counting line
+    private Point lineCount1;
+    private Point lineCount2;
+    // The points for the speed line
+    private Point lineSpeed1;
+    private Point lineSpeed2;
+
+    // Whether the contours and the lines are drawn on the frames, which is needed only when the frames are displayed or saved
+    private boolean isDrawing = true;
+
+    // The detector of the vehicles, which keeps the crossing flags between the frames and reuses its buffers
+    private CountVehicles countVehicles;
+
+    // The tracker following every vehicle between the lines, or null if the crossings are kept as flags by CountVehicles
+    private VehicleTracker tracker;
+
+    // The distance in pixels from the counting line within which a vehicle is approaching it, as the padding of the band
+    private static final int APPROACH_MARGIN = RegionOfInterest.DEFAULT_PADDING;
+
+    // The counter for the vehicles
+    private int counter = 0;
+    // The last time stamp for measuring the speed
+    private int lastTSM = 0;
+    // The vehicles whose speed is not measured yet, in the order of the counting, with the frames in which they were counted
+    private final PendingVehicles pendingVehicles = new PendingVehicles();
+
+    // The distance between the counting line and the speed line
+    private double distanceCS;
+    // The frames per second of the video
+    private double videoFPS;
+    // The maximum number of frames a vehicle may need to get from the counting line to the speed line
+    private int maxFPS;
+    // The current frame of the video
+    private int whichFrame = 0;
+    // The number of frames of the video from the previous processed frame to the current one
+    private int frameStep = 1;
+    // The current time in seconds
+    private double timeInSec = 0;
+    // The timestamp of the current frame in milliseconds, as reported by the video capture when it is known
+    private double frameTime = 0;
+
+    // The counters for the vehicles
+    private int cars = 0; // The counter for cars
+    private int vans = 0; // The counter for vans
+    private int lorries = 0; // The counter for lorries
+
+    // The sums of the speeds of the vehicles
+    private double sumSpeedCar = 0; // The sum of the speeds of cars
+    private double sumSpeedVan = 0; // The sum of the speeds of vans
+    private double sumSpeedLorry = 0; // The sum of the speeds of lorries
+
+    // The divisors for calculating the average speeds of the vehicles
+    private int divisorCar = 1; // The divisor for cars
+    private int divisorVan = 1; // The divisor for vans
+    private int divisorLorry = 1; // The divisor for lorries
+
+    /**
+     * Constructor for the TrafficCounter class.
+     *
+     * @param videoFPS the frames per second of the video.
+     * @param distanceCS the distance between the counting line and the speed line in meters.
+     */
+    public TrafficCounter(double videoFPS, double distanceCS) {
+        this.videoFPS = videoFPS;
+        setDistance(distanceCS);
+    }
+
+    /**
+     * This method sets the listener notified about the counted vehicles.
+     *
+     * @param listener the listener, or null to remove it.
+     */
+    public void setListener(TrafficListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * This method sets the thresholds used for detecting and classifying the vehicles.
+     *
+     * @param areaThreshold the minimum area of a contour to be considered a vehicle.
+     * @param vehicleSizeThreshold the size threshold used for classifying the vehicles.
+     */
+    public void setThresholds(int areaThreshold, int vehicleSizeThreshold) {
+        this.areaThreshold = areaThreshold;
+        this.vehicleSizeThreshold = vehicleSizeThreshold;
+    }
+
+    /**
+     * This method sets whether the contours and the lines are drawn on the frames of the pipeline.
+     * When nothing is drawn, the colour image of a frame processed in grayscale is never produced.
+     *
+     * @param isDrawing true to draw on the frames, false if the frames are neither displayed nor saved.
+     */
+    public void setDrawing(boolean isDrawing) {
+        this.isDrawing = isDrawing;
+    }
+
+    /**
+     * This method sets the tracker which follows every vehicle with its own track.
+     * With a tracker, a vehicle is counted when its track crosses the counting line, and its speed is measured
+     * when the same track crosses the speed line, so vehicles crossing the lines at the same time are counted and measured separately.
+     * Without a tracker, the crossings are kept as flags and the speeds are assigned in the order of the counting.
+     *
+     * @param tracker the tracker, or null to keep the crossings as flags.
+     */
+    public void setTracker(VehicleTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    /**
+     * This method sets the counting line and the speed line.
+     *
+     * @param lineCount1 the first point of the counting line.
+     * @param lineCount2 the second point of the counting line.
+     * @param lineSpeed1 the first point of the speed line.
+     * @param lineSpeed2 the second point of the speed line.
+     */
+    public void setLines(Point lineCount1, Point lineCount2, Point lineSpeed1, Point lineSpeed2) {
+        this.lineCount1 = lineCount1;
+        this.lineCount2 = lineCount2;
+        this.lineSpeed1 = lineSpeed1;
+        this.lineSpeed2 = lineSpeed2;
+    }
+
+    /**
+     * This method sets the distance between the counting line and the speed line.
+     * It also calculates the maximum number of frames that can be waited for a vehicle to cross this distance.
+     *
+     * @param distanceCS the distance between the lines in meters.
+     */
+    public void setDistance(double distanceCS) {
+        this.distanceCS = distanceCS;
+        // Calculate the time it takes for a vehicle to cross the distance between the lines
+        double time = (distanceCS / 3);
+        // Calculate the maximum number of frames that can be waited for a vehicle to cross the distance
+        maxFPS = (int) (videoFPS * time);
+    }
+
+    /**
+     * This method sets the current frame of the video and the current video time.
+     * It is used when the counting starts in the middle of the video, or when the results of a video are replayed.
+     *
+     * @param frame the index of the current frame, starting from 0.
+     */
+    public void setFrame(int frame) {
+        whichFrame = frame;
+        timeInSec = whichFrame / videoFPS;
+    }
+
+    /**
+     * This method returns the maximum number of frames a vehicle may need to get from the counting line to the speed line.
+     *
+     * @return the maximum number of frames.
+     */
+    public int getMaxFPS() {
+        return maxFPS;
+    }
+
+    /**
+     * This method processes one frame of the video.
+     * It finds the vehicles in the foreground mask, draws them on the image, counts them and measures their speed.
+     * Finally, it advances the current frame and the current video time.
+     *
+     * @param image the frame on which the contours and the lines are drawn.
+     * @param foreground the foreground mask of the frame.
+     */
+    public void processFrame(Mat image, Mat foreground) {
+        processFrame(image, foreground, 1);
+    }
+
+    /**
+     * This method processes one frame of the video, which follows the previous processed frame after the given number of frames
+     * because the frames in between have been skipped.
+     * The frames waited by the vehicles between the lines, and therefore their speed, and the current frame
+     * are advanced by the whole step, so they are counted in frames of the video and not in processed frames.
+     *
+     * @param image the frame on which the contours and the lines are drawn.
+     * @param foreground the foreground mask of the frame.
+     * @param step the number of frames from the previous processed frame to this one.
+     */
+    public void processFrame(Mat image, Mat foreground, int step) {
+        frameTime = whichFrame * 1000 / videoFPS;
+        processFrame(image, foreground, step, null, null);
+    }
+
+    /**
+     * This method processes one frame of the pipeline, with its step, its timestamp, the region of its foreground mask
+     * and the counting thresholds of its snapshot, if the frame carries one.
+     * A frame flagged as an illumination change is skipped, without searching its contours,
+     * and the blobs of a refined frame are used instead of its contours.
+     *
+     * @param frame the frame to be processed.
+     */
+    public void processFrame(Frame frame) {
+        if (frame.config != null)
+            setThresholds(frame.config.getAreaThreshold(), frame.config.getVehicleSizeThreshold());
+        Mat image = isDrawing ? frame.colourImage() : null;
+        frameTime = frame.timestamp > 0 ? frame.timestamp : whichFrame * 1000 / videoFPS;
+        if (frame.isIlluminationChange)
+            skipFrame(image, frame.step);
+        else
+            processFrame(image, frame.foreground, frame.step, frame.region, frame.isRefined ? frame.blobs : null);
+    }
+
+    /**
+     * This method skips one frame of the video in which the light of the whole scene has changed.
+     * No contour is searched and no vehicle is counted, only the lines are drawn,
+     * but the vehicles waiting for their speed to be measured wait for the frame as well, and the current frame is advanced.
+     *
+     * @param image the frame on which the lines are drawn, or null if nothing is drawn.
+     * @param step the number of frames from the previous processed frame to this one.
+     */
+    private void skipFrame(Mat image, int step) {
+        frameStep = step;
+        if (countVehicles == null)
+            countVehicles = new CountVehicles(areaThreshold, vehicleSizeThreshold, lineCount1, lineCount2, lineSpeed1, lineSpeed2, false, false);
+        else
+            countVehicles.setLines(lineCount1, lineCount2, lineSpeed1, lineSpeed2);
+        countVehicles.skipFrame(image);
+
+        if (tracker != null)
+            discardLateTracks();
+        else
+            waitForSpeedLine();
+
+        whichFrame += frameStep;
+        timeInSec = whichFrame / videoFPS;
+    }
+
+    /**
+     * This method processes one frame of the video, whose foreground mask may cover only a region of the frame.
+     *
+     * @param image the frame on which the contours and the lines are drawn, or null if nothing is drawn.
+     * @param foreground the foreground mask of the region.
+     * @param step the number of frames from the previous processed frame to this one.
+     * @param region the region of the frame covered by the foreground mask, or null if it covers the whole frame.
+     * @param blobs the blobs of the foreground found by the MaskRefiner, or null if the contours of the foreground are searched.
+     */
+    private void processFrame(Mat image, Mat foreground, int step, Rect region, List<Blob> blobs) {
+        frameStep = step;
+        if (countVehicles == null) {
+            countVehicles = new CountVehicles(areaThreshold, vehicleSizeThreshold, lineCount1, lineCount2, lineSpeed1, lineSpeed2, false, false);
+        } else {
+            countVehicles.setThresholds(areaThreshold, vehicleSizeThreshold);
+            countVehicles.setLines(lineCount1, lineCount2, lineSpeed1, lineSpeed2);
+        }
+        if (blobs != null)
+            countVehicles.drawBlobs(image, blobs);
+        else
+            countVehicles.findAndDrawContours(image, foreground, region);
+
+        if (tracker != null) {
+            countTracks(countVehicles);
+        } else {
+            count(countVehicles);
+            speedMeasure(countVehicles);
+        }
+
+        whichFrame += frameStep;
+        timeInSec = whichFrame / videoFPS;
+    }
+
+    /**
+     * This method returns the bounding rectangles of the vehicles, moved to the coordinates of the region covered by the foreground mask.
+     * Without a tracker, they are the vehicles found in the last processed frame.
+     * With a tracker, they are the vehicles of all the live tracks, including those missed in the last frames,
+     * each covering both its last bounding rectangle and the rectangle moved by its velocity to the next frame,
+     * so the background model does not learn a vehicle which has stopped being detected or is about to move.
+     *
+     * @param region the region of the frame covered by the foreground mask, or null if it covers the whole frame.
+     * @return a new list of the bounding rectangles of the vehicles.
+     */
+    public List<Rect> getVehicleRects(Rect region) {
+        if (countVehicles == null)
+            return Collections.emptyList();
+        int offsetX = region == null ? 0 : region.x;
+        int offsetY = region == null ? 0 : region.y;
+        List<Rect> rects = new ArrayList<>();
+        if (tracker != null) {
+            for (Track track : tracker.getTracks()) {
+                Rect bounds = track.bounds;
+                int frames = whichFrame - track.lastFrame;
+                int dx = (int) Math.round(track.velocityX * frames);
+                int dy = (int) Math.round(track.velocityY * frames);
+                int x = bounds.x + Math.min(0, dx);
+                int y = bounds.y + Math.min(0, dy);
+                rects.add(new Rect(x - offsetX, y - offsetY, bounds.width + Math.abs(dx), bounds.height + Math.abs(dy)));
+            }
+            return rects;
+        }
+        for (Rect rect : countVehicles.getGoodRects()) {
+            rects.add(new Rect(rect.x - offsetX, rect.y - offsetY, rect.width, rect.height));
+        }
+        return rects;
+    }
+
+    /**
+     * This method checks whether a vehicle is inside the band between the counting line and the speed line,
+     * that is whether a vehicle is approaching or crossing the counting line or is waiting for its speed to be measured.
+     * A vehicle found within APPROACH_MARGIN pixels of the counting line is approaching it, so the frames stop being skipped
+     * before it reaches the line and it cannot cross the line between two processed frames.
+     * While the band is occupied, no frame may be skipped.
+     *
+     * @return true if a vehicle is inside the band, false otherwise.
+     */
+    public boolean isBandOccupied() {
+        if (countVehicles == null)
+            return false;
+        if (tracker != null) {
+            for (Track track : tracker.getTracks()) {
+                if (track.isWaitingForSpeed() || (track.missedFrames == 0 && countVehicles.isNearCountingLine(track.bounds, APPROACH_MARGIN)))
+                    return true;
+            }
+            return false;
+        }
+        if (!pendingVehicles.isEmpty() || countVehicles.isCrossingLine())
+            return true;
+        for (Rect rect : countVehicles.getGoodRects()) {
+            if (countVehicles.isNearCountingLine(rect, APPROACH_MARGIN))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method counts the vehicles and measures their speed by their tracks.
+     * The vehicles found in the frame are matched to the tracks first.
+     * A track found in the frame is counted when it contains the counting line for the first time.
+     * Its speed is measured from the time elapsed between the moments at which its centroid has crossed the counting line
+     * and the speed line, interpolated by the tracker between the timestamps of the frames before and after every crossing.
+     * A counted track which has not reached the speed line in time, or which has been lost, is discarded.
+     *
+     * @param countVehicles an instance of the CountVehicles class which has found the vehicles of the frame.
+     */
+    private void countTracks(CountVehicles countVehicles) {
+        tracker.update(countVehicles.getGoodRects(), countVehicles.getGoodAreas(), whichFrame, frameTime);
+        for (Track track : tracker.getTracks()) {
+            if (track.missedFrames > 0)
+                continue;
+            if (!track.isCounted() && countVehicles.isOnCountingLine(track.bounds)) {
+                counter++;
+                track.number = counter;
+                track.vehicleType = countVehicles.classify(track.area);
+                track.countFrame = whichFrame;
+                addVehicle(counter, track.vehicleType);
+            }
+            if (track.isWaitingForSpeed()) {
+                if (Double.isNaN(track.countTime)) {
+                    track.countTime = tracker.crossingTime(track, countVehicles.getCountingLine());
+                } else {
+                    double speedTime = tracker.crossingTime(track, countVehicles.getSpeedLine());
+                    if (speedTime > track.countTime) {
+                        track.isMeasured = true;
+                        addSpeed(track.number, track.vehicleType, computeSpeed((speedTime - track.countTime) * videoFPS / 1000), timeInSec);
+                    }
+                }
+            }
+            countVehicles.drawLabel(track.bounds, "#" + track.id);
+        }
+        discardLateTracks();
+    }
+
+    /**
+     * This method discards the counted tracks which have waited for the speed line for more than the maximum number of frames,
+     * and those which have been lost before reaching it.
+     */
+    private void discardLateTracks() {
+        for (Track track : tracker.getTracks()) {
+            if (track.isWaitingForSpeed() && whichFrame - track.countFrame > maxFPS)
+                discardTrack(track);
+        }
+        for (Track track : tracker.getLostTracks()) {
+            if (track.isWaitingForSpeed())
+                discardTrack(track);
+        }
+    }
+
+    /**
+     * This method discards a counted track which will not get its speed measured.
+     *
+     * @param track the track.
+     */
+    private void discardTrack(Track track) {
+        track.isDiscarded = true;
+        discardVehicle(track.number, track.vehicleType);
+    }
+
+    /**
+     * This method is responsible for counting the vehicles in the video.
+     * It increments the counter for each vehicle detected and classifies the vehicle type.
+     * The vehicle type can be a Car, Van, or Lorry.
+     * The method also notifies the listener and records the vehicle in the results.
+     * Whether a vehicle is crossing the line is kept by the CountVehicles instance until the next frame.
+     *
+     * @param countVehicles an instance of the CountVehicles class which is used to detect and classify vehicles.
+     */
+    private void count(CountVehicles countVehicles) {
+        // Check if a new vehicle is detected
+        if (countVehicles.isVehicleToAdd()) {
+            // Increment the total vehicle counter and the last Time-Space Measurement (TSM) counter
+            counter++;
+            lastTSM++;
+            // Classify the type of the new vehicle and keep it with the current frame until its speed is measured
+            String vehicleType = countVehicles.classifier();
+            pendingVehicles.add(lastTSM, vehicleType, whichFrame);
+            addVehicle(counter, vehicleType);
+        }
+    }
+
+    /**
+     * This method measures the speed of vehicles in the video.
+     * It checks if there is a vehicle waiting for its speed to be measured and takes the first (oldest) one.
+     * If a vehicle is ready for speed measurement, the frames the first vehicle needed from the counting line to the speed line
+     * are the frames from the frame in which it was counted to the end of the current frame.
+     * It then calculates the current speed of the vehicle and gets the vehicle type stored when it was counted.
+     * Depending on the vehicle type, it updates the total speed and average speed for that type of vehicle.
+     * It also records the current speed and video time in the results.
+     * If the vehicle is not ready for speed measurement, the vehicles which have waited for more than the maximum FPS are discarded.
+     * Whether a vehicle is crossing the speed line is kept by the CountVehicles instance until the next frame.
+     *
+     * @param countVehicles an instance of the CountVehicles class which is used to detect and classify vehicles.
+     */
+    private void speedMeasure(CountVehicles countVehicles) {
+        // Check if a vehicle is waiting for its speed to be measured
+        if (!pendingVehicles.isEmpty()) {
+            // Check if a vehicle is ready for speed measurement
+            if (countVehicles.isToSpeedMeasure()) {
+                // Calculate the current speed of the first vehicle from the frames it needed, including the current frame
+                double currentSpeed = computeSpeed(whichFrame + frameStep - pendingVehicles.firstStartFrame());
+                // Get the type of the vehicle and write its speed and the video time
+                int firstTSM = pendingVehicles.firstNumber();
+                String vehicleType = pendingVehicles.firstType();
+                pendingVehicles.removeFirst();
+                addSpeed(firstTSM, vehicleType, currentSpeed, timeInSec);
+
+            } else {
+                // If a vehicle is not ready for speed measurement, discard the vehicles which have waited too long
+                waitForSpeedLine();
+            }
+        }
+    }
+
+    /**
+     * This method discards the vehicles which had already waited for more than the maximum FPS before the current frame,
+     * when no vehicle has reached the speed line in the current frame, and decrements the count for their types.
+     * The vehicles are kept in the order of the counting, so only the first vehicles can have waited too long
+     * and the other vehicles are not visited.
+     */
+    private void waitForSpeedLine() {
+        while (!pendingVehicles.isEmpty() && whichFrame - pendingVehicles.firstStartFrame() > maxFPS) {
+            int number = pendingVehicles.firstNumber();
+            String vehicleType = pendingVehicles.firstType();
+            pendingVehicles.removeFirst();
+            discardVehicle(number, vehicleType);
+        }
+    }
+
+    /**
+     * This method adds a counted vehicle to the counter of its type,
+     * records it in the results and notifies the listener.
+     * It is called when a vehicle crosses the counting line, and when the results of a video are replayed.
+     *
+     * @param number the number of the vehicle.
+     * @param vehicleType the type of the vehicle ("Car", "Van" or "Lorry").
+     */
+    public void addVehicle(int number, String vehicleType) {
+        // Update the count of the vehicle type
+        int amount = 0;
+        switch (vehicleType) {
+            case "Car":
+                amount = ++cars;
+                break;
+            case "Van":
+                amount = ++vans;
+                break;
+            case "Lorry":
+                amount = ++lorries;
+                break;
+        }
+        // Record the vehicle with its type and the current frame
+        events.addVehicle(number, VehicleType.fromLabel(vehicleType), whichFrame);
+        if (listener != null)
+            listener.vehicleCounted(number, vehicleType, amount);
+    }
+
+    /**
+     * This method adds the measured speed of a vehicle to the average speed of its type,
+     * records it in the results and notifies the listener.
+     * It is called when a vehicle crosses the speed line, and when the results of a video are replayed.
+     *
+     * @param number the number of the vehicle.
+     * @param vehicleType the type of the vehicle ("Car", "Van" or "Lorry").
+     * @param currentSpeed the speed of the vehicle in km/h.
+     * @param timeInSec the video time of the measurement in seconds.
+     */
+    public void addSpeed(int number, String vehicleType, double currentSpeed, double timeInSec) {
+        // Update the total speed and average speed for the vehicle type
+        double averageSpeed = 0;
+        switch (vehicleType) {
+            case "Car":
+                sumSpeedCar = sumSpeedCar + currentSpeed;
+                averageSpeed = sumSpeedCar / divisorCar;
+                divisorCar++;
+                break;
+            case "Van":
+                sumSpeedVan = sumSpeedVan + currentSpeed;
+                averageSpeed = sumSpeedVan / divisorVan;
+                divisorVan++;
+                break;
+            case "Lorry":
+                sumSpeedLorry = sumSpeedLorry + currentSpeed;
+                averageSpeed = sumSpeedLorry / divisorLorry;
+                divisorLorry++;
+                break;
+        }
+
+        // Record the current speed and video time
+        events.setSpeed(number, currentSpeed, timeInSec);
+        if (listener != null)
+            listener.speedMeasured(number, vehicleType, currentSpeed, averageSpeed);
+    }
+
+    /**
+     * This method removes a counted vehicle, which has not reached the speed line in time, from the counter of its type
+     * and notifies the listener.
+     * The vehicle stays in the results, without a speed.
+     *
+     * @param number the number of the vehicle.
+     * @param vehicleType the type of the vehicle ("Car", "Van" or "Lorry").
+     */
+    public void discardVehicle(int number, String vehicleType) {
+        int amount = 0;
+        switch (vehicleType) {
+            case "Car":
+                amount = --cars;
+                break;
+            case "Van":
+                amount = --vans;
+                break;
+            case "Lorry":
+                amount = --lorries;
+                break;
+        }
+        if (listener != null)
+            listener.vehicleDiscarded(number, vehicleType, amount);
+    }
+
+    /**
+     * This method calculates the speed of a vehicle based on the number of frames it takes to cross a certain distance.
+     * It uses the distance between the counting and speed lines (distanceCS), the video's frames per second (videoFPS), and the speed per frame (speedPFS).
+     *
+     * @param speedPFS the number of frames it takes for a vehicle to cross the distance between the counting and speed lines.
+     * @return the speed of the vehicle in km/h.
+     */
+    public double computeSpeed(int speedPFS) {
+        return computeSpeed((double) speedPFS);
+    }
+
+    /**
+     * This method calculates the speed of a vehicle from a fractional number of frames,
+     * when the moments at which the vehicle has crossed the lines have been estimated between the frames.
+     *
+     * @param speedPFS the number of frames it takes for a vehicle to cross the distance between the counting and speed lines.
+     * @return the speed of the vehicle in km/h.
+     */
+    public double computeSpeed(double speedPFS) {
+        double duration = speedPFS / videoFPS;
+        double v = (distanceCS / duration) * 3.6;
+        return v;
+    }
+
+    /**
+     * This method releases the native memory of the buffers used for detecting the vehicles.
+     * It is called when the video has finished, the totals can still be read afterwards.
+     */
+    public void release() {
+        if (countVehicles != null)
+            countVehicles.release();
+    }
+
+    /**
+     * This method returns the results of the counting, to be written by a ResultsWriter.
+     *
+     * @return the store holding one row for every counted vehicle.
+     */
+    public VehicleEventStore getEvents() {
+        return events;
+    }
+
+    /**
+     * This method returns the video time of the last processed frame in seconds.
+     *
+     * @return the video time in seconds.
+     */
+    public double getTimeInSec() {
+        return timeInSec;
+    }
+
+    /**
+     * This method returns the number of the processed frames.
+     *
+     * @return the number of the processed frames.
+     */
+    public int getFrameCount() {
+        return whichFrame;
+    }
+
+    /**
+     * The getCars, getVans and getLorries methods return the number of counted vehicles of each type.
+     *
+     * @return the number of counted vehicles of the type.
+     */
+    public int getCars() {
+        return cars;
+    }
+
+    public int getVans() {
+        return vans;
+    }
+
+    public int getLorries() {
+        return lorries;
+    }
+
+    /**
+     * The getMeasuredCars, getMeasuredVans and getMeasuredLorries methods return the number of speed measurements of each type of vehicle.
+     *
+     * @return the number of the measured speeds of the type of vehicle.
+     */
+    public int getMeasuredCars() {
+        return divisorCar - 1;
+    }
+
+    public int getMeasuredVans() {
+        return divisorVan - 1;
+    }
+
+    public int getMeasuredLorries() {
+        return divisorLorry - 1;
+    }
+
+    /**
+     * The getAverageSpeedCar, getAverageSpeedVan and getAverageSpeedLorry methods return the average speed of each type of vehicle.
+     *
+     * @return the average speed of the type of vehicle in km/h, or 0 if no speed has been measured yet.
+     */
+    public double getAverageSpeedCar() {
+        return divisorCar > 1 ? sumSpeedCar / (divisorCar - 1) : 0;
+    }
+
+    public double getAverageSpeedVan() {
+        return divisorVan > 1 ? sumSpeedVan / (divisorVan - 1) : 0;
+    }
+
+    public double getAverageSpeedLorry() {
+        return divisorLorry > 1 ? sumSpeedLorry / (divisorLorry - 1) : 0;
+    }
+}
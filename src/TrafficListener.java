@@ -0,0 +1,33 @@
+/**
+ * The TrafficListener interface is notified by the TrafficCounter about the counted vehicles and their speed.
+ * It is used by the GUI to update the fields which display the results.
+ */
+public interface TrafficListener {
+    /**
+     * This method is called when a new vehicle has been counted.
+     *
+     * @param number the number of the vehicle.
+     * @param vehicleType the type of the vehicle ("Car", "Van" or "Lorry").
+     * @param amount the number of the vehicles of this type counted so far.
+     */
+    void vehicleCounted(int number, String vehicleType, int amount);
+
+    /**
+     * This method is called when the speed of a vehicle has been measured.
+     *
+     * @param number the number of the vehicle.
+     * @param vehicleType the type of the vehicle ("Car", "Van" or "Lorry").
+     * @param speed the speed of the vehicle in km/h.
+     * @param averageSpeed the average speed of the vehicles of this type in km/h.
+     */
+    void speedMeasured(int number, String vehicleType, double speed, double averageSpeed);
+
+    /**
+     * This method is called when a counted vehicle has not reached the speed line in time and has been discarded.
+     *
+     * @param number the number of the vehicle.
+     * @param vehicleType the type of the vehicle ("Car", "Van" or "Lorry").
+     * @param amount the number of the vehicles of this type counted so far.
+     */
+    void vehicleDiscarded(int number, String vehicleType, int amount);
+}
@@ -0,0 +1,35 @@
+/**
+ * The VehicleEvent class holds what happened to one counted vehicle while a segment of a video was processed:
+ * the frame in which it crossed the counting line, its type, and either the frame and the speed
+ * of its speed measurement or the frame in which it was discarded.
+ * The events of all the segments are stitched together into one timeline by the SegmentedRunner.
+ */
+public class VehicleEvent {
+
+    // The number of the vehicle in the segment
+    public final int number;
+    // The type of the vehicle ("Car", "Van" or "Lorry")
+    public final String vehicleType;
+    // The frame in which the vehicle crossed the counting line
+    public final int countFrame;
+
+    // The frame in which the speed was measured, or -1 if it was not measured
+    public int speedFrame = -1;
+    // The speed of the vehicle in km/h
+    public double speed;
+    // The frame in which the vehicle was discarded, or -1 if it was not discarded
+    public int discardFrame = -1;
+
+    /**
+     * Constructor for the VehicleEvent class.
+     *
+     * @param number the number of the vehicle in the segment.
+     * @param vehicleType the type of the vehicle.
+     * @param countFrame the frame in which the vehicle crossed the counting line.
+     */
+    public VehicleEvent(int number, String vehicleType, int countFrame) {
+        this.number = number;
+        this.vehicleType = vehicleType;
+        this.countFrame = countFrame;
+    }
+}
@@ -0,0 +1,140 @@
+// Importing the necessary libraries
+
+import java.util.Arrays; // Java Util library for handling arrays
+
+/**
+ * The VehicleEventStore class holds the results of the counting in memory: one row for every counted vehicle,
+ * with its number, the code of its type, the frame in which it was counted, its speed and the video time of the speed measurement.
+ * Every column is a primitive array, so counting a vehicle or measuring its speed does not allocate any object
+ * until the arrays grow, and the detector does not depend on the format in which the results are saved.
+ * The rows are kept in the order of the counting, and the order of the speed measurements is kept as well,
+ * so the results can be written by a ResultsWriter after the video has been processed.
+ */
+public class VehicleEventStore {
+
+    // The initial number of rows of the columns
+    private static final int INITIAL_CAPACITY = 64;
+
+    // The columns of the rows
+    private int[] numbers = new int[INITIAL_CAPACITY];
+    private byte[] typeCodes = new byte[INITIAL_CAPACITY];
+    private int[] countFrames = new int[INITIAL_CAPACITY];
+    private double[] speeds = new double[INITIAL_CAPACITY]; // NaN until the speed is measured
+    private double[] speedTimes = new double[INITIAL_CAPACITY]; // NaN until the speed is measured
+    // The number of the rows
+    private int size = 0;
+
+    // The rows of the measured vehicles, in the order of the speed measurements
+    private int[] measuredRows = new int[INITIAL_CAPACITY];
+    private int measuredCount = 0;
+
+    /**
+     * This method adds a counted vehicle as a new row.
+     *
+     * @param number the number of the vehicle.
+     * @param type the type of the vehicle.
+     * @param countFrame the frame in which the vehicle was counted.
+     */
+    public void addVehicle(int number, VehicleType type, int countFrame) {
+        if (size == numbers.length) {
+            int capacity = size * 2;
+            numbers = Arrays.copyOf(numbers, capacity);
+            typeCodes = Arrays.copyOf(typeCodes, capacity);
+            countFrames = Arrays.copyOf(countFrames, capacity);
+            speeds = Arrays.copyOf(speeds, capacity);
+            speedTimes = Arrays.copyOf(speedTimes, capacity);
+        }
+        numbers[size] = number;
+        typeCodes[size] = (byte) type.ordinal();
+        countFrames[size] = countFrame;
+        speeds[size] = Double.NaN;
+        speedTimes[size] = Double.NaN;
+        size++;
+    }
+
+    /**
+     * This method sets the measured speed of a counted vehicle.
+     * The rows are searched from the last one, as the vehicles waiting for their speed are the last counted ones.
+     *
+     * @param number the number of the vehicle.
+     * @param speed the speed of the vehicle in km/h.
+     * @param timeInSec the video time of the measurement in seconds.
+     * @throws IllegalArgumentException if no vehicle with the number has been counted.
+     */
+    public void setSpeed(int number, double speed, double timeInSec) {
+        int row = size - 1;
+        while (row >= 0 && numbers[row] != number)
+            row--;
+        if (row < 0)
+            throw new IllegalArgumentException("No vehicle has been counted with the number " + number);
+
+        speeds[row] = speed;
+        speedTimes[row] = timeInSec;
+        if (measuredCount == measuredRows.length)
+            measuredRows = Arrays.copyOf(measuredRows, measuredCount * 2);
+        measuredRows[measuredCount++] = row;
+    }
+
+    /**
+     * This method returns the number of the rows, which is the number of the counted vehicles.
+     *
+     * @return the number of the rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The getNumber, getType, getCountFrame, getSpeed and getSpeedTime methods return the columns of a row.
+     *
+     * @param row the row, from 0 to size() - 1, in the order of the counting.
+     */
+    public int getNumber(int row) {
+        return numbers[row];
+    }
+
+    public VehicleType getType(int row) {
+        return VehicleType.fromCode(typeCodes[row]);
+    }
+
+    public int getCountFrame(int row) {
+        return countFrames[row];
+    }
+
+    public double getSpeed(int row) {
+        return speeds[row];
+    }
+
+    public double getSpeedTime(int row) {
+        return speedTimes[row];
+    }
+
+    /**
+     * This method returns whether the speed of the vehicle of a row has been measured.
+     *
+     * @param row the row.
+     * @return true if the speed has been measured, false if the vehicle is still waiting or has been discarded.
+     */
+    public boolean isMeasured(int row) {
+        return !Double.isNaN(speeds[row]);
+    }
+
+    /**
+     * This method returns the number of the speed measurements.
+     *
+     * @return the number of the measured vehicles.
+     */
+    public int getMeasuredCount() {
+        return measuredCount;
+    }
+
+    /**
+     * This method returns the row of a measured vehicle, in the order of the speed measurements.
+     *
+     * @param index the index of the measurement, from 0 to getMeasuredCount() - 1.
+     * @return the row of the measured vehicle.
+     */
+    public int getMeasuredRow(int index) {
+        return measuredRows[index];
+    }
+}
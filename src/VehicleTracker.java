@@ -0,0 +1,275 @@
+// Importing the necessary libraries
+
+import org.opencv.core.Rect; // OpenCV library for handling rectangles in 2D space
+import org.opencv.core.Size; // OpenCV library for handling sizes
+
+import java.util.ArrayList; // Java Util library for handling ArrayLists
+import java.util.Iterator; // Java Util library for iterating over collections
+import java.util.List; // Java Util library for handling lists
+
+/**
+ * The VehicleTracker class follows the vehicles across the frames and gives every vehicle a track with a stable ID.
+ * In every frame, the tracks are moved to the centroids predicted from their velocities and put into every cell of a grid
+ * which their predicted rectangles, grown by the largest distance of a match, cover. Every detected vehicle is compared
+ * only with the tracks of the cells which its rectangle covers, so the matching takes O(n) per frame for vehicles
+ * of a bounded size, and a track is never missed: a detection which overlaps its predicted rectangle, or whose centroid
+ * is close enough to its predicted centroid, shares a cell with it.
+ * The pairs are scored by the overlap of their rectangles, or by the distance of their centroids when they do not overlap,
+ * and matched greedily from the best score. The detections left unmatched start new tracks,
+ * and the tracks not found for a number of frames are removed.
+ */
+public class VehicleTracker {
+
+    // The size of a cell of the grid in pixels
+    private static final int CELL_SIZE = 64;
+    // The largest distance between the predicted centroid of a track and the centroid of a detection which do not overlap
+    private static final double MAX_DISTANCE = 60;
+    // The number of frames of the video after which a track which has not been found is removed
+    private static final int MAX_MISSED_FRAMES = 10;
+    // The weight of the newest velocity in the velocity of a track
+    private static final double VELOCITY_SMOOTHING = 0.5;
+
+    /**
+     * The Candidate class holds a possible match of a detection and a track with its score.
+     */
+    private static class Candidate {
+        final int detection;
+        final Track track;
+        final double score;
+
+        Candidate(int detection, Track track, double score) {
+            this.detection = detection;
+            this.track = track;
+            this.score = score;
+        }
+    }
+
+    // The number of columns and rows of the grid
+    private final int columns;
+    private final int rows;
+    // The tracks whose grown predicted rectangles cover every cell of the grid, row by row
+    private final List<List<Track>> cells = new ArrayList<>();
+
+    // The current tracks, and the tracks removed in the last update
+    private final List<Track> tracks = new ArrayList<>();
+    private final List<Track> lostTracks = new ArrayList<>();
+    // The possible matches of the current frame and the tracks matched to the detections
+    private final List<Candidate> candidates = new ArrayList<>();
+    private final List<Track> matches = new ArrayList<>();
+
+    // The ID of the next track
+    private int nextId = 1;
+
+    /**
+     * Constructor for the VehicleTracker class.
+     *
+     * @param frameSize the size of the frames in which the vehicles are detected.
+     */
+    public VehicleTracker(Size frameSize) {
+        columns = Math.max(1, (int) Math.ceil(frameSize.width / CELL_SIZE));
+        rows = Math.max(1, (int) Math.ceil(frameSize.height / CELL_SIZE));
+        for (int i = 0; i < columns * rows; i++) {
+            cells.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * This method matches the vehicles detected in a frame to the tracks, updates the matched tracks,
+     * starts a track for every unmatched detection and removes the tracks which have not been found for too long.
+     *
+     * @param rects the bounding rectangles of the detected vehicles.
+     * @param areas the areas of the detected vehicles, in the same order.
+     * @param frame the index of the frame in the video.
+     * @param time the timestamp of the frame in milliseconds.
+     */
+    public void update(List<Rect> rects, List<Double> areas, int frame, double time) {
+        lostTracks.clear();
+        for (List<Track> cell : cells) {
+            cell.clear();
+        }
+        for (Track track : tracks) {
+            predict(track, frame);
+            track.isMatched = false;
+            track.scoredDetection = -1;
+            // The centroid of a detection matched by distance lies within MAX_DISTANCE of the predicted centroid,
+            // and a detection matched by overlap reaches into the predicted rectangle, so both fall into the grown rectangle
+            double halfWidth = track.bounds.width / 2.0 + MAX_DISTANCE;
+            double halfHeight = track.bounds.height / 2.0 + MAX_DISTANCE;
+            int lastRow = cellRow(track.predictedY + halfHeight);
+            int lastColumn = cellColumn(track.predictedX + halfWidth);
+            for (int r = cellRow(track.predictedY - halfHeight); r <= lastRow; r++) {
+                for (int c = cellColumn(track.predictedX - halfWidth); c <= lastColumn; c++) {
+                    cells.get(r * columns + c).add(track);
+                }
+            }
+        }
+
+        candidates.clear();
+        for (int i = 0; i < rects.size(); i++) {
+            Rect rect = rects.get(i);
+            double x = rect.x + rect.width / 2.0;
+            double y = rect.y + rect.height / 2.0;
+            int lastRow = cellRow(rect.y + rect.height);
+            int lastColumn = cellColumn(rect.x + rect.width);
+            for (int r = cellRow(rect.y); r <= lastRow; r++) {
+                for (int c = cellColumn(rect.x); c <= lastColumn; c++) {
+                    for (Track track : cells.get(r * columns + c)) {
+                        // A track covering several cells of the detection is scored only once
+                        if (track.scoredDetection == i)
+                            continue;
+                        track.scoredDetection = i;
+                        double score = score(track, rect, x, y);
+                        if (score > 0)
+                            candidates.add(new Candidate(i, track, score));
+                    }
+                }
+            }
+        }
+        candidates.sort((a, b) -> Double.compare(b.score, a.score));
+
+        matches.clear();
+        for (int i = 0; i < rects.size(); i++) {
+            matches.add(null);
+        }
+        for (Candidate candidate : candidates) {
+            if (matches.get(candidate.detection) == null && !candidate.track.isMatched) {
+                matches.set(candidate.detection, candidate.track);
+                candidate.track.isMatched = true;
+            }
+        }
+
+        for (Track track : tracks) {
+            track.missedFrames = frame - track.lastFrame;
+        }
+        for (int i = 0; i < rects.size(); i++) {
+            Track track = matches.get(i);
+            if (track == null)
+                tracks.add(createTrack(nextId++, rects.get(i), areas.get(i), frame, time));
+            else
+                correct(track, rects.get(i), areas.get(i), frame, time);
+        }
+
+        Iterator<Track> iterator = tracks.iterator();
+        while (iterator.hasNext()) {
+            Track track = iterator.next();
+            if (track.missedFrames > MAX_MISSED_FRAMES) {
+                iterator.remove();
+                lostTracks.add(track);
+            }
+        }
+    }
+
+    /**
+     * This method creates the track of a vehicle found for the first time.
+     *
+     * @param id the ID of the track.
+     * @param rect the bounding rectangle of the vehicle.
+     * @param area the area of the vehicle.
+     * @param frame the index of the frame.
+     * @param time the timestamp of the frame in milliseconds.
+     * @return the new track.
+     */
+    Track createTrack(int id, Rect rect, double area, int frame, double time) {
+        return new Track(id, rect, area, frame, time);
+    }
+
+    /**
+     * This method finds the moment at which the centroid of a track has crossed a line between the frame in which
+     * the track was found before and the frame in which it has been found last.
+     * The moment is interpolated linearly between the timestamps of the two frames, by the signed distances of the two centroids
+     * from the line, so it is not rounded to a frame nor to the frames which have been processed.
+     *
+     * @param track the track.
+     * @param line the line.
+     * @return the moment of the crossing in milliseconds, or NaN if the centroid has not crossed the line between the two frames.
+     */
+    public double crossingTime(Track track, CheckCrossLine line) {
+        if (track.previousFrame == track.lastFrame)
+            return Double.NaN;
+        double fraction = line.crossingFraction(track.previousCentroidX, track.previousCentroidY, track.centroidX, track.centroidY);
+        return Double.isNaN(fraction) ? Double.NaN : track.previousTime + fraction * (track.lastTime - track.previousTime);
+    }
+
+    /**
+     * This method predicts the centroid of a track in the given frame from its last centroid and its velocity.
+     *
+     * @param track the track.
+     * @param frame the index of the frame.
+     */
+    void predict(Track track, int frame) {
+        int frames = frame - track.lastFrame;
+        track.predictedX = track.centroidX + track.velocityX * frames;
+        track.predictedY = track.centroidY + track.velocityY * frames;
+    }
+
+    /**
+     * This method updates a track with the detection matched to it.
+     *
+     * @param track the track.
+     * @param rect the bounding rectangle of the detection.
+     * @param area the area of the detection.
+     * @param frame the index of the frame.
+     * @param time the timestamp of the frame in milliseconds.
+     */
+    void correct(Track track, Rect rect, double area, int frame, double time) {
+        double x = rect.x + rect.width / 2.0;
+        double y = rect.y + rect.height / 2.0;
+        int frames = Math.max(1, frame - track.lastFrame);
+        track.velocityX += VELOCITY_SMOOTHING * ((x - track.centroidX) / frames - track.velocityX);
+        track.velocityY += VELOCITY_SMOOTHING * ((y - track.centroidY) / frames - track.velocityY);
+        track.record(rect, area, x, y, frame, time);
+    }
+
+    /**
+     * This method scores a possible match of a track and a detection.
+     * Overlapping pairs score from 1 to 2 by their intersection over union,
+     * the other pairs score from 0 to 1 by the distance of their centroids.
+     *
+     * @param track the track, with its predicted centroid.
+     * @param rect the bounding rectangle of the detection.
+     * @param x the horizontal coordinate of the centroid of the detection.
+     * @param y the vertical coordinate of the centroid of the detection.
+     * @return the score, or 0 if the pair cannot be matched.
+     */
+    private static double score(Track track, Rect rect, double x, double y) {
+        double left = Math.max(rect.x, track.predictedX - track.bounds.width / 2.0);
+        double top = Math.max(rect.y, track.predictedY - track.bounds.height / 2.0);
+        double right = Math.min(rect.x + rect.width, track.predictedX + track.bounds.width / 2.0);
+        double bottom = Math.min(rect.y + rect.height, track.predictedY + track.bounds.height / 2.0);
+        if (right > left && bottom > top) {
+            double intersection = (right - left) * (bottom - top);
+            return 1 + intersection / (rect.area() + track.bounds.area() - intersection);
+        }
+        double distance = Math.hypot(x - track.predictedX, y - track.predictedY);
+        return distance < MAX_DISTANCE ? 1 - distance / MAX_DISTANCE : 0;
+    }
+
+    /**
+     * The cellColumn and cellRow methods return the column and the row of the grid of a coordinate, clipped to the grid.
+     */
+    private int cellColumn(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) (x / CELL_SIZE)));
+    }
+
+    private int cellRow(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) (y / CELL_SIZE)));
+    }
+
+    /**
+     * This method returns the current tracks, including those which have not been found in the last frame.
+     *
+     * @return the current tracks.
+     */
+    public List<Track> getTracks() {
+        return tracks;
+    }
+
+    /**
+     * This method returns the tracks removed in the last update, because they have not been found for too long.
+     *
+     * @return the removed tracks.
+     */
+    public List<Track> getLostTracks() {
+        return lostTracks;
+    }
+}
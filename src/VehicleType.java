@@ -0,0 +1,47 @@
+/**
+ * The VehicleType enum is the registry of the types into which the counted vehicles are classified.
+ * The label of a type is the text shown in the GUI and written to the results,
+ * and the ordinal of a type is the code kept by the VehicleEventStore, so the types must only be added at the end.
+ */
+public enum VehicleType {
+
+    CAR("Car"),
+    VAN("Van"),
+    LORRY("Lorry");
+
+    // The label of the type, as shown and written to the results
+    private final String label;
+
+    VehicleType(String label) {
+        this.label = label;
+    }
+
+    /**
+     * This method returns the type with the given label.
+     *
+     * @param label the label of the type ("Car", "Van" or "Lorry").
+     * @return the type.
+     * @throws IllegalArgumentException if there is no type with the label.
+     */
+    public static VehicleType fromLabel(String label) {
+        for (VehicleType type : values()) {
+            if (type.label.equals(label))
+                return type;
+        }
+        throw new IllegalArgumentException("Invalid vehicle type: " + label);
+    }
+
+    /**
+     * This method returns the type with the given code.
+     *
+     * @param code the code of the type, which is its ordinal.
+     * @return the type.
+     */
+    public static VehicleType fromCode(int code) {
+        return values()[code];
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
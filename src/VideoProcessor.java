@@ -5,6 +5,28 @@
  */
 import org.opencv.core.Mat;
 
+/**
+ * Importing the Rect class from the org.opencv.core package and the List class from the java.util package.
+ * They are used for the regions of the image occupied by vehicles.
+ */
+import org.opencv.core.Rect;
+import java.util.List;
+
+/**
+ * Importing the MatOfByte class from the org.opencv.core package and the Imgcodecs class from the org.opencv.imgcodecs package.
+ * They are used for encoding the image of the background to PNG and decoding it again.
+ */
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Importing the File, IOException and Files classes from the java.io and java.nio.file packages.
+ * They are used for writing the model of the background to a file and reading it again.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
 /**
  * The VideoProcessor interface is responsible for processing a video.
  */
@@ -18,6 +40,20 @@ public interface VideoProcessor {
      */
     Mat process(Mat inputImage);
 
+    /**
+     * This method processes an input image which follows the previous processed image after the given number of frames,
+     * because the frames in between have been skipped.
+     * The classes that implement this interface can correct their learning for the skipped frames,
+     * by default the skipped frames are ignored.
+     *
+     * @param inputImage The input image to be processed.
+     * @param step The number of frames from the previous processed image to this one.
+     * @return The processed image.
+     */
+    default Mat process(Mat inputImage, int step) {
+        return process(inputImage);
+    }
+
     /**
      * This method sets the image threshold for the video processing algorithm.
      * The specific use of the image threshold is defined in the classes that implement this interface.
@@ -33,5 +69,118 @@ public interface VideoProcessor {
      */
     void setHistory(int history);
 
+    /**
+     * This method sets the regions of the processed image occupied by vehicles in a recent frame.
+     * The classes that implement this interface can avoid learning the vehicles into the background,
+     * by default the regions are ignored.
+     *
+     * @param regions The bounding rectangles of the vehicles, in the coordinates of the processed image.
+     */
+    default void setOccupiedRegions(List<Rect> regions) {
+    }
+
+    /**
+     * This method checks whether the video processing algorithm removes the shadows of the vehicles from the foreground by itself.
+     * By default the shadows are kept in the foreground.
+     *
+     * @return true if the shadows are not part of the foreground, false otherwise.
+     */
+    default boolean isShadowSuppressed() {
+        return false;
+    }
+
+    /**
+     * This method tells the video processing algorithm that the light of the whole scene has changed in the last processed image.
+     * The classes that implement this interface can adapt the background to the new light faster,
+     * by default nothing is done and the background adapts at its usual rate.
+     */
+    default void adaptToIlluminationChange() {
+    }
+
+    /**
+     * This method writes the current image of the background learnt by the video processing algorithm.
+     * The image has the size of the last processed image and is either BGR or grayscale.
+     * The classes that implement this interface and do not keep an image of the background return false.
+     *
+     * @param backgroundImage The matrix into which the image of the background is written.
+     * @return true if the image has been written, false if the algorithm does not keep one or has not processed any image yet.
+     */
+    default boolean getBackgroundImage(Mat backgroundImage) {
+        return false;
+    }
+
+    /**
+     * This method saves the model of the background to a file, so a later run on the same camera can start from it.
+     * By default the image of the background is saved as a PNG image,
+     * the classes that implement this interface can save their whole state instead.
+     *
+     * @param file The file to which the model is saved.
+     * @throws IOException if the algorithm has no model to be saved or the file cannot be written.
+     */
+    default void saveModel(File file) throws IOException {
+        Mat backgroundImage = new Mat();
+        try {
+            if (!getBackgroundImage(backgroundImage))
+                throw new IOException("There is no model of the background to be saved");
+            writeModelImage(file, backgroundImage);
+        } finally {
+            backgroundImage.release();
+        }
+    }
+
+    /**
+     * This method restores the model of the background from a file saved by saveModel, so the masks are stable from the first frame.
+     * The model is used only if it has the size of the processed images, otherwise it is learnt again from the frames.
+     * By default nothing is restored.
+     *
+     * @param file The file from which the model is restored.
+     * @return true if the model has been restored, false if the file does not hold a model which this algorithm can use.
+     * @throws IOException if the file cannot be read.
+     */
+    default boolean loadModel(File file) throws IOException {
+        return false;
+    }
+
+    /**
+     * This method writes an image of the background to a file in the PNG format.
+     *
+     * @param file The file to which the image is written.
+     * @param image The image of the background.
+     * @throws IOException if the image cannot be encoded or the file cannot be written.
+     */
+    static void writeModelImage(File file, Mat image) throws IOException {
+        MatOfByte buffer = new MatOfByte();
+        try {
+            if (!Imgcodecs.imencode(".png", image, buffer))
+                throw new IOException("Cannot encode the model of the background");
+            Files.write(file.toPath(), buffer.toArray());
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * This method reads an image of the background written by writeModelImage.
+     *
+     * @param file The file from which the image is read.
+     * @param flags Imgcodecs.IMREAD_COLOR for a BGR image or Imgcodecs.IMREAD_GRAYSCALE for a grayscale image.
+     * @return The image, which is empty if the file does not hold an image.
+     * @throws IOException if the file cannot be read.
+     */
+    static Mat readModelImage(File file, int flags) throws IOException {
+        MatOfByte buffer = new MatOfByte(Files.readAllBytes(file.toPath()));
+        try {
+            return Imgcodecs.imdecode(buffer, flags);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * This method releases the native memory held by the video processing algorithm.
+     * It is called when the video has finished, the processor must not be used afterwards.
+     */
+    void release();
+
 
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+/**
+ * The VideoSummary class holds the totals of the counting of one video, or of many videos merged together.
+ * It keeps the number of vehicles of each type, the sum and the number of their measured speeds,
+ * and the number of processed frames and the processing time, from which the throughput is calculated.
+ */
+public class VideoSummary {
+
+    // The name of the video, or of the group of videos
+    private final String name;
+    // The error which stopped the processing of the video, or null
+    private String error;
+
+    // The counters for the vehicles
+    private int cars;
+    private int vans;
+    private int lorries;
+
+    // The sums and the numbers of the measured speeds of the vehicles
+    private double sumSpeedCar;
+    private double sumSpeedVan;
+    private double sumSpeedLorry;
+    private int measuredCars;
+    private int measuredVans;
+    private int measuredLorries;
+
+    // The number of processed frames and the processing time in seconds
+    private long frames;
+    private double seconds;
+
+    /**
+     * Constructor for the VideoSummary class, which creates an empty summary.
+     *
+     * @param name the name of the video, or of the group of videos.
+     */
+    public VideoSummary(String name) {
+        this.name = name;
+    }
+
+    /**
+     * This method creates the summary of a processed video from its traffic counter.
+     *
+     * @param name the name of the video.
+     * @param counter the traffic counter holding the results of the video.
+     * @param seconds the processing time in seconds.
+     * @return the summary of the video.
+     */
+    public static VideoSummary of(String name, TrafficCounter counter, double seconds) {
+        VideoSummary summary = new VideoSummary(name);
+        summary.cars = counter.getCars();
+        summary.vans = counter.getVans();
+        summary.lorries = counter.getLorries();
+        summary.measuredCars = counter.getMeasuredCars();
+        summary.measuredVans = counter.getMeasuredVans();
+        summary.measuredLorries = counter.getMeasuredLorries();
+        summary.sumSpeedCar = counter.getAverageSpeedCar() * summary.measuredCars;
+        summary.sumSpeedVan = counter.getAverageSpeedVan() * summary.measuredVans;
+        summary.sumSpeedLorry = counter.getAverageSpeedLorry() * summary.measuredLorries;
+        summary.frames = counter.getFrameCount();
+        summary.seconds = seconds;
+        return summary;
+    }
+
+    /**
+     * This method creates the summary of a video whose processing has failed.
+     *
+     * @param name the name of the video.
+     * @param error the description of the error.
+     * @return the summary of the video.
+     */
+    public static VideoSummary failed(String name, String error) {
+        VideoSummary summary = new VideoSummary(name);
+        summary.error = error;
+        return summary;
+    }
+
+    /**
+     * This method adds the totals of another summary to this summary.
+     * The average speeds are weighted by the number of measured vehicles,
+     * and the processing times are added, so the throughput is the one of a single core.
+     *
+     * @param other the summary to be added.
+     */
+    public void merge(VideoSummary other) {
+        cars += other.cars;
+        vans += other.vans;
+        lorries += other.lorries;
+        sumSpeedCar += other.sumSpeedCar;
+        sumSpeedVan += other.sumSpeedVan;
+        sumSpeedLorry += other.sumSpeedLorry;
+        measuredCars += other.measuredCars;
+        measuredVans += other.measuredVans;
+        measuredLorries += other.measuredLorries;
+        frames += other.frames;
+        seconds += other.seconds;
+    }
+
+    /**
+     * This method returns the summary as a row of the summary file.
+     *
+     * @return the columns of the row.
+     */
+    public String[] toRow() {
+        return new String[]{
+                name,
+                Integer.toString(cars), format(average(sumSpeedCar, measuredCars)),
+                Integer.toString(vans), format(average(sumSpeedVan, measuredVans)),
+                Integer.toString(lorries), format(average(sumSpeedLorry, measuredLorries)),
+                Long.toString(frames), format(seconds), format(getFramesPerSecond()),
+                error == null ? "" : error
+        };
+    }
+
+    /**
+     * This method returns the header of the summary file.
+     *
+     * @return the columns of the header.
+     */
+    public static String[] header() {
+        return "File#Cars#Cars speed [km/h]#Vans#Vans speed [km/h]#Lorries#Lorries speed [km/h]#Frames#Time [sec]#Frames per second#Error".split("#");
+    }
+
+    private static double average(double sum, int count) {
+        return count > 0 ? sum / count : 0;
+    }
+
+    private static String format(double value) {
+        return String.format(java.util.Locale.ROOT, "%.2f", value);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public int getVehicles() {
+        return cars + vans + lorries;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public double getFramesPerSecond() {
+        return seconds > 0 ? frames / seconds : 0;
+    }
+}